@@ -1,12 +1,21 @@
 import java.util.*;
 
-public class AllFilters implements Filter {
+/** Passes movies that pass every added filter (none added = everything). */
+public class AllFilters implements MaskFilter {
     private ArrayList<Filter> filters;
+    private ColumnFilter[] byRow;   // the same filters, see FilterMasks.byRow
     public AllFilters() {
         filters = new ArrayList<Filter>();
+        byRow = new ColumnFilter[0];
     }
     public void addFilter(Filter f) {
         filters.add(f);
+        byRow = Arrays.copyOf(byRow, byRow.length + 1);
+        byRow[byRow.length - 1] = FilterMasks.byRow(f);
+    }
+    /** The filters added so far (read-only; the planner splits the AND into these). */
+    List<Filter> getFilters() {
+        return Collections.unmodifiableList(filters);
     }
     public boolean satisfies(String id) {
         for (Filter f : filters) {
@@ -14,5 +23,25 @@ public class AllFilters implements Filter {
         }
         return true;
     }
+    public boolean satisfies(MovieColumns movies, int row) {
+        for (ColumnFilter f : byRow) {
+            if (!f.satisfies(movies, row)) return false;
+        }
+        return true;
+    }
+    /** AND of the filters' masks, a word at a time; stops early once nothing is left. */
+    public long[] mask(MovieColumns movies) {
+        if (filters.isEmpty()) return FilterMasks.all(movies);
+        long[] bits = FilterMasks.of(filters.get(0), movies).clone();
+        for (int i = 1; i < filters.size(); i++) {
+            long[] other = FilterMasks.of(filters.get(i), movies);
+            long any = 0;
+            for (int w = 0; w < bits.length; w++) any |= (bits[w] &= other[w]);
+            if (any == 0) break;
+        }
+        return bits;
+    }
+    public String key() {
+        return FilterMasks.keyOf("and", filters);
+    }
 }
-
@@ -0,0 +1,40 @@
+import java.util.*;
+
+/** Passes movies that pass at least one added filter (none added = nothing). */
+public class AnyFilters implements MaskFilter {
+    private ArrayList<Filter> filters;
+    private ColumnFilter[] byRow;   // the same filters, see FilterMasks.byRow
+    public AnyFilters() {
+        filters = new ArrayList<Filter>();
+        byRow = new ColumnFilter[0];
+    }
+    public void addFilter(Filter f) {
+        filters.add(f);
+        byRow = Arrays.copyOf(byRow, byRow.length + 1);
+        byRow[byRow.length - 1] = FilterMasks.byRow(f);
+    }
+    public boolean satisfies(String id) {
+        for (Filter f : filters) {
+            if (f.satisfies(id)) return true;
+        }
+        return false;
+    }
+    public boolean satisfies(MovieColumns movies, int row) {
+        for (ColumnFilter f : byRow) {
+            if (f.satisfies(movies, row)) return true;
+        }
+        return false;
+    }
+    /** OR of the filters' masks, a word at a time. */
+    public long[] mask(MovieColumns movies) {
+        long[] bits = FilterMasks.none(movies);
+        for (Filter f : filters) {
+            long[] other = FilterMasks.of(f, movies);
+            for (int w = 0; w < bits.length; w++) bits[w] |= other[w];
+        }
+        return bits;
+    }
+    public String key() {
+        return FilterMasks.keyOf("or", filters);
+    }
+}
@@ -0,0 +1,217 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Offline job: the recommendations page of many raters at once (for email
+ * digests and the like), written as CSV or JSON lines.
+ *
+ *   java BatchRecommendations [out.csv|out.jsonl] [all|id,id,...|@idfile] [k] [threads] [blockSize]
+ *
+ * Each rater gets what RecommendationRunner would show them: the k best
+ * movies they haven't rated, from their 20 nearest raters with at least 5
+ * of them agreeing, or from 50 raters and 3 if that finds nothing. The
+ * movie and ratings files are RecommendationRunner's (-Dmovies.file,
+ * -Dratings.file).
+ *
+ * Calling the engine once per rater would redo everything per call. Here
+ * the work shared by all raters is done once: the ratings go into dense
+ * columns (RatingColumns, as for SimilarityJob), the filter becomes one
+ * bitmask over the movie table, and the ratings' movie index is mapped to
+ * table rows. Per rater, neighbours come from the co-rating columns and
+ * are pushed into a MovieAccumulator, as FourthRatings does, so the
+ * lists match the page's exactly. "Not rated yet" is a mark per movie in
+ * the rater's own vector instead of a filter.
+ *
+ * Raters go in blocks of blockSize, in parallel inside a block, each
+ * worker thread reusing its own scratch arrays. A finished block is
+ * written out before the next one starts, so memory is the columns plus
+ * blockSize * k results, however many raters there are.
+ *
+ * CSV rows are rater_id,rank,movie_id,score; a JSON line is
+ * {"rater":..,"recommendations":[{"movie":..,"score":..},..]}. A rater
+ * with nothing to recommend gets no CSV rows and an empty JSON list.
+ */
+public class BatchRecommendations {
+    public enum Format { CSV, JSONL }
+
+    private static final int NUM_SIMILAR = 20, MINIMAL = 5;                    // RecommendationRunner's page
+    private static final int FALLBACK_SIMILAR = 50, FALLBACK_MINIMAL = 3;      // and its fallback
+
+    /** What a run did. */
+    public static class Stats {
+        public int raters;
+        public int empty;          // raters with nothing to recommend
+        public long rows;          // recommendations written
+        public long nanos;
+
+        public String toString() {
+            double s = nanos / 1e9;
+            return String.format(Locale.US, "%d raters (%d with nothing to recommend), %d recommendations in %.2f s (%.0f raters/s)",
+                raters, empty, rows, s, raters / s);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        String out   = (args.length > 0) ? args[0] : "recommendations.csv";
+        String which = (args.length > 1) ? args[1] : "all";
+        int k        = (args.length > 2) ? Integer.parseInt(args[2]) : 15;
+        int threads  = (args.length > 3) ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        int block    = (args.length > 4) ? Integer.parseInt(args[4]) : 4096;
+
+        long t0 = System.nanoTime();
+        MovieDatabase.initialize(RecommendationRunner.movieFile());
+        RaterDatabase.setCompactStorage(true);
+        RaterDatabase.initialize(RecommendationRunner.ratingsFile());
+        System.out.println(String.format(Locale.US, "Loaded %d movies and %d raters in %.1f s",
+            MovieDatabase.size(), RaterDatabase.size(), (System.nanoTime() - t0) / 1e9));
+
+        List<String> raterIDs = null;
+        if (which.startsWith("@")) {
+            raterIDs = new ArrayList<>();
+            for (String line : Files.readAllLines(Paths.get(which.substring(1)), StandardCharsets.UTF_8)) {
+                if (!line.trim().isEmpty()) raterIDs.add(line.trim());
+            }
+        } else if (!which.equalsIgnoreCase("all")) {
+            raterIDs = Arrays.asList(which.split(","));
+        }
+        Format format = out.endsWith(".jsonl") || out.endsWith(".json") ? Format.JSONL : Format.CSV;
+
+        ForkJoinPool pool = (threads > 1) ? new ForkJoinPool(threads) : null;
+        Stats stats = run(RaterDatabase.snapshot(), MovieDatabase.snapshot(), raterIDs, new TrueFilter(), k,
+                          Paths.get(out), format, pool, block);
+        if (pool != null) pool.shutdown();
+        System.out.println(out + ": " + stats);
+    }
+
+    /**
+     * Recommend for raterIDs (null = every rater in rs) and write them to
+     * file, in the order given. Only movies passing filter are recommended;
+     * it is evaluated once for the whole run. pool may be null (one thread).
+     */
+    public static Stats run(RaterSnapshot rs, MovieSnapshot ms, List<String> raterIDs, Filter filter, int k,
+                            Path file, Format format, ForkJoinPool pool, int blockSize) throws IOException {
+        long t0 = System.nanoTime();
+        RatingColumns cols = new RatingColumns(rs);
+        List<String> ids = (raterIDs != null) ? raterIDs : Arrays.asList(cols.raterIDs);
+        MovieColumns table = ms.getColumns();
+        long[] allowed = FilterMasks.of(filter, table);
+        int[] rows = table.rowsOf(cols.movies);
+        blockSize = Math.max(1, blockSize);
+
+        Stats stats = new Stats();
+        stats.raters = ids.size();
+        ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(() -> new Scratch(cols));
+        AtomicLong empty = new AtomicLong();
+
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(BinarySnapshot.open(file), StandardCharsets.UTF_8), 1 << 16)) {
+            if (format == Format.CSV) out.write("rater_id,rank,movie_id,score\n");
+            List<ArrayList<Rating>> results = new ArrayList<>(Collections.nCopies(blockSize, null));
+            StringBuilder line = new StringBuilder();
+            for (int lo = 0; lo < ids.size(); lo += blockSize) {
+                int base = lo, size = Math.min(blockSize, ids.size() - lo);
+                ParallelRange.Body body = (from, to) -> {
+                    Scratch s = scratch.get();
+                    for (int i = from; i < to; i++) {
+                        Integer a = cols.raterIndex.get(ids.get(base + i));
+                        results.set(i, (a == null) ? new ArrayList<>() : s.recommend(a, k, allowed, rows));
+                    }
+                };
+                if (pool == null) body.run(0, size);
+                else ParallelRange.forEach(pool, size, body);
+
+                for (int i = 0; i < size; i++) {
+                    ArrayList<Rating> recs = results.set(i, null);
+                    if (recs.isEmpty()) empty.incrementAndGet();
+                    stats.rows += recs.size();
+                    line.setLength(0);
+                    String rater = ids.get(base + i);
+                    if (format == Format.CSV) {
+                        for (int r = 0; r < recs.size(); r++) {
+                            line.append(rater).append(',').append(r + 1).append(',')
+                                .append(recs.get(r).getItem()).append(',').append(recs.get(r).getValue()).append('\n');
+                        }
+                    } else {
+                        line.append("{\"rater\":");
+                        Json.string(line, rater);
+                        line.append(",\"recommendations\":[");
+                        for (int r = 0; r < recs.size(); r++) {
+                            if (r > 0) line.append(',');
+                            line.append("{\"movie\":");
+                            Json.string(line, recs.get(r).getItem());
+                            Json.number(line.append(",\"score\":"), recs.get(r).getValue()).append('}');
+                        }
+                        line.append("]}\n");
+                    }
+                    out.append(line);
+                }
+            }
+        } catch (Throwable e) {
+            BinarySnapshot.discard(file);   // no half-written .tmp left behind
+            throw e;
+        }
+        BinarySnapshot.commit(file);   // temp file moved into place, as for the binary files
+        stats.empty = (int) empty.get();
+        stats.nanos = System.nanoTime() - t0;
+        return stats;
+    }
+
+    /** One worker's accumulators, reused for every rater it handles. */
+    private static class Scratch {
+        final RatingColumns c;
+        final RatingColumns.CoRatings co;   // per rater
+        final boolean[] mine;               // per movie: rated by the current rater
+        final MovieAccumulator acc = new MovieAccumulator();
+
+        Scratch(RatingColumns c) {
+            this.c = c;
+            co = new RatingColumns.CoRatings(c.raterIDs.length);
+            mine = new boolean[c.numMovies()];
+        }
+
+        /** Rater a's page: the first try, else the fallback. */
+        ArrayList<Rating> recommend(int a, int k, long[] allowed, int[] rows) {
+            SparseVector va = c.vectors[a];
+            if (va == null) return new ArrayList<>();
+            ArrayList<Rating> neighbours = neighbours(a, Math.max(NUM_SIMILAR, FALLBACK_SIMILAR));
+            for (int p = 0; p < va.size(); p++) mine[va.indexAt(p)] = true;
+            try {
+                // the top 20 are the first 20 of the top 50 (same order, same tie-break)
+                ArrayList<Rating> page = weighted(neighbours.subList(0, Math.min(NUM_SIMILAR, neighbours.size())), MINIMAL, k, allowed, rows);
+                if (page.isEmpty()) page = weighted(neighbours.subList(0, Math.min(FALLBACK_SIMILAR, neighbours.size())), FALLBACK_MINIMAL, k, allowed, rows);
+                return page;
+            } finally {
+                for (int p = 0; p < va.size(); p++) mine[va.indexAt(p)] = false;
+            }
+        }
+
+        /** Top n positive neighbours of a, as (rater ID, similarity), same scores as SparseVector.dot. */
+        private ArrayList<Rating> neighbours(int a, int n) {
+            c.addRaterDots(a, co);
+            return co.takeTop(n, a, c.raterIDs);
+        }
+
+        /** FourthRatings' weighted averages over these neighbours, top k of the allowed, unrated movies. */
+        private ArrayList<Rating> weighted(List<Rating> neighbours, int minimalRaters, int k, long[] allowed, int[] rows) {
+            acc.reset(c.numMovies());
+            for (Rating nb : neighbours) {
+                SparseVector v = c.vectors[c.raterIndex.get(nb.getItem())];
+                double weight = nb.getValue();
+                for (int p = 0; p < v.size(); p++) acc.add(v.indexAt(p), weight, v.ratingAt(p));
+            }
+            TopRatings top = new TopRatings(k);
+            for (int t = 0; t < acc.numTouched(); t++) {
+                int m = acc.touchedAt(t);
+                double sumWeights = acc.getSumWeights(m);
+                if (acc.getCount(m) < minimalRaters || !(sumWeights > 0) || mine[m]) continue;
+                int row = rows[m];
+                if (row < 0 || !FilterMasks.get(allowed, row)) continue;
+                top.offer(c.movies.get(m), acc.getWeightedSum(m) / sumWeights);
+            }
+            return top.toList();
+        }
+    }
+}
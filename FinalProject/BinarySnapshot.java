@@ -0,0 +1,321 @@
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Binary copies of the loaded CSVs, so a cold start can skip parsing.
+ * Each CSV gets a companion file next to it (ratings.csv -> ratings.csv.bin):
+ *
+ *   int magic 'DKSN', int version, int kind (1 = movies, 2 = ratings)
+ *   movies:  int n, ids, titles, int[n] year, countries, genres,
+ *            directors, int[n] minutes, posters
+ *   ratings: int valueBytes, rater IDs, movie IDs, int[raters+1] rowStart,
+ *            int[nnz] items, float[nnz] or double[nnz] values   (CSR)
+ *
+ * A string column is int count, int[count+1] byte offsets and one UTF-8
+ * blob padded to 4 bytes, so every int array starts aligned. Everything is
+ * big-endian. A file is read with one mmap and bulk array copies.
+ *
+ * Ratings are stored as float (valueBytes 4) when every value fits one
+ * exactly, as the course's whole-number ratings do, and as double (8)
+ * otherwise, so a .bin load gives the same values as parsing the CSV.
+ *
+ * Files are written to a temp name and moved into place, so a reader never
+ * sees half a file. A file with the wrong magic or version is refused
+ * (IOException) and the caller falls back to the CSV.
+ */
+public class BinarySnapshot {
+    private static final int MAGIC = 0x444B534E;   // "DKSN"
+    private static final int VERSION = 2;      // 2: ratings say whether values are float or double
+    private static final int MOVIES = 1, RATINGS = 2;
+
+    /** The companion file for a CSV (next to wherever the CSV resolves). */
+    public static Path companion(String csvName) {
+        Path p = Paths.get(csvName);
+        if (!Files.exists(p)) {
+            Path q = Paths.get(System.getProperty("user.dir"), csvName);
+            if (Files.exists(q)) p = q;
+        }
+        return Paths.get(p.toString() + ".bin");
+    }
+
+    /** The companion file if it exists and is newer than the CSV (or the CSV is gone), else null. */
+    public static Path freshCompanion(String csvName) {
+        Path bin = companion(csvName);
+        if (!Files.exists(bin)) return null;
+        Path csv = Paths.get(bin.toString().substring(0, bin.toString().length() - 4));
+        try {
+            if (!Files.exists(csv)) return bin;
+            return Files.getLastModifiedTime(bin).compareTo(Files.getLastModifiedTime(csv)) > 0 ? bin : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    // ---------- movies ----------
+    public static void writeMovies(Path file, MovieSnapshot movies) throws IOException {
+        MovieColumns c = movies.getColumns();
+        int n = c.size();
+        String[] id = new String[n], title = new String[n], country = new String[n], genres = new String[n],
+                 director = new String[n], poster = new String[n];
+        int[] year = new int[n], minutes = new int[n];
+        for (int i = 0; i < n; i++) {
+            id[i] = c.getID(i);
+            title[i] = c.getTitle(i);
+            year[i] = c.getYear(i);
+            country[i] = c.getCountry(i);
+            genres[i] = c.getGenres(i);
+            director[i] = c.getDirector(i);
+            minutes[i] = c.getMinutes(i);
+            poster[i] = c.getPoster(i);
+        }
+        try (DataOutputStream out = open(file)) {
+            header(out, MOVIES);
+            out.writeInt(n);
+            writeStrings(out, id);
+            writeStrings(out, title);
+            writeInts(out, year);
+            writeStrings(out, country);
+            writeStrings(out, genres);
+            writeStrings(out, director);
+            writeInts(out, minutes);
+            writeStrings(out, poster);
+        }
+        commit(file);
+    }
+
+    public static MovieColumns readMovies(Path file) throws IOException {
+        ByteBuffer buf = map(file, MOVIES);
+        try {
+            return readMovies(buf);
+        } catch (RuntimeException e) {
+            throw new IOException(file + " is damaged: " + e, e);
+        }
+    }
+
+    private static MovieColumns readMovies(ByteBuffer buf) {
+        int n = buf.getInt();
+        String[] ids = readStrings(buf), title = readStrings(buf);
+        int[] year = readInts(buf, n);
+        String[] country = readStrings(buf), genres = readStrings(buf), director = readStrings(buf);
+        int[] minutes = readInts(buf, n);
+        String[] poster = readStrings(buf);
+
+        MovieColumns.Builder b = new MovieColumns.Builder();
+        for (int i = 0; i < n; i++) b.add(ids[i], title[i], year[i], country[i], genres[i], director[i], minutes[i], poster[i]);
+        return b.build();
+    }
+
+    // ---------- ratings ----------
+    /**
+     * Pack every rater of the snapshot as CSR, keeping the snapshot's movie
+     * indices. The rows are the raters' centred vectors, which are already
+     * sorted by movie and hold the ratings at full precision.
+     */
+    public static void writeRatings(Path file, RaterSnapshot ratings) throws IOException {
+        ArrayList<Rater> raters = ratings.getRaters();
+        String[] raterIDs = new String[raters.size()];
+        SparseVector[] rows = new SparseVector[raters.size()];
+        int[] rowStart = new int[raters.size() + 1];
+        boolean floats = true;
+        for (int r = 0; r < rows.length; r++) {
+            raterIDs[r] = raters.get(r).getID();
+            rows[r] = ratings.getVector(raterIDs[r]);
+            rowStart[r + 1] = rowStart[r] + rows[r].size();
+            for (int k = 0; k < rows[r].size() && floats; k++) floats = (float) rows[r].ratingAt(k) == rows[r].ratingAt(k);
+        }
+        try (DataOutputStream out = open(file)) {
+            header(out, RATINGS);
+            out.writeInt(floats ? 4 : 8);
+            writeStrings(out, raterIDs);
+            writeStrings(out, ratings.getMovieIDs());
+            writeInts(out, rowStart);
+            for (SparseVector v : rows) {
+                for (int k = 0; k < v.size(); k++) out.writeInt(v.indexAt(k));
+            }
+            for (SparseVector v : rows) {
+                for (int k = 0; k < v.size(); k++) {
+                    if (floats) out.writeFloat((float) v.ratingAt(k));
+                    else out.writeDouble(v.ratingAt(k));
+                }
+            }
+        }
+        commit(file);
+    }
+
+    /**
+     * The packed ratings as a (float) RatingMatrix, for compact storage, with
+     * movie indices taken from movies. Into an empty dictionary the file's
+     * indices go over unchanged; otherwise the rows are re-interned through
+     * a RatingMatrix.Builder.
+     */
+    public static RatingMatrix readRatings(Path file, IdDictionary movies) throws IOException {
+        Packed p = readPacked(file);
+        IdDictionary raterIDs = new IdDictionary();
+        for (String id : p.raterIDs) raterIDs.intern(id);
+        if (movies.size() == 0) {
+            for (String id : p.movieIDs) movies.intern(id);
+            return RatingMatrix.of(raterIDs, movies, p.rowStart, p.items, p.floats());
+        }
+        RatingMatrix.Builder mb = new RatingMatrix.Builder(movies);
+        for (int r = 0; r < p.raterIDs.length; r++) {
+            for (int k = p.rowStart[r]; k < p.rowStart[r + 1]; k++) mb.add(p.raterIDs[r], p.movieIDs[p.items[k]], p.value(k));
+        }
+        return mb.build();
+    }
+
+    /**
+     * Every packed rating at the precision it was written with, rater by
+     * rater, with IDs interned into raters and movies: the same rows
+     * MappedRatingsLoader.load gives for the CSV. Returns the number of rows.
+     */
+    public static long readRatings(Path file, IdDictionary raters, IdDictionary movies, MappedRatingsLoader.RowSink sink) throws IOException {
+        Packed p = readPacked(file);
+        for (int r = 0; r < p.raterIDs.length; r++) {
+            int rater = raters.intern(p.raterIDs[r]);
+            for (int k = p.rowStart[r]; k < p.rowStart[r + 1]; k++) sink.row(rater, movies.intern(p.movieIDs[p.items[k]]), p.value(k));
+        }
+        return p.items.length;
+    }
+
+    /** A ratings file's arrays as read; values in whichever of the two was written. */
+    private static final class Packed {
+        String[] raterIDs, movieIDs;
+        int[] rowStart, items;
+        float[] floats;
+        double[] doubles;
+
+        double value(int k) { return (floats != null) ? floats[k] : doubles[k]; }
+
+        float[] floats() {
+            if (floats != null) return floats;
+            float[] f = new float[doubles.length];
+            for (int k = 0; k < f.length; k++) f[k] = (float) doubles[k];
+            return f;
+        }
+    }
+
+    private static Packed readPacked(Path file) throws IOException {
+        ByteBuffer buf = map(file, RATINGS);
+        try {
+            return readPacked(buf);
+        } catch (RuntimeException e) {
+            throw new IOException(file + " is damaged: " + e, e);
+        }
+    }
+
+    private static Packed readPacked(ByteBuffer buf) {
+        Packed p = new Packed();
+        int valueBytes = buf.getInt();
+        if (valueBytes != 4 && valueBytes != 8) throw new IllegalStateException("values of " + valueBytes + " bytes");
+        p.raterIDs = readStrings(buf);
+        p.movieIDs = readStrings(buf);
+        p.rowStart = readInts(buf, p.raterIDs.length + 1);
+        int nnz = p.rowStart[p.raterIDs.length];
+        p.items = readInts(buf, nnz);
+        if (valueBytes == 4) {
+            p.floats = new float[nnz];
+            buf.asFloatBuffer().get(p.floats);
+        } else {
+            p.doubles = new double[nnz];
+            buf.asDoubleBuffer().get(p.doubles);
+        }
+        for (int k = 0; k < nnz; k++) {
+            if (p.items[k] < 0 || p.items[k] >= p.movieIDs.length) throw new IllegalStateException("movie index " + p.items[k] + " out of range");
+        }
+        return p;
+    }
+
+    // ---------- helpers (the array/string layouts are shared with NeighbourIndex) ----------
+    static DataOutputStream open(Path file) throws IOException {
+        Path tmp = Paths.get(file.toString() + ".tmp");
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16));
+    }
+
+    static void commit(Path file) throws IOException {
+        Path tmp = Paths.get(file.toString() + ".tmp");
+        try {
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /** Drop the temp file of a write that failed before commit. */
+    static void discard(Path file) {
+        Path tmp = Paths.get(file.toString() + ".tmp");
+        try {
+            Files.deleteIfExists(tmp);
+        } catch (IOException e) {
+            System.err.println("Could not delete " + tmp + ": " + e.getMessage());
+        }
+    }
+
+    private static void header(DataOutputStream out, int kind) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(kind);
+    }
+
+    /** Map the whole file and check its header; the buffer is left just past it. */
+    private static ByteBuffer map(Path file, int kind) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (ch.size() > Integer.MAX_VALUE) throw new IOException(file + " is too large to map in one piece");
+            ByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            if (buf.remaining() < 12 || buf.getInt() != MAGIC) throw new IOException(file + " is not a snapshot file");
+            int version = buf.getInt();
+            if (version != VERSION) throw new IOException(file + " has snapshot version " + version + ", expected " + VERSION);
+            if (buf.getInt() != kind) throw new IOException(file + " holds the wrong kind of data");
+            return buf;
+        }
+    }
+
+    static void writeInts(DataOutputStream out, int[] a) throws IOException {
+        for (int v : a) out.writeInt(v);
+    }
+
+    static int[] readInts(ByteBuffer buf, int n) {
+        int[] a = new int[n];
+        buf.asIntBuffer().get(a);
+        buf.position(buf.position() + 4 * n);
+        return a;
+    }
+
+    static void writeStrings(DataOutputStream out, IdDictionary d) throws IOException {
+        String[] a = new String[d.size()];
+        for (int i = 0; i < a.length; i++) a[i] = d.get(i);
+        writeStrings(out, a);
+    }
+
+    static void writeStrings(DataOutputStream out, String[] a) throws IOException {
+        byte[][] bytes = new byte[a.length][];
+        int total = 0;
+        for (int i = 0; i < a.length; i++) {
+            bytes[i] = (a[i] == null ? "" : a[i]).getBytes(StandardCharsets.UTF_8);
+            total += bytes[i].length;
+        }
+        out.writeInt(a.length);
+        int off = 0;
+        out.writeInt(0);
+        for (byte[] b : bytes) {
+            off += b.length;
+            out.writeInt(off);
+        }
+        for (byte[] b : bytes) out.write(b);
+        for (int pad = (4 - total % 4) % 4; pad > 0; pad--) out.write(0);
+    }
+
+    static String[] readStrings(ByteBuffer buf) {
+        int n = buf.getInt();
+        int[] off = readInts(buf, n + 1);
+        byte[] blob = new byte[off[n]];
+        buf.get(blob);
+        buf.position(buf.position() + (4 - blob.length % 4) % 4);
+        String[] a = new String[n];
+        for (int i = 0; i < n; i++) a[i] = new String(blob, off[i], off[i + 1] - off[i], StandardCharsets.UTF_8);
+        return a;
+    }
+}
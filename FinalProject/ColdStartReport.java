@@ -0,0 +1,51 @@
+import java.lang.management.ManagementFactory;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Times a cold start: loading both databases and answering one
+ * recommendation, either from the CSVs or from their BinarySnapshot files.
+ *
+ *   java ColdStartReport csv [movies.csv] [ratings.csv]
+ *   java ColdStartReport bin [movies.csv] [ratings.csv]
+ *
+ * Run each mode in a fresh JVM (that is what makes it cold). "bin" writes
+ * the .bin files first if they are missing or older than the CSVs, and
+ * that run doesn't count; run it again for the real number. Ratings use
+ * compact storage, the layout the snapshot holds.
+ */
+public class ColdStartReport {
+
+    public static void main(String[] args) {
+        String mode    = (args.length > 0) ? args[0] : "csv";
+        String movies  = (args.length > 1) ? args[1] : "ratedmoviesfull.csv";
+        String ratings = (args.length > 2) ? args[2] : "ratings.csv";
+        boolean bin = mode.equals("bin");
+
+        RaterDatabase.setCompactStorage(true);
+        if (bin && (BinarySnapshot.freshCompanion(movies) == null || BinarySnapshot.freshCompanion(ratings) == null)) {
+            MovieDatabase.setBinarySnapshots(true);
+            RaterDatabase.setBinarySnapshots(true);
+            MovieDatabase.initialize(movies);
+            RaterDatabase.initialize(ratings);
+            System.out.println("Wrote " + BinarySnapshot.companion(movies) + " and " + BinarySnapshot.companion(ratings)
+              + "; run again in a new JVM to time the cold start.");
+            return;
+        }
+        MovieDatabase.setBinarySnapshots(bin);
+        RaterDatabase.setBinarySnapshots(bin);
+
+        long t0 = System.nanoTime();
+        MovieDatabase.initialize(movies);
+        long t1 = System.nanoTime();
+        RaterDatabase.initialize(ratings);
+        long t2 = System.nanoTime();
+        String someRater = RaterDatabase.getRaters().get(0).getID();
+        ArrayList<Rating> recs = new FourthRatings().getTopRecommendations(someRater, 15, 50, 3, new NotRatedFilter(RaterDatabase.getRater(someRater)));
+        long t3 = System.nanoTime();
+
+        System.out.println(String.format(Locale.US, "%s: %d movies in %.0f ms, %d raters in %.0f ms, first answer (%d recs) after %.0f ms; JVM up %d ms",
+            bin ? "binary snapshot" : "csv", MovieDatabase.size(), (t1 - t0) / 1e6, RaterDatabase.size(), (t2 - t1) / 1e6,
+            recs.size(), (t3 - t0) / 1e6, ManagementFactory.getRuntimeMXBean().getUptime()));
+    }
+}
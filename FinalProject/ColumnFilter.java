@@ -0,0 +1,8 @@
+/**
+ * A Filter that can also test a row of the columnar movie table directly.
+ * MovieSnapshot.filterBy uses this path when it can, so no ID lookups are
+ * done; satisfies(id) stays for callers that only have an ID.
+ */
+public interface ColumnFilter extends Filter {
+    public boolean satisfies(MovieColumns movies, int row);
+}
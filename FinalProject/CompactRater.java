@@ -0,0 +1,107 @@
+import java.util.*;
+
+/**
+ * Rater backed by primitive arrays: movie indices (from an IdDictionary) kept
+ * sorted, with the matching ratings in a parallel float[]. Freshly loaded
+ * raters are views onto a slice of a shared RatingMatrix; the first addRating
+ * copies the slice so the shared arrays are never written.
+ *
+ * Ratings are stored as float. The course files only use whole numbers 1..10,
+ * which float holds exactly.
+ */
+public class CompactRater implements Rater {
+    private String myID;
+    private IdDictionary movies;
+    private int[] items;
+    private float[] values;
+    private int from, to;
+    private boolean shared;
+
+    /** Empty rater with its own (growable) arrays. */
+    public CompactRater(String id, IdDictionary movies) {
+        this(id, movies, new int[4], new float[4], 0, 0, false);
+    }
+
+    /** View onto items[from..to) / values[from..to); items must be sorted in that range. */
+    CompactRater(String id, IdDictionary movies, int[] items, float[] values, int from, int to, boolean shared) {
+        myID = id;
+        this.movies = movies;
+        this.items = items;
+        this.values = values;
+        this.from = from;
+        this.to = to;
+        this.shared = shared;
+    }
+
+    /**
+     * Same ratings, looked up through movies (a copy of this rater's dictionary,
+     * same indices). The copy shares this rater's arrays and copies them before
+     * its first write. This rater itself is left untouched -- it may already be
+     * in a published snapshot -- so it must not be written afterwards; the
+     * snapshot builder only calls this on raters it is about to drop or that
+     * it never writes (a base snapshot's, or a matrix view).
+     */
+    public CompactRater withDictionary(IdDictionary movies) {
+        return new CompactRater(myID, movies, items, values, from, to, true);
+    }
+
+    public void addRating(String item, double rating) {
+        int idx = movies.intern(item);
+        int pos = Arrays.binarySearch(items, from, to, idx);
+        if (pos >= 0) {
+            int at = pos - from;
+            makePrivate(0);                       // slice is rebased to 0
+            values[at] = (float) rating;
+            return;
+        }
+        int ins = -pos - 1 - from;
+        makePrivate(1);
+        System.arraycopy(items, ins, items, ins + 1, to - ins);
+        System.arraycopy(values, ins, values, ins + 1, to - ins);
+        items[ins] = idx;
+        values[ins] = (float) rating;
+        to++;
+    }
+
+    public boolean hasRating(String item) {
+        return find(item) >= 0;
+    }
+
+    public String getID() { return myID; }
+
+    public double getRating(String item) {
+        int pos = find(item);
+        return (pos < 0) ? -1.0 : values[pos];
+    }
+
+    public int numRatings() { return to - from; }
+
+    public ArrayList<String> getItemsRated() {
+        ArrayList<String> out = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) out.add(movies.get(items[i]));
+        return out;
+    }
+
+    // ---- primitive access (k in 0..numRatings()-1, ascending movie index) ----
+    public int   itemIndexAt(int k) { return items[from + k]; }
+    public float valueAt(int k)     { return values[from + k]; }
+
+    private int find(String item) {
+        int idx = movies.indexOf(item);
+        if (idx < 0) return -1;
+        int pos = Arrays.binarySearch(items, from, to, idx);
+        return (pos < 0) ? -1 : pos;
+    }
+
+    /** Copy the slice into arrays we own (rebased to 0) with room for extra more entries. */
+    private void makePrivate(int extra) {
+        int n = to - from;
+        if (!shared && from == 0 && n + extra <= items.length) return;
+        int cap = Math.max(4, shared ? n + extra : Math.max(n + extra, items.length * 2));
+        items = Arrays.copyOfRange(items, from, from + cap);
+        values = Arrays.copyOfRange(values, from, from + cap);
+        from = 0;
+        to = n;
+        shared = false;
+    }
+}
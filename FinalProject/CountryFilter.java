@@ -0,0 +1,10 @@
+
+/** Passes movies made in the country (or any of a comma-separated list of countries). */
+public class CountryFilter extends TokenFilter {
+    public CountryFilter(String country) {
+        super("country", country);
+    }
+    protected TokenIndex index(MovieColumns movies) { return movies.countryIndex(); }
+    protected String value(String id) { return MovieDatabase.getCountry(id); }
+}
+
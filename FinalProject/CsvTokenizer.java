@@ -0,0 +1,165 @@
+import java.io.*;
+import java.util.Arrays;
+
+/**
+ * Streaming, quote-aware CSV reader that hands out field offsets instead of
+ * Strings. One tokenizer reads a whole file through a single reusable char
+ * buffer; next() moves to the following record, and a record's fields are
+ * only turned into Strings (field) or ints (intField) when asked for.
+ *
+ * Quoted fields may hold commas, doubled quotes ("") and line breaks.
+ * Fields come back trimmed, like the old splitCsvLine + trim() did. A UTF-8
+ * BOM at the start of the input is skipped. Lines end in \n, \r\n or \r.
+ * A quote still open at the end of the input is an IOException naming the
+ * record, rather than the rest of the file read as one field.
+ */
+public class CsvTokenizer implements Closeable {
+    private final Reader in;
+    private char[] buf = new char[1 << 16];
+    private int pos, limit;          // unread input is buf[pos..limit)
+    private boolean eof;
+
+    // the current record: field k is buf[start[k]..end[k]), untrimmed
+    private int[] start = new int[16], end = new int[16];
+    private boolean[] escaped = new boolean[16];   // holds "" that must become "
+    private int count;
+    private long records;            // records returned so far
+
+    public CsvTokenizer(Reader in) throws IOException {
+        this.in = in;
+        fill();
+        if (limit > 0 && buf[0] == '\uFEFF') pos = 1;
+    }
+
+    /** Advance to the next record; false at the end of the input. */
+    public boolean next() throws IOException {
+        while (true) {
+            if (pos >= limit) {
+                if (eof) return false;
+                fill();
+                continue;
+            }
+            int p = scan(pos);
+            if (p >= 0) {
+                pos = p;
+                records++;
+                return true;
+            }
+            fill();   // record runs past the buffered input: get more, then scan it again
+        }
+    }
+
+    /** Number of fields in the current record. */
+    public int fields() {
+        return count;
+    }
+
+    /** Field i, trimmed and unquoted; "" if the record is shorter. */
+    public String field(int i) {
+        if (i < 0 || i >= count) return "";
+        int s = start[i], e = end[i];
+        while (s < e && buf[s] <= ' ') s++;
+        while (e > s && buf[e - 1] <= ' ') e--;
+        if (!escaped[i]) return new String(buf, s, e - s);
+        StringBuilder sb = new StringBuilder(e - s);
+        for (int k = s; k < e; k++) {
+            sb.append(buf[k]);
+            if (buf[k] == '"') k++;   // "" -> "
+        }
+        return sb.toString();
+    }
+
+    /** Field i parsed as an int straight from the buffer, or def if it isn't one. */
+    public int intField(int i, int def) {
+        if (i < 0 || i >= count) return def;
+        int s = start[i], e = end[i];
+        while (s < e && buf[s] <= ' ') s++;
+        while (e > s && buf[e - 1] <= ' ') e--;
+        boolean neg = false;
+        if (s < e && (buf[s] == '-' || buf[s] == '+')) neg = buf[s++] == '-';
+        if (s == e || e - s > 10) return def;
+        long v = 0;
+        for (int k = s; k < e; k++) {
+            char c = buf[k];
+            if (c < '0' || c > '9') return def;
+            v = v * 10 + (c - '0');
+        }
+        if (neg) v = -v;
+        return (v < Integer.MIN_VALUE || v > Integer.MAX_VALUE) ? def : (int) v;
+    }
+
+    public void close() throws IOException {
+        in.close();
+    }
+
+    // ---- scanning ----
+    /**
+     * Split the record at p into fields. Returns the position after its line
+     * end, or -1 if the buffered input ends before the record does.
+     */
+    private int scan(int p) throws IOException {
+        count = 0;
+        while (true) {
+            int q = p;
+            while (q < limit && (buf[q] == ' ' || buf[q] == '\t')) q++;
+            if (q < limit && buf[q] == '"') {
+                int s = q + 1, i = s;
+                boolean esc = false;
+                while (true) {
+                    if (i >= limit) {
+                        if (eof) throw new IOException("unterminated quote in record " + (records + 1));
+                        return -1;
+                    }
+                    if (buf[i] == '"') {
+                        if (i + 1 >= limit && !eof) return -1;
+                        if (i + 1 < limit && buf[i + 1] == '"') { esc = true; i += 2; continue; }
+                        break;
+                    }
+                    i++;
+                }
+                addField(s, i, esc);
+                p = i + 1;
+                while (p < limit && buf[p] != ',' && buf[p] != '\n' && buf[p] != '\r') p++;   // stray text after the quote
+            } else {
+                int i = p;
+                while (i < limit && buf[i] != ',' && buf[i] != '\n' && buf[i] != '\r') i++;
+                addField(p, i, false);
+                p = i;
+            }
+            if (p >= limit) return eof ? p : -1;
+            char c = buf[p++];
+            if (c == ',') continue;
+            if (c == '\r') {
+                if (p >= limit && !eof) return -1;
+                if (p < limit && buf[p] == '\n') p++;
+            }
+            return p;
+        }
+    }
+
+    private void addField(int s, int e, boolean esc) {
+        if (count == start.length) {
+            start = Arrays.copyOf(start, count * 2);
+            end = Arrays.copyOf(end, count * 2);
+            escaped = Arrays.copyOf(escaped, count * 2);
+        }
+        start[count] = s;
+        end[count] = e;
+        escaped[count] = esc;
+        count++;
+    }
+
+    /** Move the unread input to the front (growing the buffer if it is all one record) and read more. */
+    private void fill() throws IOException {
+        if (pos > 0) {
+            System.arraycopy(buf, pos, buf, 0, limit - pos);
+            limit -= pos;
+            pos = 0;
+        } else if (limit == buf.length) {
+            buf = Arrays.copyOf(buf, buf.length * 2);
+        }
+        int n = in.read(buf, limit, buf.length - limit);
+        if (n < 0) eof = true;
+        else limit += n;
+    }
+}
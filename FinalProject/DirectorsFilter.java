@@ -0,0 +1,10 @@
+
+/** Passes movies directed by any of the comma-separated directors. */
+public class DirectorsFilter extends TokenFilter {
+    public DirectorsFilter(String directors) {
+        super("director", directors);
+    }
+    protected TokenIndex index(MovieColumns movies) { return movies.directorIndex(); }
+    protected String value(String id) { return MovieDatabase.getDirector(id); }
+}
+
@@ -0,0 +1,345 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Latent-factor model of the ratings, an alternative to neighbour averages:
+ *
+ *   predicted rating(u, m) = mean + raterBias[u] + movieBias[m] + p[u] . q[m]
+ *
+ * with p and q vectors of `factors` floats. Once trained, scoring a movie
+ * for a user is one short dot product, whoever else rated it, and a user
+ * with no close neighbours still gets predictions.
+ *
+ *   java FactorModel [ratings.csv] [out.mf] [factors] [iterations] [lambda] [threads]
+ *
+ * Trained with alternating least squares: fix the movies and solve every
+ * rater's [p, bias] exactly (a small least-squares problem each), then fix
+ * the raters and do the same for the movies, and repeat. Every row is
+ * solved independently, so rows are split over the pool with no sharing,
+ * and the result is the same for any number of threads. Regularisation is
+ * lambda times the row's rating count.
+ *
+ * File: int magic 'DKMF', int version, int factors, float mean, rater IDs,
+ * movie IDs (string columns as in BinarySnapshot), then float[raters]
+ * raterBias, float[raters * factors] p, float[movies] movieBias,
+ * float[movies * factors] q. Big-endian.
+ */
+public class FactorModel {
+    static final int MAGIC = 0x444B4D46;   // "DKMF"
+    static final int VERSION = 1;
+    private static final double FOLD_IN_LAMBDA = 0.1;   // for raters fitted after training
+
+    private int factors;
+    private float mean;
+    private IdDictionary raterIDs, movieIDs;
+    private float[] raterBias, raterFactors;   // rater u's vector is raterFactors[u*factors ..]
+    private float[] movieBias, movieFactors;
+
+    private FactorModel(int factors, float mean, IdDictionary raterIDs, IdDictionary movieIDs,
+                        float[] raterBias, float[] raterFactors, float[] movieBias, float[] movieFactors) {
+        this.factors = factors;
+        this.mean = mean;
+        this.raterIDs = raterIDs;
+        this.movieIDs = movieIDs;
+        this.raterBias = raterBias;
+        this.raterFactors = raterFactors;
+        this.movieBias = movieBias;
+        this.movieFactors = movieFactors;
+    }
+
+    public static void main(String[] args) throws IOException {
+        String ratings = (args.length > 0) ? args[0] : "ratings.csv";
+        String out     = (args.length > 1) ? args[1] : ratings + ".mf";
+        int factors    = (args.length > 2) ? Integer.parseInt(args[2]) : 20;
+        int iterations = (args.length > 3) ? Integer.parseInt(args[3]) : 10;
+        double lambda  = (args.length > 4) ? Double.parseDouble(args[4]) : 0.1;
+        int threads    = (args.length > 5) ? Integer.parseInt(args[5]) : Runtime.getRuntime().availableProcessors();
+
+        RaterDatabase.setCompactStorage(true);
+        RaterDatabase.initialize(ratings);
+        ForkJoinPool pool = (threads > 1) ? new ForkJoinPool(threads) : null;
+        long t0 = System.nanoTime();
+        FactorModel model = train(RaterDatabase.snapshot(), factors, iterations, lambda, 42L, pool);
+        long t1 = System.nanoTime();
+        if (pool != null) pool.shutdown();
+        model.write(Paths.get(out));
+        System.out.println(String.format(Locale.US, "%s: %d raters x %d movies, %d factors, training RMSE %.4f, %d iterations in %.2f s",
+            out, model.raterIDs.size(), model.movieIDs.size(), factors, model.rmse(RaterDatabase.snapshot()), iterations, (t1 - t0) / 1e9));
+    }
+
+    // ---------- training ----------
+    /** Fit a model to rs; pool may be null (one thread). */
+    public static FactorModel train(RaterSnapshot rs, int factors, int iterations, double lambda, long seed, ForkJoinPool pool) {
+        if (factors < 1) throw new IllegalArgumentException("factors must be at least 1");
+        RatingColumns cols = new RatingColumns(rs);
+        int numRaters = cols.raterIDs.length, numMovies = cols.numMovies();
+
+        // both sides as (start, other index, rating) rows
+        int[] raterStart = new int[numRaters + 1];
+        for (int u = 0; u < numRaters; u++) {
+            raterStart[u + 1] = raterStart[u] + ((cols.vectors[u] == null) ? 0 : cols.vectors[u].size());
+        }
+        int[] raterMovie = new int[raterStart[numRaters]];
+        float[] raterValue = new float[raterMovie.length];
+        double sum = 0.0;
+        for (int u = 0; u < numRaters; u++) {
+            SparseVector v = cols.vectors[u];
+            for (int p = 0; v != null && p < v.size(); p++) {
+                raterMovie[raterStart[u] + p] = v.indexAt(p);
+                raterValue[raterStart[u] + p] = (float) v.ratingAt(p);
+                sum += v.ratingAt(p);
+            }
+        }
+        float[] movieValue = new float[cols.colCentred.length];
+        for (int q = 0; q < movieValue.length; q++) movieValue[q] = (float) (cols.colCentred[q] + 5.0);
+        float mean = (raterMovie.length == 0) ? 5f : (float) (sum / raterMovie.length);
+
+        float[] raterBias = new float[numRaters], raterFactors = new float[numRaters * factors];
+        float[] movieBias = new float[numMovies], movieFactors = new float[numMovies * factors];
+        Random rnd = new Random(seed);
+        for (int i = 0; i < movieFactors.length; i++) movieFactors[i] = (float) (rnd.nextGaussian() * 0.1);
+
+        for (int it = 0; it < iterations; it++) {
+            solveRows(raterStart, raterMovie, raterValue, movieFactors, movieBias, mean, raterFactors, raterBias, factors, lambda, pool);
+            solveRows(cols.colStart, cols.colRater, movieValue, raterFactors, raterBias, mean, movieFactors, movieBias, factors, lambda, pool);
+        }
+
+        IdDictionary raters = new IdDictionary();
+        for (String id : cols.raterIDs) raters.intern(id);
+        IdDictionary movies = new IdDictionary();
+        for (int m = 0; m < numMovies; m++) movies.intern(cols.movies.get(m));
+        return new FactorModel(factors, mean, raters, movies, raterBias, raterFactors, movieBias, movieFactors);
+    }
+
+    /**
+     * One half of an ALS sweep: for every row i, the [vector, bias] that best
+     * fits its ratings with the other side's vectors and biases held fixed.
+     */
+    private static void solveRows(int[] start, int[] other, float[] value, float[] otherFactors, float[] otherBias, float mean,
+                                  float[] rowFactors, float[] rowBias, int f, double lambda, ForkJoinPool pool) {
+        int rows = start.length - 1;
+        ParallelRange.Body body = (from, to) -> {
+            int d = f + 1;
+            double[] a = new double[d * d], b = new double[d], x = new double[d];
+            for (int i = from; i < to; i++) {
+                int n = start[i + 1] - start[i];
+                if (n == 0) {
+                    Arrays.fill(rowFactors, i * f, i * f + f, 0f);
+                    rowBias[i] = 0f;
+                    continue;
+                }
+                fitRow(other, value, start[i], start[i + 1], otherFactors, otherBias, mean, f, lambda, a, b, x);
+                for (int k = 0; k < f; k++) rowFactors[i * f + k] = (float) x[k];
+                rowBias[i] = (float) x[f];
+            }
+        };
+        if (pool == null) body.run(0, rows);
+        else ParallelRange.forEach(pool, rows, body);
+    }
+
+    /**
+     * Least-squares [vector, bias] for ratings value[from..to) against the
+     * rows other[..] of otherFactors; the answer lands in x (length f + 1).
+     * a and b are scratch of size (f+1)^2 and f+1.
+     */
+    private static void fitRow(int[] other, float[] value, int from, int to, float[] otherFactors, float[] otherBias, float mean,
+                               int f, double lambda, double[] a, double[] b, double[] x) {
+        int d = f + 1;
+        Arrays.fill(a, 0.0);
+        Arrays.fill(b, 0.0);
+        for (int q = from; q < to; q++) {
+            int j = other[q], base = j * f;
+            double target = value[q] - mean - otherBias[j];
+            // features: the other side's vector, then 1 for the bias
+            for (int r = 0; r < f; r++) {
+                double xr = otherFactors[base + r];
+                b[r] += xr * target;
+                int row = r * d;
+                for (int c = 0; c <= r; c++) a[row + c] += xr * otherFactors[base + c];
+                a[row + f] += xr;
+            }
+            b[f] += target;
+            a[f * d + f] += 1.0;
+        }
+        // the solve only reads the lower triangle: move the bias column into the last row
+        for (int r = 0; r < f; r++) a[f * d + r] = a[r * d + f];
+        double reg = lambda * (to - from);
+        for (int r = 0; r < d; r++) a[r * d + r] += reg;
+        choleskySolve(a, b, x, d);
+    }
+
+    /** Solve a x = b for symmetric positive definite a (d x d, row-major, lower triangle used and overwritten). */
+    private static void choleskySolve(double[] a, double[] b, double[] x, int d) {
+        for (int j = 0; j < d; j++) {
+            double s = a[j * d + j];
+            for (int k = 0; k < j; k++) s -= a[j * d + k] * a[j * d + k];
+            double diag = Math.sqrt(Math.max(s, 1e-12));
+            a[j * d + j] = diag;
+            for (int i = j + 1; i < d; i++) {
+                double t = a[i * d + j];
+                for (int k = 0; k < j; k++) t -= a[i * d + k] * a[j * d + k];
+                a[i * d + j] = t / diag;
+            }
+        }
+        for (int i = 0; i < d; i++) {
+            double t = b[i];
+            for (int k = 0; k < i; k++) t -= a[i * d + k] * x[k];
+            x[i] = t / a[i * d + i];
+        }
+        for (int i = d - 1; i >= 0; i--) {
+            double t = x[i];
+            for (int k = i + 1; k < d; k++) t -= a[k * d + i] * x[k];
+            x[i] = t / a[i * d + i];
+        }
+    }
+
+    // ---------- scoring ----------
+    public int getFactors() { return factors; }
+
+    /** Movies the model knows, in its own index order. */
+    IdDictionary getMovieIDs() { return movieIDs; }
+
+    public boolean hasRater(String raterID) {
+        return raterIDs.indexOf(raterID) >= 0;
+    }
+
+    /**
+     * raterID's [p, bias] for predict(): the trained one, or else fitted on
+     * the spot to their ratings in rs with the movies held fixed (a rater
+     * who joined after training). Null if neither has them.
+     */
+    double[] raterVector(RaterSnapshot rs, String raterID) {
+        double[] w = new double[factors + 1];
+        int u = raterIDs.indexOf(raterID);
+        if (u >= 0) {
+            for (int k = 0; k < factors; k++) w[k] = raterFactors[u * factors + k];
+            w[factors] = raterBias[u];
+            return w;
+        }
+        SparseVector v = rs.getVector(raterID);
+        if (v == null) return null;
+        IdDictionary rated = rs.getMovieIDs();
+        int[] other = new int[v.size()];
+        float[] value = new float[v.size()];
+        int n = 0;
+        for (int p = 0; p < v.size(); p++) {
+            int m = movieIDs.indexOf(rated.get(v.indexAt(p)));
+            if (m < 0) continue;
+            other[n] = m;
+            value[n++] = (float) v.ratingAt(p);
+        }
+        if (n == 0) return null;
+        int d = factors + 1;
+        fitRow(other, value, 0, n, movieFactors, movieBias, mean, factors, FOLD_IN_LAMBDA, new double[d * d], new double[d], w);
+        return w;
+    }
+
+    /** Predicted rating of movie index m for a rater vector from raterVector, clamped to 0..10. */
+    double predict(double[] w, int m) {
+        double s = mean + w[factors] + movieBias[m];
+        for (int k = 0, base = m * factors; k < factors; k++) s += w[k] * movieFactors[base + k];
+        return Math.max(0.0, Math.min(10.0, s));
+    }
+
+    /** Root mean squared error over every rating in rs that the model covers. */
+    public double rmse(RaterSnapshot rs) {
+        double sq = 0.0;
+        long n = 0;
+        IdDictionary rated = rs.getMovieIDs();
+        for (Rater r : rs.getRaters()) {
+            SparseVector v = rs.getVector(r.getID());
+            double[] w = (v == null) ? null : raterVector(rs, r.getID());
+            if (w == null) continue;
+            for (int p = 0; p < v.size(); p++) {
+                int m = movieIDs.indexOf(rated.get(v.indexAt(p)));
+                if (m < 0) continue;
+                double e = predict(w, m) - v.ratingAt(p);
+                sq += e * e;
+                n++;
+            }
+        }
+        return (n == 0) ? 0.0 : Math.sqrt(sq / n);
+    }
+
+    // ---------- file ----------
+    public void write(Path file) throws IOException {
+        try (DataOutputStream out = BinarySnapshot.open(file)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(factors);
+            out.writeFloat(mean);
+            BinarySnapshot.writeStrings(out, raterIDs);
+            BinarySnapshot.writeStrings(out, movieIDs);
+            writeFloats(out, raterBias);
+            writeFloats(out, raterFactors);
+            writeFloats(out, movieBias);
+            writeFloats(out, movieFactors);
+        }
+        BinarySnapshot.commit(file);
+    }
+
+    /**
+     * Read a model written by write(). A plain buffered stream: every section
+     * is copied into arrays anyway. Counts are checked against the file's
+     * size (in long arithmetic) before anything is allocated, so a damaged
+     * header fails with an IOException rather than a huge allocation.
+     */
+    public static FactorModel read(Path file) throws IOException {
+        long size = Files.size(file);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (size < 16 || in.readInt() != MAGIC) throw new IOException(file + " is not a factor model");
+            int version = in.readInt();
+            if (version != VERSION) throw new IOException(file + " has model version " + version + ", expected " + VERSION);
+            int factors = in.readInt();
+            if (factors < 1) throw new IOException(file + " is damaged (" + factors + " factors)");
+            float mean = in.readFloat();
+            IdDictionary raters = new IdDictionary(), movies = new IdDictionary();
+            for (String id : readStrings(in, file, size)) raters.intern(id);
+            for (String id : readStrings(in, file, size)) movies.intern(id);
+
+            long raterFloats = (long) raters.size() * factors, movieFloats = (long) movies.size() * factors;
+            if (raterFloats > Integer.MAX_VALUE || movieFloats > Integer.MAX_VALUE
+                    || 4 * (raters.size() + raterFloats + movies.size() + movieFloats) > size) {
+                throw new IOException(file + " is damaged (" + raters.size() + " raters, " + movies.size() + " movies, "
+                    + factors + " factors don't fit in " + size + " bytes)");
+            }
+            float[] raterBias = readFloats(in, raters.size());
+            float[] raterFactors = readFloats(in, (int) raterFloats);
+            float[] movieBias = readFloats(in, movies.size());
+            float[] movieFactors = readFloats(in, (int) movieFloats);
+            return new FactorModel(factors, mean, raters, movies, raterBias, raterFactors, movieBias, movieFactors);
+        } catch (EOFException e) {
+            throw new IOException(file + " is truncated", e);
+        }
+    }
+
+    /** A string column as BinarySnapshot.writeStrings lays it out. */
+    private static String[] readStrings(DataInputStream in, Path file, long size) throws IOException {
+        int n = in.readInt();
+        if (n < 0 || 4L * (n + 1) > size) throw new IOException(file + " is damaged (" + n + " IDs)");
+        int[] off = new int[n + 1];
+        for (int i = 0; i <= n; i++) {
+            off[i] = in.readInt();
+            if (off[i] < ((i == 0) ? 0 : off[i - 1]) || off[i] > size) throw new IOException(file + " is damaged (ID offsets)");
+        }
+        byte[] blob = new byte[off[n]];
+        in.readFully(blob);
+        in.readFully(new byte[(4 - blob.length % 4) % 4]);
+        String[] a = new String[n];
+        for (int i = 0; i < n; i++) a[i] = new String(blob, off[i], off[i + 1] - off[i], StandardCharsets.UTF_8);
+        return a;
+    }
+
+    private static void writeFloats(DataOutputStream out, float[] a) throws IOException {
+        for (float x : a) out.writeFloat(x);
+    }
+
+    private static float[] readFloats(DataInputStream in, int n) throws IOException {
+        float[] a = new float[n];
+        for (int i = 0; i < n; i++) a[i] = in.readFloat();
+        return a;
+    }
+}
@@ -0,0 +1,150 @@
+/**
+ * Bitsets over MovieColumns rows: one long per 64 rows, bit (r & 63) of
+ * word r >>> 6 for row r. Bits past the last row are always 0.
+ *
+ * of() turns any Filter into a mask: MaskFilters build their own (and keyed
+ * ones are cached on the table they were built for, so a reload starts a
+ * fresh cache), ColumnFilters are tested row by row, and plain Filters fall
+ * back to satisfies(id) per row. Masks handed out may be shared; never write
+ * to one you didn't make yourself (none(), all() or clone()).
+ */
+public class FilterMasks {
+
+    private FilterMasks() {
+    }
+
+    /** The rows of movies that pass f. */
+    public static long[] of(Filter f, MovieColumns movies) {
+        if (f instanceof MaskFilter) {
+            MaskFilter mf = (MaskFilter) f;
+            String key = mf.key();
+            if (key == null) return mf.mask(movies);
+            long[] bits = movies.cachedMask(key);
+            if (bits == null) {
+                bits = mf.mask(movies);
+                movies.cacheMask(key, bits);
+            }
+            return bits;
+        }
+        long[] bits = none(movies);
+        int n = movies.size();
+        if (f instanceof ColumnFilter) {
+            ColumnFilter cf = (ColumnFilter) f;
+            for (int row = 0; row < n; row++) {
+                if (cf.satisfies(movies, row)) bits[row >>> 6] |= 1L << row;
+            }
+        } else {
+            for (int row = 0; row < n; row++) {
+                if (f.satisfies(movies.getID(row))) bits[row >>> 6] |= 1L << row;
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * A test for single rows of movies, for callers that only look at a few
+     * of them (a request's candidate movies). It reads f's mask when that is
+     * cheap -- cached under its key, or built from an index -- and otherwise
+     * tests each row asked about, so a per-request filter (NotRatedFilter,
+     * a plain Filter) costs the rows touched, not a pass over the catalog.
+     */
+    public static RowTest rowTest(Filter f, MovieColumns movies) {
+        boolean cheap = keyOf(f) != null || f instanceof IndexedFilter;
+        return cheap ? new RowTest(of(f, movies), null, movies) : new RowTest(null, byRow(f), movies);
+    }
+
+    /** See rowTest. One class for both cases, so the call in a row loop stays monomorphic. */
+    public static final class RowTest {
+        private final long[] bits;
+        private final ColumnFilter f;
+        private final MovieColumns movies;
+
+        private RowTest(long[] bits, ColumnFilter f, MovieColumns movies) {
+            this.bits = bits;
+            this.f = f;
+            this.movies = movies;
+        }
+
+        public boolean passes(int row) {
+            return (bits != null) ? get(bits, row) : f.satisfies(movies, row);
+        }
+    }
+
+    /** The cache key of f, or null if it has none. */
+    public static String keyOf(Filter f) {
+        return (f instanceof MaskFilter) ? ((MaskFilter) f).key() : null;
+    }
+
+    /** "op(k1,k2,...)" for a combinator, or null if any part can't be cached. */
+    public static String keyOf(String op, java.util.List<Filter> parts) {
+        StringBuilder sb = new StringBuilder(op).append('(');
+        for (int i = 0; i < parts.size(); i++) {
+            String k = keyOf(parts.get(i));
+            if (k == null) return null;
+            if (i > 0) sb.append(',');
+            sb.append(k);
+        }
+        return sb.append(')').toString();
+    }
+
+    /**
+     * f as a ColumnFilter: itself if it is one, else wrapped to look up the
+     * row's ID. Combinators keep these in a ColumnFilter[] built up front so
+     * their row loops do no instanceof/casts -- mixing those on one class is
+     * slow on HotSpot.
+     */
+    public static ColumnFilter byRow(Filter f) {
+        return (f instanceof ColumnFilter) ? (ColumnFilter) f : new ById(f);
+    }
+
+    private static class ById implements ColumnFilter {
+        private Filter f;
+        ById(Filter f) { this.f = f; }
+        public boolean satisfies(String id) { return f.satisfies(id); }
+        public boolean satisfies(MovieColumns movies, int row) { return f.satisfies(movies.getID(row)); }
+    }
+
+    // ---------- building ----------
+    public static long[] none(MovieColumns movies) {
+        return new long[words(movies.size())];
+    }
+
+    public static long[] all(MovieColumns movies) {
+        long[] bits = new long[words(movies.size())];
+        java.util.Arrays.fill(bits, -1L);
+        clearTail(bits, movies.size());
+        return bits;
+    }
+
+    /** Zero the bits past row n-1 (after a NOT or a fill). */
+    public static void clearTail(long[] bits, int n) {
+        if ((n & 63) != 0) bits[bits.length - 1] &= (1L << n) - 1;
+    }
+
+    public static int words(int rows) {
+        return (rows + 63) >>> 6;
+    }
+
+    // ---------- reading ----------
+    public static boolean get(long[] bits, int row) {
+        return (bits[row >>> 6] & (1L << row)) != 0;
+    }
+
+    public static int count(long[] bits) {
+        int c = 0;
+        for (long w : bits) c += Long.bitCount(w);
+        return c;
+    }
+
+    /** First set row at or after from, or -1; loop with next(bits, r + 1). */
+    public static int next(long[] bits, int from) {
+        int w = from >>> 6;
+        if (w >= bits.length) return -1;
+        long word = bits[w] & (-1L << from);
+        while (true) {
+            if (word != 0) return (w << 6) + Long.numberOfTrailingZeros(word);
+            if (++w == bits.length) return -1;
+            word = bits[w];
+        }
+    }
+}
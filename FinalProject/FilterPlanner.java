@@ -0,0 +1,85 @@
+import java.util.*;
+
+/**
+ * Picks how MovieSnapshot.filterBy answers a query.
+ *
+ * The query is split into its AND parts (nested AllFilters are flattened).
+ * If one of the parts is an IndexedFilter that passes only a small share of
+ * the table, its rows are listed from the index and every other part is
+ * tested on just those rows -- indexed parts first, narrowest first, since
+ * they reject the most. That costs O(log n + k) for a query like "minutes
+ * 85-90". Anything else goes through FilterMasks (a word-at-a-time scan,
+ * cached by filter key).
+ */
+public class FilterPlanner {
+    // use an index only if it cuts the table to 1/16 or less; past that the
+    // bitset scan is as cheap and its result is cached
+    private static final int MAX_SHARE = 16;
+
+    private FilterPlanner() {
+    }
+
+    /** The rows passing f, ascending. */
+    public static int[] rows(Filter f, MovieColumns movies) {
+        int[] planned = indexed(f, movies);
+        return (planned != null) ? planned : toRows(FilterMasks.of(f, movies));
+    }
+
+    /** The rows passing f via its most selective index, ascending; null if no index is worth it. */
+    static int[] indexed(Filter f, MovieColumns movies) {
+        ArrayList<Filter> parts = new ArrayList<>();
+        conjuncts(f, parts);
+
+        int n = parts.size();
+        int[] counts = new int[n];
+        int best = -1;
+        for (int i = 0; i < n; i++) {
+            Filter p = parts.get(i);
+            counts[i] = (p instanceof IndexedFilter) ? ((IndexedFilter) p).count(movies) : Integer.MAX_VALUE;
+            if (counts[i] != Integer.MAX_VALUE && (best < 0 || counts[i] < counts[best])) best = i;
+        }
+        if (best < 0 || (long) counts[best] * MAX_SHARE > movies.size()) return null;
+
+        // the rest, narrowest index first, non-indexed parts last (in the caller's order)
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> Integer.compare(counts[a], counts[b]));
+        ColumnFilter[] rest = new ColumnFilter[n - 1];
+        int r = 0;
+        for (int i : order) {
+            if (i != best) rest[r++] = FilterMasks.byRow(parts.get(i));
+        }
+
+        int[] rows = ((IndexedFilter) parts.get(best)).rows(movies);
+        int k = 0;
+        outer:
+        for (int row : rows) {
+            for (ColumnFilter c : rest) {
+                if (!c.satisfies(movies, row)) continue outer;
+            }
+            rows[k++] = row;
+        }
+        rows = Arrays.copyOf(rows, k);
+        Arrays.sort(rows);
+        return rows;
+    }
+
+    private static void conjuncts(Filter f, ArrayList<Filter> out) {
+        if (f instanceof AllFilters) {
+            for (Filter p : ((AllFilters) f).getFilters()) conjuncts(p, out);
+        } else {
+            out.add(f);
+        }
+    }
+
+    private static int[] toRows(long[] bits) {
+        int[] rows = new int[FilterMasks.count(bits)];
+        int k = 0;
+        for (int w = 0; w < bits.length; w++) {
+            for (long word = bits[w]; word != 0; word &= word - 1) {
+                rows[k++] = (w << 6) + Long.numberOfTrailingZeros(word);
+            }
+        }
+        return rows;
+    }
+}
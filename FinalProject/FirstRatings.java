@@ -97,24 +97,16 @@ public class FirstRatings {
      * Returns an ArrayList<Rater>.
      */
     public ArrayList<Rater> loadRaters(String filename) {
-        // rater_id,movie_id,rating,time
-        HashMap<String, Rater> map = new HashMap<>();
-        FileResource fr = new FileResource(filename);
-        CSVParser parser = fr.getCSVParser();
-
-        for (CSVRecord rec : parser) {
-            String rid = rec.get("rater_id").trim();
-            String mid = rec.get("movie_id").trim();
-            double rating = parseDoubleSafe(rec.get("rating"));
-
-            Rater r = map.get(rid);
-            if (r == null) {
-                r = new Rater(rid);
-                map.put(rid, r);
-            }
-            r.addRating(mid, rating);
-        }
-        return new ArrayList<>(map.values());
+        // rater_id,movie_id,rating,time -- parsed straight from the mapped file,
+        // into EfficientRaters as RaterDatabase does (full double ratings)
+        IdDictionary raterIDs = new IdDictionary();
+        IdDictionary movieIDs = new IdDictionary();
+        ArrayList<Rater> raters = new ArrayList<>();
+        MappedRatingsLoader.load(filename, raterIDs, movieIDs, (r, m, rating) -> {
+            while (raters.size() <= r) raters.add(new EfficientRater(raterIDs.get(raters.size())));
+            raters.get(r).addRating(movieIDs.get(m), rating);
+        });
+        return raters;
     }
 
     /** Do all the required rater prints/calculations for Step 1. */
@@ -182,10 +174,6 @@ public class FirstRatings {
         try { return Integer.parseInt(s.trim()); }
         catch (Exception e) { return 0; }
     }
-    private double parseDoubleSafe(String s) {
-        try { return Double.parseDouble(s.trim()); }
-        catch (Exception e) { return 0.0; }
-    }
     private String getOrEmpty(CSVRecord rec, String col) {
         try { return rec.get(col).trim(); }
         catch (Exception e) { return ""; }
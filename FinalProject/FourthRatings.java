@@ -1,47 +1,180 @@
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.ObjDoubleConsumer;
 
 /**
  * Core recommendation engine for the capstone.
  * Depends on: RaterDatabase, MovieDatabase, Filter, Rating, Rater
+ *
+ * Parallel mode (setParallelism / setPool) is opt-in. Similarities are split
+ * over rater ranges and averages/recommendations over movie ranges; each
+ * range writes only its own slots and the results are merged in the same
+ * order as the sequential loops, so the output is identical. Filters passed
+ * in must then be safe to call from several threads (the bundled ones are).
+ *
+ * Every public call reads one RaterSnapshot/MovieSnapshot for its whole run,
+ * so a reload in the middle can't mix old and new data. Construct with
+ * explicit snapshots to pin an engine to one dataset across several calls.
  */
 public class FourthRatings {
 
-    public FourthRatings() { }
+    /** Which dot-product implementation getSimilarities uses. */
+    public enum SimilarityKernel {
+        /** Original: walk a.getItemsRated() and probe b's HashMap. */
+        HASH_LOOKUP,
+        /** Merge-join of the precomputed centred SparseVectors. */
+        SORTED_MERGE
+    }
+
+    /** How weighted recommendations are gathered. */
+    public enum Accumulation {
+        /** Original: for every movie passing the filter, probe each neighbour. */
+        PER_MOVIE,
+        /** Walk each neighbour's own ratings once, then filter what got touched. */
+        PER_NEIGHBOUR
+    }
+
+    // lent out per call and handed back, like RecommendationRunner's renderers:
+    // a ThreadLocal would keep one per thread, and a new one for every
+    // virtual thread the server starts
+    private static final ArrayBlockingQueue<MovieAccumulator> ACCUMULATORS = new ArrayBlockingQueue<>(64);
+
+    private SimilarityKernel kernel;
+    private Accumulation accumulation;
+    private ForkJoinPool pool;          // null = run on the calling thread
+    private boolean ownsPool;           // made by setParallelism, so ours to shut down
+    private RaterSnapshot pinnedRaters; // null = whatever is current per call
+    private MovieSnapshot pinnedMovies;
+    private NeighbourCache neighbours;  // null = always scan
+    private NeighbourIndex neighbourIndex; // precomputed lists (SimilarityJob), tried first
+    private volatile NeighbourIndex itemNeighbours; // movie -> similar movies (ItemSimilarityJob)
+    private RaterLsh approximate;       // LSH candidates + exact rerank, instead of a scan
+    private volatile FactorModel factorModel; // latent factors for the model-based calls
+
+    public FourthRatings() {
+        this(SimilarityKernel.SORTED_MERGE);
+    }
+
+    public FourthRatings(SimilarityKernel kernel) {
+        this.kernel = kernel;
+        this.accumulation = Accumulation.PER_NEIGHBOUR;
+    }
+
+    /** Engine that always answers from these snapshots (e.g. one per request). */
+    public FourthRatings(RaterSnapshot raters, MovieSnapshot movies) {
+        this(SimilarityKernel.SORTED_MERGE);
+        pinnedRaters = raters;
+        pinnedMovies = movies;
+    }
+
+    private RaterSnapshot raters() {
+        return (pinnedRaters != null) ? pinnedRaters : RaterDatabase.snapshot();
+    }
+
+    private MovieSnapshot movies() {
+        return (pinnedMovies != null) ? pinnedMovies : MovieDatabase.snapshot();
+    }
+
+    public SimilarityKernel getSimilarityKernel() { return kernel; }
+    public void setSimilarityKernel(SimilarityKernel kernel) { this.kernel = kernel; }
+
+    public Accumulation getAccumulation() { return accumulation; }
+    public void setAccumulation(Accumulation accumulation) { this.accumulation = accumulation; }
+
+    /**
+     * Run on a new pool of this many threads; 1 or less goes back to
+     * sequential. The engine owns that pool and shuts it down when it is
+     * replaced, so call setParallelism(1) on an engine you are done with.
+     */
+    public void setParallelism(int threads) {
+        replacePool(threads > 1 ? new ForkJoinPool(threads) : null, threads > 1);
+    }
+
+    /** Run on a caller-owned pool (e.g. shared across engines), or null for sequential. The engine never shuts it down. */
+    public void setPool(ForkJoinPool pool) {
+        replacePool(pool, false);
+    }
+
+    private void replacePool(ForkJoinPool next, boolean owned) {
+        ForkJoinPool old = pool;
+        boolean wasOwned = ownsPool;
+        pool = next;
+        ownsPool = owned;
+        if (wasOwned && old != next) old.shutdown();   // lets running calls finish
+    }
+
+    public boolean isParallel() { return pool != null; }
+
+    /** The pool in use, or null. (Package-private so the tests can see it.) */
+    ForkJoinPool getPool() { return pool; }
+
+    /**
+     * Look neighbour lists up in (and add them to) this cache; null turns it
+     * off. Only used with the SORTED_MERGE kernel, whose scores the cache's
+     * own updates reproduce exactly.
+     */
+    public void setNeighbourCache(NeighbourCache cache) {
+        this.neighbours = cache;
+    }
+
+    /**
+     * Answer neighbour lists from a file written by SimilarityJob, in O(K),
+     * for raters it has and k up to its K; others fall back to the cache or
+     * a scan. The file doesn't see ratings added after it was built.
+     */
+    public void setNeighbourIndex(NeighbourIndex index) {
+        if (index != null && index.getKind() != NeighbourIndex.RATERS) throw new IllegalArgumentException("not a rater neighbour index");
+        this.neighbourIndex = index;
+    }
+
+    /**
+     * Find neighbours approximately: only raters sharing an LSH band with
+     * the user are scored (exactly), so a list may miss some of the true
+     * top k. Takes over from the cache and the scan; a precomputed
+     * NeighbourIndex is still asked first. Null goes back to exact.
+     */
+    public void setApproximateNeighbours(RaterLsh lsh) {
+        this.approximate = lsh;
+    }
 
     // ------------- AVERAGE RATINGS -------------
-    private double getAverageByID(String movieID, int minimalRaters) {
-        int count = 0;
-        double total = 0.0;
-
-        for (Rater r : RaterDatabase.getRaters()) {
-            if (r.hasRating(movieID)) {
-                count++;
-                total += r.getRating(movieID);
-            }
-        }
-        if (count < minimalRaters) return 0.0;
-        return total / count;
+    // Straight from the movie -> ratings index: no scan over raters.
+    private double getAverageByID(RaterSnapshot rs, String movieID, int minimalRaters) {
+        MovieRatings mr = rs.getMovieRatings(movieID);
+        if (mr == null) return 0.0;
+        return mr.getAverage(minimalRaters);
     }
 
     public ArrayList<Rating> getAverageRatings(int minimalRaters) {
-        ArrayList<Rating> out = new ArrayList<>();
-        for (String id : MovieDatabase.getMovies()) {
-            double avg = getAverageByID(id, minimalRaters);
-            if (avg > 0.0) {
-                out.add(new Rating(id, avg));
-            }
-        }
+        ArrayList<Rating> out = averagesFor(raters(), movies().getMovies(), minimalRaters);
         Collections.sort(out); // Rating compares by value ascending
         return out;
     }
 
     public ArrayList<Rating> getAverageRatingsByFilter(int minimalRaters, Filter filterCriteria) {
+        ArrayList<Rating> out = averagesFor(raters(), movies().filterBy(filterCriteria), minimalRaters);
+        Collections.sort(out);
+        return out;
+    }
+
+    /** Averages for ids (dropping zeros), in ids order; split over movie ranges in parallel mode. */
+    private ArrayList<Rating> averagesFor(RaterSnapshot rs, ArrayList<String> ids, int minimalRaters) {
         ArrayList<Rating> out = new ArrayList<>();
-        for (String id : MovieDatabase.filterBy(filterCriteria)) {
-            double avg = getAverageByID(id, minimalRaters);
-            if (avg > 0.0) out.add(new Rating(id, avg));
+        if (pool == null) {
+            for (String id : ids) {
+                double avg = getAverageByID(rs, id, minimalRaters);
+                if (avg > 0.0) out.add(new Rating(id, avg));
+            }
+            return out;
+        }
+        double[] avgs = new double[ids.size()];
+        ParallelRange.forEach(pool, ids.size(), (from, to) -> {
+            for (int i = from; i < to; i++) avgs[i] = getAverageByID(rs, ids.get(i), minimalRaters);
+        });
+        for (int i = 0; i < avgs.length; i++) {
+            if (avgs[i] > 0.0) out.add(new Rating(ids.get(i), avgs[i]));
         }
-        Collections.sort(out);
         return out;
     }
 
@@ -59,65 +192,391 @@ public class FourthRatings {
         return sum;
     }
 
+    /** Similarity of me to r with the selected kernel (mine is null for HASH_LOOKUP). */
+    private double similarity(RaterSnapshot rs, Rater me, SparseVector mine, Rater r) {
+        if (mine != null) return SparseVector.dot(mine, rs.getVector(r.getID()));
+        return dotProduct(me, r);
+    }
+
+    private SparseVector vectorFor(RaterSnapshot rs, String raterID) {
+        return (kernel == SimilarityKernel.SORTED_MERGE) ? rs.getVector(raterID) : null;
+    }
+
+    /** Similarity of raterID to every rater in raters (same order); null if raterID is unknown. */
+    private double[] scoreRaters(RaterSnapshot rs, String raterID, ArrayList<Rater> raters) {
+        Rater me = rs.getRater(raterID);
+        if (me == null) return null;
+        SparseVector mine = vectorFor(rs, raterID);
+        double[] sims = new double[raters.size()];
+        if (pool == null) {
+            for (int i = 0; i < sims.length; i++) sims[i] = similarity(rs, me, mine, raters.get(i));
+        } else {
+            ParallelRange.forEach(pool, sims.length, (from, to) -> {
+                for (int i = from; i < to; i++) sims[i] = similarity(rs, me, mine, raters.get(i));
+            });
+        }
+        return sims;
+    }
+
     /**
      * Return similarities with all other raters as (raterID, similarity),
      * sorted descending by similarity. Negative similarities are dropped.
+     * (Package-private so the benchmarks can call it.)
      */
-    private ArrayList<Rating> getSimilarities(String raterID) {
+    ArrayList<Rating> getSimilarities(String raterID) {
+        long t0 = Metrics.start();
         ArrayList<Rating> sims = new ArrayList<>();
-        Rater me = RaterDatabase.getRater(raterID);
-        if (me == null) return sims;
-
-        for (Rater r : RaterDatabase.getRaters()) {
-            if (r.getID().equals(raterID)) continue;
-            double sim = dotProduct(me, r);
-            if (sim > 0) {
-                sims.add(new Rating(r.getID(), sim));
+        RaterSnapshot rs = raters();
+        ArrayList<Rater> raters = rs.getRaters();
+        double[] scores = scoreRaters(rs, raterID, raters);
+        if (scores == null) {
+            Metrics.SIMILARITY.stop(t0);
+            return sims;
+        }
+
+        for (int i = 0; i < scores.length; i++) {
+            String otherID = raters.get(i).getID();
+            if (otherID.equals(raterID)) continue;
+            if (scores[i] > 0) {
+                sims.add(new Rating(otherID, scores[i]));
             }
         }
 
         // Sort descending by value
         Collections.sort(sims, Collections.reverseOrder());
+        Metrics.SIMILARITY.stop(t0);
         return sims;
     }
 
+    /**
+     * The k raters most similar to raterID (positive similarity only), best
+     * first, ties broken by rater ID. Heap-selects instead of sorting everyone.
+     */
+    public ArrayList<Rating> getTopSimilarities(String raterID, int k) {
+        return topSimilarities(raters(), raterID, k);
+    }
+
+    private ArrayList<Rating> topSimilarities(RaterSnapshot rs, String raterID, int k) {
+        long t0 = Metrics.start();
+        ArrayList<Rating> top = findTopSimilarities(rs, raterID, k);
+        Metrics.SIMILARITY.stop(t0);
+        return top;
+    }
+
+    private ArrayList<Rating> findTopSimilarities(RaterSnapshot rs, String raterID, int k) {
+        if (neighbourIndex != null && k <= neighbourIndex.getK()) {
+            ArrayList<Rating> top = neighbourIndex.top(raterID, k);
+            if (top != null) return top;
+        }
+        if (approximate != null) return approximate.top(rs, raterID, k);
+        if (neighbours != null && kernel == SimilarityKernel.SORTED_MERGE) {
+            return neighbours.get(rs, raterID, k, n -> scanTopSimilarities(rs, raterID, n));
+        }
+        return scanTopSimilarities(rs, raterID, k);
+    }
+
+    private ArrayList<Rating> scanTopSimilarities(RaterSnapshot rs, String raterID, int k) {
+        TopRatings top = new TopRatings(k);
+        ArrayList<Rater> raters = rs.getRaters();
+        double[] scores = scoreRaters(rs, raterID, raters);
+        if (scores == null) return top.toList();
+
+        for (int i = 0; i < scores.length; i++) {
+            String otherID = raters.get(i).getID();
+            if (otherID.equals(raterID)) continue;
+            if (scores[i] > 0) top.offer(otherID, scores[i]);
+        }
+        return top.toList();
+    }
+
     // ------------- WEIGHTED RECOMMENDATIONS -------------
     public ArrayList<Rating> getSimilarRatings(String raterID, int numSimilarRaters, int minimalRaters) {
         return getSimilarRatingsByFilter(raterID, numSimilarRaters, minimalRaters, new TrueFilter());
     }
 
+    /** All recommendations, high -> low (ties by movie ID). */
     public ArrayList<Rating> getSimilarRatingsByFilter(String raterID, int numSimilarRaters, int minimalRaters, Filter filterCriteria) {
-        ArrayList<Rating> similar = getSimilarities(raterID);
-        int topN = Math.min(numSimilarRaters, similar.size());
-
+        long t0 = Metrics.start();
         ArrayList<Rating> recommendations = new ArrayList<>();
-        for (String movieID : MovieDatabase.filterBy(filterCriteria)) {
-            double weightedSum = 0.0;
-            double sumWeights  = 0.0;
-            int ratersCounted  = 0;
-
-            for (int k = 0; k < topN; k++) {
-                Rating sim = similar.get(k);
-                String otherID = sim.getItem();     // stores raterID here
-                double weight  = sim.getValue();    // similarity weight
-
-                Rater r = RaterDatabase.getRater(otherID);
-                if (r != null && r.hasRating(movieID)) {
-                    ratersCounted++;
-                    weightedSum += weight * r.getRating(movieID);  // weight × raw rating
-                    sumWeights  += Math.abs(weight);
+        RaterSnapshot rs = raters();
+        ArrayList<Rating> similar = topSimilarities(rs, raterID, numSimilarRaters);
+        long t1 = Metrics.start();
+        weightedAverages(rs, movies(), similar, minimalRaters, filterCriteria,
+                         (movieID, avg) -> recommendations.add(new Rating(movieID, avg)));
+        Metrics.ACCUMULATION.stop(t1);
+        long t2 = Metrics.start();
+        Collections.sort(recommendations, TopRatings.BEST_FIRST);
+        Metrics.SORTING.stop(t2);
+        Metrics.RECOMMENDATIONS.stop(t0);
+        return recommendations;
+    }
+
+    /**
+     * Only the k best recommendations, same scoring as getSimilarRatingsByFilter
+     * but heap-selected, so a page of 15 doesn't pay for sorting the catalog.
+     */
+    public ArrayList<Rating> getTopRecommendations(String raterID, int k, int numSimilarRaters, int minimalRaters, Filter filterCriteria) {
+        long t0 = Metrics.start();
+        TopRatings top = new TopRatings(k);
+        RaterSnapshot rs = raters();
+        ArrayList<Rating> similar = topSimilarities(rs, raterID, numSimilarRaters);
+        long t1 = Metrics.start();
+        weightedAverages(rs, movies(), similar, minimalRaters, filterCriteria, top::offer);
+        Metrics.ACCUMULATION.stop(t1);
+        long t2 = Metrics.start();
+        ArrayList<Rating> page = top.toList();
+        Metrics.SORTING.stop(t2);
+        Metrics.RECOMMENDATIONS.stop(t0);
+        return page;
+    }
+
+    /** Weighted average per movie over the given neighbours, passed to sink. */
+    private void weightedAverages(RaterSnapshot rs, MovieSnapshot ms, ArrayList<Rating> similar, int minimalRaters, Filter filterCriteria,
+                                  ObjDoubleConsumer<String> sink) {
+        if (accumulation == Accumulation.PER_NEIGHBOUR) {
+            pushNeighbourRatings(rs, ms, similar, minimalRaters, filterCriteria, sink);
+        } else {
+            pullPerMovie(rs, ms, similar, minimalRaters, filterCriteria, sink);
+        }
+    }
+
+    /**
+     * Cost ~ sum of the neighbours' rating counts. Neighbours are pushed in
+     * rank order, so each movie's sums add up in the same order as the
+     * per-movie loop and the averages come out bit-for-bit the same.
+     * In parallel mode the dense movie index space is cut into ranges and
+     * each range pushes only its own slice of every neighbour's vector.
+     */
+    private void pushNeighbourRatings(RaterSnapshot rs, MovieSnapshot ms, ArrayList<Rating> similar, int minimalRaters, Filter filterCriteria,
+                                      ObjDoubleConsumer<String> sink) {
+        IdDictionary movies = rs.getMovieIDs();
+        int numMovies = movies.size();
+        SparseVector[] vectors = new SparseVector[similar.size()];
+        double[] weights = new double[similar.size()];
+        for (int k = 0; k < vectors.length; k++) {
+            vectors[k] = rs.getVector(similar.get(k).getItem());
+            weights[k] = similar.get(k).getValue();
+        }
+
+        // candidates are tested by their row (rows[m] < 0 = not in the movie
+        // table): a bit of the filter's mask if it is cached or indexed, else
+        // the filter itself on just the rows the neighbours touch
+        MovieColumns cols = ms.getColumns();
+        FilterMasks.RowTest allowed = FilterMasks.rowTest(filterCriteria, cols);
+        int[] rows = cols.rowsOf(movies);
+
+        if (pool == null) {
+            pushRange(vectors, weights, 0, numMovies, minimalRaters, allowed, rows, movies, sink);
+            return;
+        }
+        int chunks = Math.min(numMovies, pool.getParallelism() * 8);
+        ArrayList<ArrayList<Rating>> parts = new ArrayList<>();
+        for (int c = 0; c < chunks; c++) parts.add(new ArrayList<>());
+        ParallelRange.forEach(pool, chunks, (from, to) -> {
+            for (int c = from; c < to; c++) {
+                ArrayList<Rating> part = parts.get(c);
+                long lo = (long) numMovies * c / chunks, hi = (long) numMovies * (c + 1) / chunks;
+                pushRange(vectors, weights, (int) lo, (int) hi, minimalRaters, allowed, rows, movies,
+                          (movieID, avg) -> part.add(new Rating(movieID, avg)));
+            }
+        });
+        for (ArrayList<Rating> part : parts) {
+            for (Rating r : part) sink.accept(r.getItem(), r.getValue());
+        }
+    }
+
+    /** Push the neighbours' ratings of movies lo..hi-1 and emit the ones that qualify. */
+    private void pushRange(SparseVector[] vectors, double[] weights, int lo, int hi, int minimalRaters,
+                           FilterMasks.RowTest allowed, int[] rows, IdDictionary movies, ObjDoubleConsumer<String> sink) {
+        MovieAccumulator acc = borrowAccumulator(movies.size());
+        try {
+            for (int n = 0; n < vectors.length; n++) {
+                SparseVector v = vectors[n];
+                if (v == null) continue;
+                double weight = weights[n];
+                for (int k = v.lowerBound(lo); k < v.size() && v.indexAt(k) < hi; k++) {
+                    acc.add(v.indexAt(k), weight, v.ratingAt(k));
                 }
             }
 
-            if (ratersCounted >= minimalRaters && sumWeights > 0) {
-                double weightedAvg = weightedSum / sumWeights;
-                recommendations.add(new Rating(movieID, weightedAvg));
+            for (int t = 0; t < acc.numTouched(); t++) {
+                int m = acc.touchedAt(t);
+                double sumWeights = acc.getSumWeights(m);
+                if (acc.getCount(m) < minimalRaters || !(sumWeights > 0)) continue;
+                int row = rows[m];
+                if (row < 0 || !allowed.passes(row)) continue;
+                sink.accept(movies.get(m), acc.getWeightedSum(m) / sumWeights);
             }
+        } finally {
+            ACCUMULATORS.offer(acc);
         }
+    }
 
-        // Sort high -> low
-        Collections.sort(recommendations, Collections.reverseOrder());
-        return recommendations;
+    /** A pooled accumulator (or a new one), reset for n movies. Offer it back to ACCUMULATORS when done. */
+    private static MovieAccumulator borrowAccumulator(int n) {
+        MovieAccumulator acc = ACCUMULATORS.poll();
+        if (acc == null) acc = new MovieAccumulator();
+        acc.reset(n);
+        return acc;
+    }
+
+    private void pullPerMovie(RaterSnapshot rs, MovieSnapshot ms, ArrayList<Rating> similar, int minimalRaters, Filter filterCriteria,
+                              ObjDoubleConsumer<String> sink) {
+        ArrayList<String> ids = ms.filterBy(filterCriteria);
+        double[] avgs = new double[ids.size()];
+        if (pool == null) {
+            for (int i = 0; i < avgs.length; i++) avgs[i] = pullOne(rs, similar, minimalRaters, ids.get(i));
+        } else {
+            ParallelRange.forEach(pool, avgs.length, (from, to) -> {
+                for (int i = from; i < to; i++) avgs[i] = pullOne(rs, similar, minimalRaters, ids.get(i));
+            });
+        }
+        for (int i = 0; i < avgs.length; i++) {
+            if (!Double.isNaN(avgs[i])) sink.accept(ids.get(i), avgs[i]);
+        }
+    }
+
+    /** Weighted average of one movie over the neighbours, or NaN if it doesn't qualify. */
+    private double pullOne(RaterSnapshot rs, ArrayList<Rating> similar, int minimalRaters, String movieID) {
+        int topN = similar.size();
+        double weightedSum = 0.0;
+        double sumWeights  = 0.0;
+        int ratersCounted  = 0;
+
+        for (int k = 0; k < topN; k++) {
+            Rating sim = similar.get(k);
+            String otherID = sim.getItem();     // stores raterID here
+            double weight  = sim.getValue();    // similarity weight
+
+            Rater r = rs.getRater(otherID);
+            if (r != null && r.hasRating(movieID)) {
+                ratersCounted++;
+                weightedSum += weight * r.getRating(movieID);  // weight × raw rating
+                sumWeights  += Math.abs(weight);
+            }
+        }
+
+        if (ratersCounted >= minimalRaters && sumWeights > 0) {
+            return weightedSum / sumWeights;
+        }
+        return Double.NaN;
+    }
+
+    // ------------- ITEM-BASED RECOMMENDATIONS -------------
+    /**
+     * Use this movie -> similar movies index (ItemSimilarityJob) for the
+     * item-based calls; they need one. Build it offline, or once with
+     * ItemSimilarityJob.build and share it: building it costs about a full
+     * pass over the ratings, far too much for a request. Like
+     * setNeighbourIndex, it doesn't see ratings added after it was built.
+     */
+    public void setItemNeighbours(NeighbourIndex items) {
+        if (items != null && items.getKind() != NeighbourIndex.MOVIES) throw new IllegalArgumentException("not a movie neighbour index");
+        this.itemNeighbours = items;
+    }
+
+    public ArrayList<Rating> getItemSimilarRatings(String raterID, int numSimilarItems, int minimalItems) {
+        return getItemSimilarRatingsByFilter(raterID, numSimilarItems, minimalItems, new TrueFilter());
+    }
+
+    /**
+     * Item-based counterpart of getSimilarRatingsByFilter. Each movie the
+     * rater rated lends its rating to its numSimilarItems most similar
+     * movies, weighted by similarity; a movie's score is the weighted average
+     * of what it was lent, if at least minimalItems of the rater's movies
+     * lent to it. Cost ~ the rater's ratings x numSimilarItems, whatever the
+     * number of raters. All recommendations, high -> low (ties by movie ID).
+     * numSimilarItems can't be more than the index's K (IllegalArgumentException),
+     * and without setItemNeighbours this throws IllegalStateException.
+     */
+    public ArrayList<Rating> getItemSimilarRatingsByFilter(String raterID, int numSimilarItems, int minimalItems, Filter filterCriteria) {
+        NeighbourIndex items = itemNeighbours;
+        if (items == null) throw new IllegalStateException("no movie neighbour index; see setItemNeighbours");
+        if (numSimilarItems > items.getK()) {
+            throw new IllegalArgumentException("numSimilarItems " + numSimilarItems + " is more than the index keeps (" + items.getK() + ")");
+        }
+        ArrayList<Rating> out = new ArrayList<>();
+        RaterSnapshot rs = raters();
+        MovieSnapshot ms = movies();
+        SparseVector mine = rs.getVector(raterID);
+        if (mine == null) return out;
+
+        IdDictionary rated = rs.getMovieIDs(), ids = items.getIDs();
+        MovieAccumulator acc = borrowAccumulator(ids.size());
+        try {
+            for (int p = 0; p < mine.size(); p++) {
+                int i = ids.indexOf(rated.get(mine.indexAt(p)));
+                if (i < 0) continue;
+                double rating = mine.ratingAt(p);
+                for (int j = items.start(i), end = Math.min(items.end(i), j + Math.max(0, numSimilarItems)); j < end; j++) {
+                    acc.add(items.neighbourAt(j), items.scoreAt(j), rating);
+                }
+            }
+
+            MovieColumns cols = ms.getColumns();
+            FilterMasks.RowTest allowed = FilterMasks.rowTest(filterCriteria, cols);
+            int[] rows = cols.rowsOf(ids);
+            for (int t = 0; t < acc.numTouched(); t++) {
+                int m = acc.touchedAt(t);
+                double sumWeights = acc.getSumWeights(m);
+                if (acc.getCount(m) < minimalItems || !(sumWeights > 0)) continue;
+                int row = rows[m];
+                if (row < 0 || !allowed.passes(row)) continue;
+                out.add(new Rating(ids.get(m), acc.getWeightedSum(m) / sumWeights));
+            }
+        } finally {
+            ACCUMULATORS.offer(acc);
+        }
+        Collections.sort(out, TopRatings.BEST_FIRST);
+        return out;
+    }
+
+    // ------------- LATENT FACTORS -------------
+    /**
+     * Use this trained model (FactorModel) for the factor-based calls; they
+     * need one. Train it offline (FactorModel.read) or once with
+     * FactorModel.train and share it -- training is far too slow for a
+     * request.
+     */
+    public void setFactorModel(FactorModel model) {
+        this.factorModel = model;
+    }
+
+    /**
+     * Predicted rating of every movie passing the filter, high -> low (ties
+     * by movie ID). One dot product per candidate movie, no neighbours: cost
+     * is the catalog x factors whatever the rater's overlap with others.
+     * Raters the model hasn't seen are fitted to their current ratings on
+     * the fly; unknown raters get nothing. Without setFactorModel this
+     * throws IllegalStateException.
+     */
+    public ArrayList<Rating> getFactorRatingsByFilter(String raterID, Filter filterCriteria) {
+        ArrayList<Rating> out = new ArrayList<>();
+        factorScores(raters(), movies(), raterID, filterCriteria, (movieID, score) -> out.add(new Rating(movieID, score)));
+        Collections.sort(out, TopRatings.BEST_FIRST);
+        return out;
     }
-}
 
+    /** The k best of getFactorRatingsByFilter, heap-selected. */
+    public ArrayList<Rating> getTopFactorRecommendations(String raterID, int k, Filter filterCriteria) {
+        TopRatings top = new TopRatings(k);
+        factorScores(raters(), movies(), raterID, filterCriteria, top::offer);
+        return top.toList();
+    }
+
+    private void factorScores(RaterSnapshot rs, MovieSnapshot ms, String raterID, Filter filterCriteria, ObjDoubleConsumer<String> sink) {
+        FactorModel model = factorModel;
+        if (model == null) throw new IllegalStateException("no factor model; see setFactorModel");
+        double[] w = model.raterVector(rs, raterID);
+        if (w == null) return;
+        IdDictionary ids = model.getMovieIDs();
+        MovieColumns cols = ms.getColumns();
+        FilterMasks.RowTest allowed = FilterMasks.rowTest(filterCriteria, cols);
+        int[] rows = cols.rowsOf(ids);
+        for (int m = 0; m < rows.length; m++) {
+            int row = rows[m];
+            if (row < 0 || !allowed.passes(row)) continue;
+            sink.accept(ids.get(m), model.predict(w, m));
+        }
+    }
+}
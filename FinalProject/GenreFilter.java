@@ -0,0 +1,10 @@
+
+/** Passes movies listing the genre (or any of a comma-separated list of genres). */
+public class GenreFilter extends TokenFilter {
+    public GenreFilter(String genre) {
+        super("genre", genre);
+    }
+    protected TokenIndex index(MovieColumns movies) { return movies.genresIndex(); }
+    protected String value(String id) { return MovieDatabase.getGenres(id); }
+}
+
@@ -0,0 +1,34 @@
+/**
+ * HTML escaping, shared by PageRenderer (which escapes into its own
+ * buffer) and RecommendationServer (into a StringBuilder). One pass over
+ * the string; runs of plain characters are copied in one go.
+ */
+public final class Html {
+
+    private Html() {
+    }
+
+    /** The entity for c, or null if c can go out as is. ' only needs one inside a ''-quoted attribute. */
+    public static String entity(char c, boolean attribute) {
+        switch (c) {
+            case '&':  return "&amp;";
+            case '<':  return "&lt;";
+            case '>':  return "&gt;";
+            case '\'': return attribute ? "&#39;" : null;
+            default:   return null;
+        }
+    }
+
+    /** s escaped onto sb (nothing for null). */
+    public static StringBuilder escape(StringBuilder sb, String s, boolean attribute) {
+        if (s == null) return sb;
+        int from = 0, n = s.length();
+        for (int i = 0; i < n; i++) {
+            String entity = entity(s.charAt(i), attribute);
+            if (entity == null) continue;
+            sb.append(s, from, i).append(entity);
+            from = i + 1;
+        }
+        return sb.append(s, from, n);
+    }
+}
@@ -0,0 +1,127 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.*;
+import java.util.*;
+
+/**
+ * Interns string IDs (movie_id, rater_id) to dense ints 0..size()-1 and back.
+ * The compact rating store keys everything by these ints instead of Strings.
+ *
+ * Backed by an open-addressing table over String hash codes, so the mapped
+ * ratings loader can look IDs up straight from file bytes (internAscii) and
+ * only creates a String the first time it meets an ID.
+ */
+public class IdDictionary {
+    private String[] ids;
+    private long[] table;     // slot -> (hash << 32) | (index + 1), 0 = empty
+    private int size;
+
+    public IdDictionary() {
+        ids = new String[16];
+        table = new long[32];
+        size = 0;
+    }
+
+    /** Independent copy with the same indices (so a new snapshot can keep adding IDs). */
+    public IdDictionary copy() {
+        IdDictionary d = new IdDictionary();
+        d.ids = Arrays.copyOf(ids, ids.length);
+        d.table = Arrays.copyOf(table, table.length);
+        d.size = size;
+        return d;
+    }
+
+    /** Dense index for id, assigning the next free one if it is new. */
+    public int intern(String id) {
+        int h = id.hashCode();
+        int mask = table.length - 1;
+        for (int slot = mix(h) & mask; ; slot = (slot + 1) & mask) {
+            long e = table[slot];
+            if (e == 0) return add(id, h, slot);
+            if ((int) (e >>> 32) == h && ids[(int) e - 1].equals(id)) return (int) e - 1;
+        }
+    }
+
+    /** Dense index for id, or -1 if it was never interned. */
+    public int indexOf(String id) {
+        int h = id.hashCode();
+        int mask = table.length - 1;
+        for (int slot = mix(h) & mask; ; slot = (slot + 1) & mask) {
+            long e = table[slot];
+            if (e == 0) return -1;
+            if ((int) (e >>> 32) == h && ids[(int) e - 1].equals(id)) return (int) e - 1;
+        }
+    }
+
+    /**
+     * intern() for an ID given as the bytes buf[off..off+len) (absolute
+     * positions; a mapped file works). ASCII IDs are matched byte-for-byte
+     * without allocating; anything else is decoded as UTF-8 and goes
+     * through intern().
+     */
+    public int internAscii(ByteBuffer buf, int off, int len) {
+        int h = 0;
+        for (int i = 0; i < len; i++) {
+            byte b = buf.get(off + i);
+            if (b < 0) return intern(decode(buf, off, len, StandardCharsets.UTF_8));
+            h = 31 * h + b;   // same as String.hashCode for ASCII
+        }
+        int mask = table.length - 1;
+        for (int slot = mix(h) & mask; ; slot = (slot + 1) & mask) {
+            long e = table[slot];
+            if (e == 0) return add(decode(buf, off, len, StandardCharsets.ISO_8859_1), h, slot);
+            if ((int) (e >>> 32) == h && sameAscii(ids[(int) e - 1], buf, off, len)) return (int) e - 1;
+        }
+    }
+
+    /** The string ID stored at a dense index. */
+    public String get(int i) {
+        if (i < 0 || i >= size) throw new IndexOutOfBoundsException("no ID at " + i);
+        return ids[i];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // ---- table upkeep ----
+    private int add(String id, int h, int slot) {
+        if (size == ids.length) ids = Arrays.copyOf(ids, size * 2);
+        int index = size++;
+        ids[index] = id;
+        table[slot] = ((long) h << 32) | (index + 1);
+        if (size * 2 > table.length) rehash();
+        return index;
+    }
+
+    private void rehash() {
+        long[] t = new long[table.length * 2];
+        int mask = t.length - 1;
+        for (long e : table) {
+            if (e == 0) continue;
+            int slot = mix((int) (e >>> 32)) & mask;
+            while (t[slot] != 0) slot = (slot + 1) & mask;
+            t[slot] = e;
+        }
+        table = t;
+    }
+
+    /** Fibonacci hashing: the top bits of h * 2^32/phi, so runs of similar IDs still spread out. */
+    private static int mix(int h) {
+        h *= 0x9E3779B9;
+        return (h >>> 16) | (h << 16);
+    }
+
+    private static boolean sameAscii(String s, ByteBuffer buf, int off, int len) {
+        if (s.length() != len) return false;
+        for (int i = 0; i < len; i++) {
+            if (s.charAt(i) != buf.get(off + i)) return false;
+        }
+        return true;
+    }
+
+    private static String decode(ByteBuffer buf, int off, int len, Charset cs) {
+        byte[] b = new byte[len];
+        for (int i = 0; i < len; i++) b[i] = buf.get(off + i);
+        return new String(b, cs);
+    }
+}
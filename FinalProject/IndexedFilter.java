@@ -0,0 +1,12 @@
+/**
+ * A MaskFilter that can list its passing rows straight from an index on
+ * MovieColumns. The query planner (FilterPlanner) uses count() to pick the
+ * most selective part of a query and rows() to start from it, so a narrow
+ * filter costs about as much as the movies it returns.
+ */
+public interface IndexedFilter extends MaskFilter {
+    /** How many rows pass, without listing them (cheap: O(log n) or so). */
+    public int count(MovieColumns movies);
+    /** The passing rows, in any order (a fresh array the caller may keep). */
+    public int[] rows(MovieColumns movies);
+}
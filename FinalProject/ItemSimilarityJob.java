@@ -0,0 +1,89 @@
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Offline job for item-based recommendations: every movie's top-K most
+ * similar movies, kept as a NeighbourIndex of kind MOVIES.
+ *
+ *   java ItemSimilarityJob [ratings.csv] [out.iknn] [k] [threads]
+ *
+ * Similarity is the cosine of two movies' centred (rating - 5) columns,
+ * each normalised over all of its raters, so a pair that shares one or two
+ * raters scores low unless those are most of both movies' ratings. Only
+ * positive similarities are kept.
+ *
+ * For movie i, every rater of i pushes (their centred rating of i) x (their
+ * centred rating of j) into j's running sum, for each movie j they rated;
+ * movies nobody co-rated with i are never touched. Movies are split over the
+ * pool in ranges, each with its own accumulator arrays.
+ */
+public class ItemSimilarityJob {
+
+    public static void main(String[] args) throws IOException {
+        String ratings = (args.length > 0) ? args[0] : "ratings.csv";
+        String out     = (args.length > 1) ? args[1] : ratings + ".iknn";
+        int k          = (args.length > 2) ? Integer.parseInt(args[2]) : 50;
+        int threads    = (args.length > 3) ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+
+        RaterDatabase.setCompactStorage(true);
+        RaterDatabase.initialize(ratings);
+        ForkJoinPool pool = (threads > 1) ? new ForkJoinPool(threads) : null;
+        long t0 = System.nanoTime();
+        NeighbourIndex idx = build(RaterDatabase.snapshot(), k, pool);
+        long t1 = System.nanoTime();
+        if (pool != null) pool.shutdown();
+        idx.write(Paths.get(out));
+        System.out.println(String.format(Locale.US, "%s: %d movies, top %d each, in %.2f s", out, idx.size(), k, (t1 - t0) / 1e9));
+    }
+
+    /** The top-k neighbours of every movie in rs; pool may be null (one thread). */
+    public static NeighbourIndex build(RaterSnapshot rs, int k, ForkJoinPool pool) {
+        RatingColumns cols = new RatingColumns(rs);
+        int numMovies = cols.numMovies();
+        double[] norm = new double[numMovies];
+        for (int m = 0; m < numMovies; m++) {
+            double s = 0.0;
+            for (int q = cols.colStart[m]; q < cols.colStart[m + 1]; q++) s += cols.colCentred[q] * cols.colCentred[q];
+            norm[m] = Math.sqrt(s);
+        }
+
+        String[] ids = new String[numMovies];
+        for (int m = 0; m < numMovies; m++) ids[m] = cols.movies.get(m);
+        int[][] nb = new int[numMovies][];
+        float[][] sc = new float[numMovies][];
+        ParallelRange.Body body = (from, to) -> {
+            RatingColumns.CoRatings co = new RatingColumns.CoRatings(numMovies);     // scratch for this range, cleared after each movie
+            for (int i = from; i < to; i++) {
+                cols.addMovieDots(i, co);
+                TopRatings top = new TopRatings(k);
+                for (int t = 0; t < co.numTouched(); t++) {
+                    int j = co.touchedAt(t);
+                    double sim = (j == i || norm[i] == 0 || norm[j] == 0) ? 0.0 : co.dot(j) / (norm[i] * norm[j]);
+                    if (sim > 0) top.offer(ids[j], sim);
+                }
+                co.clear();
+                ArrayList<Rating> best = top.toList();
+                nb[i] = new int[best.size()];
+                sc[i] = new float[best.size()];
+                for (int r = 0; r < best.size(); r++) {
+                    nb[i][r] = cols.movies.indexOf(best.get(r).getItem());
+                    sc[i][r] = (float) best.get(r).getValue();
+                }
+            }
+        };
+        if (pool == null) body.run(0, numMovies);
+        else ParallelRange.forEach(pool, numMovies, body);
+
+        int[] rowStart = new int[numMovies + 1];
+        for (int m = 0; m < numMovies; m++) rowStart[m + 1] = rowStart[m] + nb[m].length;
+        int[] neighbours = new int[rowStart[numMovies]];
+        float[] scores = new float[neighbours.length];
+        for (int m = 0; m < numMovies; m++) {
+            System.arraycopy(nb[m], 0, neighbours, rowStart[m], nb[m].length);
+            System.arraycopy(sc[m], 0, scores, rowStart[m], sc[m].length);
+        }
+        return new NeighbourIndex(NeighbourIndex.MOVIES, k, ids, rowStart, neighbours, scores);
+    }
+}
@@ -0,0 +1,39 @@
+/**
+ * The bits of JSON the server and the batch job write by hand: string
+ * literals and numbers, appended to a StringBuilder in one pass.
+ */
+public final class Json {
+
+    private Json() {
+    }
+
+    /** s as a JSON string literal (null as null). */
+    public static StringBuilder string(StringBuilder sb, String s) {
+        if (s == null) return sb.append("null");
+        sb.append('"');
+        int from = 0, n = s.length();
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\') continue;
+            sb.append(s, from, i);
+            switch (c) {
+                case '"':  sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    sb.append("\\u00").append(HEX[c >>> 4]).append(HEX[c & 0xF]);
+            }
+            from = i + 1;
+        }
+        return sb.append(s, from, n).append('"');
+    }
+
+    /** v as a JSON number; NaN and the infinities aren't numbers in JSON, so they come out as null. */
+    public static StringBuilder number(StringBuilder sb, double v) {
+        return (Double.isNaN(v) || Double.isInfinite(v)) ? sb.append("null") : sb.append(v);
+    }
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+}
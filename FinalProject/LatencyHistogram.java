@@ -0,0 +1,93 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts of non-negative values (nanoseconds, usually) in log-linear
+ * buckets, HdrHistogram style: values below 64 get a bucket each, and every
+ * power of two above that is split into 32 equal buckets. A value is then
+ * reported to within 1/32 (~3%) of itself, anywhere from 1 ns to centuries,
+ * in a fixed 1920 counters.
+ *
+ * record() is lock-free (one atomic add per bucket, plus the totals), so it
+ * can sit on hot paths called from many threads. Percentiles are read from
+ * a live histogram without stopping writers, so a reading taken while
+ * values are coming in can be off by the values in flight.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BITS = 5;
+    private static final int SUB = 1 << SUB_BITS;                   // buckets per power of two
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB;       // shift 0..58, mantissa SUB..2*SUB-1
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long value) {
+        if (value < 0) value = 0;
+        counts.incrementAndGet(bucket(value));
+        count.increment();
+        sum.add(value);
+        long m = max.get();
+        while (value > m && !max.compareAndSet(m, value)) m = max.get();
+    }
+
+    public long getCount() { return count.sum(); }
+    public long getMax()   { return max.get(); }
+
+    public double getMean() {
+        long n = count.sum();
+        return (n == 0) ? 0.0 : (double) sum.sum() / n;
+    }
+
+    /**
+     * The value at quantile q (0..1): the middle of the bucket holding the
+     * q-th value, or the max if that is smaller (or q is the top). 0 when
+     * empty.
+     */
+    public long getValueAt(double q) {
+        long n = 0;
+        long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            n += snapshot[i];
+        }
+        if (n == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(Math.min(1.0, Math.max(0.0, q)) * n));
+        if (rank >= n) return getMax();
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) return Math.min(middle(i), getMax());
+        }
+        return getMax();
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) counts.set(i, 0);
+        count.reset();
+        sum.reset();
+        max.set(0);
+    }
+
+    /** Bucket of v: v itself below 2*SUB, else (shift, top SUB_BITS+1 bits). */
+    static int bucket(long v) {
+        if (v < 2 * SUB) return (int) v;
+        int shift = (63 - Long.numberOfLeadingZeros(v)) - SUB_BITS;
+        return shift * SUB + (int) (v >>> shift);
+    }
+
+    /** Smallest value in bucket i. */
+    static long lowest(int i) {
+        if (i < 2 * SUB) return i;
+        int shift = i / SUB - 1;
+        return (long) (i - shift * SUB) << shift;
+    }
+
+    private static long middle(int i) {
+        if (i < 2 * SUB) return i;
+        int shift = i / SUB - 1;
+        return lowest(i) + ((1L << shift) >>> 1);
+    }
+}
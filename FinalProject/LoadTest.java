@@ -0,0 +1,102 @@
+import java.io.*;
+import java.net.URI;
+import java.net.http.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A closed-loop load test for RecommendationServer: a number of clients,
+ * each sending its next request as soon as the last one is answered, for a
+ * fixed time. Prints requests/s and the latency percentiles.
+ *
+ *   java LoadTest [baseUrl] [clients] [seconds] [path] [ratings.csv]
+ *
+ * e.g. java LoadTest http://localhost:8080 16 30 /recommendations?rater=
+ *
+ * The path gets a rater ID appended, picked at random from the ratings file
+ * (-Dratings.file or ratings.csv by default), so requests spread over the
+ * users. A path with no trailing '=' is sent as is. The first few seconds
+ * warm the server up and are not counted. Non-200 answers and failed
+ * connections are counted as errors, and not in the latencies.
+ */
+public class LoadTest {
+
+    public static void main(String[] args) throws Exception {
+        String base     = (args.length > 0) ? args[0] : "http://localhost:8080";
+        int clients     = (args.length > 1) ? Integer.parseInt(args[1]) : 16;
+        int seconds     = (args.length > 2) ? Integer.parseInt(args[2]) : 20;
+        String path     = (args.length > 3) ? args[3] : "/recommendations?rater=";
+        String ratings  = (args.length > 4) ? args[4] : RecommendationRunner.ratingsFile();
+        int warmup      = Math.min(5, Math.max(1, seconds / 5));
+
+        String[] raters = path.endsWith("=") ? raterIDs(ratings) : new String[] { "" };
+        HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+        LatencyHistogram latencies = new LatencyHistogram();
+        AtomicLong errors = new AtomicLong(), bytes = new AtomicLong();
+
+        System.out.println("GET " + base + path + (raters.length > 1 ? "<one of " + raters.length + " raters>" : "")
+            + " from " + clients + " clients, " + warmup + " s warm-up + " + seconds + " s");
+        long start = System.nanoTime();
+        long measureFrom = start + warmup * 1_000_000_000L;
+        long end = measureFrom + seconds * 1_000_000_000L;
+        Thread[] threads = new Thread[clients];
+        for (int c = 0; c < clients; c++) {
+            long seed = c;
+            threads[c] = new Thread(() -> {
+                Random rnd = new Random(seed);
+                while (true) {
+                    long t0 = System.nanoTime();
+                    if (t0 >= end) break;
+                    URI uri = URI.create(base + path + raters[rnd.nextInt(raters.length)]);
+                    boolean ok;
+                    long size = 0;
+                    try {
+                        HttpResponse<byte[]> res = http.send(HttpRequest.newBuilder(uri).timeout(Duration.ofSeconds(30)).build(),
+                            HttpResponse.BodyHandlers.ofByteArray());
+                        ok = (res.statusCode() == 200);
+                        size = res.body().length;
+                    } catch (IOException e) {
+                        ok = false;
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    if (t0 < measureFrom) continue;
+                    if (ok) {
+                        latencies.record(System.nanoTime() - t0);
+                        bytes.addAndGet(size);
+                    } else {
+                        errors.incrementAndGet();
+                    }
+                }
+            }, "load-" + c);
+            threads[c].start();
+        }
+        for (Thread t : threads) t.join();
+        // requests started before the end may finish a little after it
+        double elapsed = (Math.max(System.nanoTime(), end) - measureFrom) / 1e9;
+
+        long n = latencies.getCount();
+        System.out.println(String.format(Locale.US, "%d requests in %.1f s: %.1f req/s, %.1f KB/s, %d errors",
+            n, elapsed, n / elapsed, bytes.get() / 1024.0 / elapsed, errors.get()));
+        System.out.println(String.format(Locale.US, "latency ms: mean %.2f  p50 %.2f  p90 %.2f  p99 %.2f  max %.2f",
+            latencies.getMean() / 1e6, latencies.getValueAt(0.50) / 1e6, latencies.getValueAt(0.90) / 1e6,
+            latencies.getValueAt(0.99) / 1e6, latencies.getMax() / 1e6));
+    }
+
+    /** The distinct rater IDs in the first column of a ratings file. */
+    private static String[] raterIDs(String ratingsFile) throws IOException {
+        LinkedHashSet<String> ids = new LinkedHashSet<>();
+        try (BufferedReader in = Files.newBufferedReader(Paths.get(ratingsFile), StandardCharsets.UTF_8)) {
+            in.readLine();      // header
+            for (String line = in.readLine(); line != null; line = in.readLine()) {
+                int comma = line.indexOf(',');
+                if (comma > 0) ids.add(line.substring(0, comma));
+            }
+        }
+        if (ids.isEmpty()) throw new RuntimeException("No raters in " + ratingsFile);
+        return ids.toArray(new String[0]);
+    }
+}
@@ -0,0 +1,74 @@
+import java.util.*;
+
+/**
+ * Recall vs latency of RaterLsh against the exact neighbour scan.
+ *
+ *   java LshReport [ratings.csv] [sampleRaters] [topN] [bands x rows ...]
+ *
+ * e.g. java LshReport ratings.csv 200 20 8x4 16x4 16x6 32x6
+ *
+ * For each band/row setting it builds the index, then for the same sample
+ * of raters compares the approximate top N with FourthRatings'
+ * getTopSimilarities. Recall is the share of the exact top N that the
+ * approximate list also has; candidates is how many raters were scored per
+ * query, as a share of everyone. Times are per query, after one warm-up.
+ */
+public class LshReport {
+
+    public static void main(String[] args) {
+        String ratings = (args.length > 0) ? args[0] : "ratings.csv";
+        int sample     = (args.length > 1) ? Integer.parseInt(args[1]) : 200;
+        int topN       = (args.length > 2) ? Integer.parseInt(args[2]) : 20;
+        ArrayList<String> settings = new ArrayList<>();
+        for (int i = 3; i < args.length; i++) settings.add(args[i]);
+        if (settings.isEmpty()) settings.addAll(Arrays.asList("4x4", "8x4", "16x4", "8x6", "16x6", "32x6", "16x8", "32x8"));
+
+        RaterDatabase.setCompactStorage(true);
+        RaterDatabase.initialize(ratings);
+        RaterSnapshot rs = RaterDatabase.snapshot();
+
+        ArrayList<String> raterIDs = new ArrayList<>();
+        for (Rater r : rs.getRaters()) raterIDs.add(r.getID());
+        Collections.shuffle(raterIDs, new Random(42));
+        List<String> picked = raterIDs.subList(0, Math.min(sample, raterIDs.size()));
+
+        FourthRatings exact = new FourthRatings();
+        ArrayList<ArrayList<Rating>> expected = new ArrayList<>();
+        for (String id : picked) expected.add(exact.getTopSimilarities(id, topN));
+        long t0 = System.nanoTime();
+        for (String id : picked) exact.getTopSimilarities(id, topN);
+        double exactMs = (System.nanoTime() - t0) / 1e6 / picked.size();
+
+        System.out.println("LSH on " + ratings + ": " + rs.size() + " raters, " + picked.size()
+          + " sampled, top " + topN);
+        System.out.println(String.format(Locale.US, "%-12s %9s %9s %13s %11s %9s", "bands x rows", "build s", "recall", "candidates", "ms/query", "speed-up"));
+        System.out.println(String.format(Locale.US, "%-12s %9s %9.3f %13s %11.3f %9.2f", "exact", "-", 1.0, "100.0%", exactMs, 1.0));
+
+        for (String setting : settings) {
+            String[] br = setting.toLowerCase().split("x");
+            int bands = Integer.parseInt(br[0].trim()), rows = Integer.parseInt(br[1].trim());
+            long b0 = System.nanoTime();
+            RaterLsh lsh = RaterLsh.build(rs, bands, rows, 42L, null);
+            double buildS = (System.nanoTime() - b0) / 1e9;
+
+            long found = 0, wanted = 0, candidates = 0;
+            for (int q = 0; q < picked.size(); q++) {
+                ArrayList<Rating> approx = lsh.top(rs, picked.get(q), topN);
+                HashSet<String> got = new HashSet<>();
+                for (Rating r : approx) got.add(r.getItem());
+                for (Rating r : expected.get(q)) {
+                    wanted++;
+                    if (got.contains(r.getItem())) found++;
+                }
+                SparseVector v = rs.getVector(picked.get(q));
+                if (v != null) candidates += lsh.candidates(rs, v).length;
+            }
+            long q0 = System.nanoTime();
+            for (String id : picked) lsh.top(rs, id, topN);
+            double ms = (System.nanoTime() - q0) / 1e6 / picked.size();
+
+            System.out.println(String.format(Locale.US, "%-12s %9.2f %9.3f %12.1f%% %11.3f %9.2f", setting, buildS,
+                wanted == 0 ? 1.0 : (double) found / wanted, 100.0 * candidates / picked.size() / Math.max(1, rs.size()), ms, exactMs / ms));
+        }
+    }
+}
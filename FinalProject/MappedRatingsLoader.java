@@ -0,0 +1,268 @@
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Fast reader for ratings CSVs (rater_id,movie_id,rating,time).
+ *
+ * The file is memory-mapped (in 1 GB windows, so any size works) and parsed
+ * straight from the mapped bytes: IDs are interned through
+ * IdDictionary.internAscii without building a String per row, and ratings
+ * are parsed in place. Each row comes out as (rater index, movie index,
+ * rating) through a RowSink, e.g. RatingMatrix.Builder::add.
+ *
+ * Columns are found by header name like CSVRecord.get does (trimmed,
+ * case-insensitive, a UTF-8 BOM is skipped), so extra or reordered columns
+ * are fine. Quoted fields are unwrapped; a quoted field may not contain a
+ * line break.
+ *
+ * Run main(file [, rows]) to time it; a synthetic file with that many rows
+ * (default 10M) is written first if the file does not exist.
+ */
+public class MappedRatingsLoader {
+    /** Receives one parsed row. */
+    public interface RowSink {
+        public void row(int raterIndex, int movieIndex, double rating);
+    }
+
+    private static final int WINDOW = 1 << 30;
+    private static final double[] POW10 = new double[16];
+    static {
+        POW10[0] = 1;
+        for (int i = 1; i < POW10.length; i++) POW10[i] = POW10[i - 1] * 10;
+    }
+
+    private final IdDictionary raters;
+    private final IdDictionary movies;
+    private final RowSink sink;
+    private int raterCol = -1, movieCol = -1, ratingCol = -1;
+    private int lastCol;
+    private long rows = 0;
+    private long line = 1;
+
+    private MappedRatingsLoader(IdDictionary raters, IdDictionary movies, RowSink sink) {
+        this.raters = raters;
+        this.movies = movies;
+        this.sink = sink;
+    }
+
+    /**
+     * Parse every row of filename into sink, interning IDs into the given
+     * dictionaries. Returns the number of rows read.
+     */
+    public static long load(String filename, IdDictionary raters, IdDictionary movies, RowSink sink) {
+        Path p = resolve(filename);
+        MappedRatingsLoader loader = new MappedRatingsLoader(raters, movies, sink);
+        try (FileChannel ch = FileChannel.open(p, StandardOpenOption.READ)) {
+            long size = ch.size();
+            long pos = 0;
+            boolean header = true;
+            while (pos < size) {
+                int len = (int) Math.min(WINDOW, size - pos);
+                boolean last = pos + len == size;
+                MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, pos, len);
+                int start = 0;
+                if (header) {
+                    start = loader.readHeader(buf, len);
+                    if (start < 0) break;   // no header line at all
+                    header = false;
+                }
+                int done = loader.parse(buf, start, len, last);
+                if (done == 0 && !last) throw new RuntimeException("line " + loader.line + " of " + filename + " is too long");
+                pos += done;
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read " + filename + ": " + e.getMessage(), e);
+        }
+        return loader.rows;
+    }
+
+    /** filename as given, else relative to user.dir (BlueJ sometimes runs from a different CWD). */
+    static Path resolve(String filename) {
+        Path p = Paths.get(filename);
+        if (Files.exists(p)) return p;
+        Path q = Paths.get(System.getProperty("user.dir"), filename);
+        if (Files.exists(q)) return q;
+        throw new RuntimeException("CSV not found: " + filename + " (tried " + q.toString() + ")");
+    }
+
+    // ---- parsing ----
+    /** Find the three columns; returns where the data starts, or -1 for an empty file. */
+    private int readHeader(MappedByteBuffer buf, int limit) {
+        int p = 0;
+        if (limit >= 3 && buf.get(0) == (byte) 0xEF && buf.get(1) == (byte) 0xBB && buf.get(2) == (byte) 0xBF) p = 3;
+        int eol = p;
+        while (eol < limit && buf.get(eol) != '\n') eol++;
+        if (eol == p && eol >= limit) return -1;
+        byte[] bytes = new byte[eol - p];
+        for (int i = 0; i < bytes.length; i++) bytes[i] = buf.get(p + i);
+        String[] cols = new String(bytes, StandardCharsets.UTF_8).split(",");
+        for (int i = 0; i < cols.length; i++) {
+            String c = cols[i].trim().replace("\"", "").toLowerCase();
+            if (c.equals("rater_id")) raterCol = i;
+            else if (c.equals("movie_id")) movieCol = i;
+            else if (c.equals("rating")) ratingCol = i;
+        }
+        if (raterCol < 0) throw new IllegalArgumentException("Mapping for rater_id not found in header");
+        if (movieCol < 0) throw new IllegalArgumentException("Mapping for movie_id not found in header");
+        if (ratingCol < 0) throw new IllegalArgumentException("Mapping for rating not found in header");
+        lastCol = Math.max(raterCol, Math.max(movieCol, ratingCol));
+        line++;
+        return Math.min(eol + 1, limit);
+    }
+
+    /**
+     * Parse whole lines in buf[from..limit). Returns how far it got: limit,
+     * or the start of a line cut off by the end of a window that is not the
+     * last one (the next window starts there).
+     */
+    private int parse(MappedByteBuffer buf, int from, int limit, boolean last) {
+        int p = from;
+        int prevRater = -1, prevStart = 0, prevEnd = 0;
+        while (p < limit) {
+            int lineStart = p;
+            int rs = 0, re = 0, ms = 0, me = 0, vs = 0, ve = 0;
+            int col = 0;
+            boolean blank = true;
+            while (true) {
+                int fs, fe;
+                if (p < limit && buf.get(p) == '"') {
+                    fs = ++p;
+                    while (p < limit) {
+                        if (buf.get(p) != '"') p++;
+                        else if (p + 1 < limit && buf.get(p + 1) == '"') p += 2;
+                        else break;
+                    }
+                    fe = p;
+                    while (p < limit && buf.get(p) != ',' && buf.get(p) != '\n') p++;
+                } else {
+                    fs = p;
+                    while (p < limit) {
+                        byte c = buf.get(p);
+                        if (c == ',' || c == '\n') break;
+                        p++;
+                    }
+                    fe = p;
+                }
+                while (fs < fe && isSpace(buf.get(fs))) fs++;
+                while (fe > fs && isSpace(buf.get(fe - 1))) fe--;
+                if (fe > fs || col > 0) blank = false;
+                if (col == raterCol) { rs = fs; re = fe; }
+                else if (col == movieCol) { ms = fs; me = fe; }
+                else if (col == ratingCol) { vs = fs; ve = fe; }
+                col++;
+                if (col > lastCol) {
+                    while (p < limit && buf.get(p) != '\n') p++;   // rest of the line isn't needed
+                }
+                if (p >= limit) {
+                    if (!last) return lineStart;
+                    break;
+                }
+                if (buf.get(p++) == '\n') break;
+            }
+            if (blank) { line++; continue; }
+            if (col <= raterCol || col <= movieCol || col <= ratingCol) {
+                throw new IllegalArgumentException("line " + line + " has only " + col + " columns");
+            }
+            // rating files come grouped by rater, so most rows repeat the previous rater
+            if (prevRater < 0 || !sameBytes(buf, rs, re, prevStart, prevEnd)) {
+                prevRater = raters.internAscii(buf, rs, re - rs);
+                prevStart = rs;
+                prevEnd = re;
+            }
+            sink.row(prevRater, movies.internAscii(buf, ms, me - ms), parseRating(buf, vs, ve));
+            rows++;
+            line++;
+        }
+        return limit;
+    }
+
+    /**
+     * Plain decimals ([+-]digits[.digits], up to 15 digits) are parsed here:
+     * one exact integer divided by an exact power of ten, so the result is
+     * the same correctly rounded double Double.parseDouble gives. Anything
+     * else goes to Double.parseDouble; unparseable values are 0.0 as before.
+     */
+    private static double parseRating(MappedByteBuffer buf, int s, int e) {
+        int p = s;
+        boolean neg = false;
+        if (p < e && (buf.get(p) == '-' || buf.get(p) == '+')) neg = buf.get(p++) == '-';
+        long m = 0;
+        int digits = 0, frac = -1;
+        for (; p < e; p++) {
+            byte c = buf.get(p);
+            if (c >= '0' && c <= '9') {
+                m = m * 10 + (c - '0');
+                digits++;
+                if (frac >= 0) frac++;
+            } else if (c == '.' && frac < 0) {
+                frac = 0;
+            } else {
+                break;
+            }
+        }
+        if (p == e && digits > 0 && digits <= 15) {
+            double v = (frac > 0) ? m / POW10[frac] : m;
+            return neg ? -v : v;
+        }
+        byte[] bytes = new byte[e - s];
+        for (int i = 0; i < bytes.length; i++) bytes[i] = buf.get(s + i);
+        try { return Double.parseDouble(new String(bytes, StandardCharsets.ISO_8859_1)); }
+        catch (Exception ex) { return 0.0; }
+    }
+
+    private static boolean sameBytes(MappedByteBuffer buf, int s, int e, int s2, int e2) {
+        if (e - s != e2 - s2) return false;
+        for (int i = 0; i < e - s; i++) {
+            if (buf.get(s + i) != buf.get(s2 + i)) return false;
+        }
+        return true;
+    }
+
+    private static boolean isSpace(byte c) {
+        return c == ' ' || c == '\t' || c == '\r';
+    }
+
+    // ---- throughput check ----
+    public static void main(String[] args) throws IOException {
+        String file = (args.length > 0) ? args[0] : "ratings_synthetic.csv";
+        int want = (args.length > 1) ? Integer.parseInt(args[1]) : 10_000_000;
+        if (!Files.exists(Paths.get(file))) writeSynthetic(file, want);
+        long bytes = Files.size(Paths.get(file));
+
+        for (int run = 1; run <= 3; run++) {
+            RatingMatrix.Builder mb = new RatingMatrix.Builder(new IdDictionary());
+            long t0 = System.nanoTime();
+            long n = load(file, mb.getRaterIDs(), mb.getMovieIDs(), mb::add);
+            long t1 = System.nanoTime();
+            RatingMatrix m = mb.build();
+            long t2 = System.nanoTime();
+            double secs = (t1 - t0) / 1e9;
+            System.out.printf("run %d: %,d rows (%,d raters, %,d movies) parsed in %.2f s = %,.0f rows/s, %.0f MB/s; packed in %.2f s%n",
+                run, n, m.numRaters(), m.getMovieIDs().size(), secs, n / secs, bytes / 1e6 / secs, (t2 - t1) / 1e9);
+        }
+    }
+
+    /** rater_id,movie_id,rating,time rows with ~100K raters over ~50K movies. */
+    private static void writeSynthetic(String file, int rows) throws IOException {
+        Random rnd = new Random(42);
+        try (BufferedWriter w = Files.newBufferedWriter(Paths.get(file), StandardCharsets.UTF_8)) {
+            w.write("rater_id,movie_id,rating,time\n");
+            int rater = 1;
+            for (int i = 0; i < rows; i++) {
+                if (rnd.nextInt(100) == 0) rater++;
+                w.write(Integer.toString(rater));
+                w.write(',');
+                w.write(Integer.toString(100000 + rnd.nextInt(50000)));
+                w.write(',');
+                w.write(Integer.toString(1 + rnd.nextInt(10)));
+                w.write(',');
+                w.write(Long.toString(1377000000L + rnd.nextInt(100000000)));
+                w.write('\n');
+            }
+        }
+    }
+}
@@ -0,0 +1,14 @@
+/**
+ * A ColumnFilter that can answer for the whole movie table at once: mask()
+ * returns a bitset over MovieColumns rows (bit r set = row r passes), so
+ * filters combine 64 movies per AND/OR instead of one ID at a time.
+ *
+ * key() describes what the filter selects ("minutes[80,100]"); two filters
+ * with the same key must pass the same rows, which lets FilterMasks cache
+ * the mask. Return null when the answer depends on more than the movie
+ * table (a rater, say) and must not be cached.
+ */
+public interface MaskFilter extends ColumnFilter {
+    public long[] mask(MovieColumns movies);
+    public String key();
+}
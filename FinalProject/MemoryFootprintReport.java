@@ -0,0 +1,63 @@
+import java.util.*;
+
+/**
+ * Loads a ratings file once with EfficientRater and once with the compact
+ * (CSR / CompactRater) store and prints the retained heap for each.
+ *
+ * Run from BlueJ (void main) or: java MemoryFootprintReport [ratings.csv]
+ * Numbers are "used heap after GC", so run it with nothing else loaded.
+ * Both runs include the movie -> ratings index, which is the same either way.
+ */
+public class MemoryFootprintReport {
+
+    public static void main(String[] args) {
+        String file = (args != null && args.length > 0) ? args[0] : "ratings.csv";
+
+        long efficient = measure(file, false);
+        int raters = RaterDatabase.size();
+        long ratings = countRatings();
+        long compact = measure(file, true);
+        RaterDatabase.reset();
+        RaterDatabase.setCompactStorage(false);
+
+        System.out.println("Memory footprint for " + file + " (" + raters + " raters, " + ratings + " ratings)");
+        System.out.println(String.format(Locale.US, "%-16s %12s %14s", "store", "heap (KB)", "bytes/rating"));
+        print("EfficientRater", efficient, ratings);
+        print("CompactRater", compact, ratings);
+        if (compact > 0) {
+            System.out.println(String.format(Locale.US, "compact store uses %.1fx less heap", (double) efficient / compact));
+        }
+    }
+
+    /** Heap retained by a fresh load of file in the given mode. */
+    private static long measure(String file, boolean compact) {
+        RaterDatabase.reset();
+        RaterDatabase.setCompactStorage(compact);
+        long before = usedHeap();
+        RaterDatabase.initialize(file);
+        return usedHeap() - before;
+    }
+
+    private static long countRatings() {
+        long n = 0;
+        for (Rater r : RaterDatabase.getRaters()) n += r.numRatings();
+        return n;
+    }
+
+    private static void print(String name, long bytes, long ratings) {
+        double per = (ratings == 0) ? 0.0 : (double) bytes / ratings;
+        System.out.println(String.format(Locale.US, "%-16s %12d %14.1f", name, bytes / 1024, per));
+    }
+
+    private static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        // a few rounds so finalizable/soft garbage is gone before we read
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            try { Thread.sleep(50); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+            used = Math.min(used, rt.totalMemory() - rt.freeMemory());
+        }
+        return used;
+    }
+}
@@ -0,0 +1,220 @@
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.*;
+
+/**
+ * Counters and per-stage timers for the recommendation pipeline, so a slow
+ * page can be pinned on loading, similarity, accumulation, sorting or HTML.
+ *
+ * Off by default; turn on with -Dmetrics=true or setEnabled(true). A stage
+ * is timed like this:
+ *
+ *   long t0 = Metrics.start();      // 0 while disabled: no clock read
+ *   ... the stage ...
+ *   Metrics.SIMILARITY.stop(t0);    // records only if t0 != 0
+ *
+ * so while disabled the cost is one read of a static flag per stage. Timers
+ * keep a LatencyHistogram of nanoseconds; counters are LongAdders.
+ *
+ * Read them with dump() (text), or over JMX as the MBean
+ * "capstone.recommender:type=Metrics": one attribute per figure
+ * (e.g. engine.similarity.p99Micros), plus dump() and reset() operations
+ * and an Enabled switch. The MBean is registered when metrics are first
+ * enabled.
+ */
+public class Metrics {
+    public static final String OBJECT_NAME = "capstone.recommender:type=Metrics";
+
+    private static final LinkedHashMap<String, Object> registry = new LinkedHashMap<>();   // name -> Timer or Counter
+    private static volatile boolean enabled;
+    private static boolean registered;
+
+    // ---------- the pipeline ----------
+    public static final Timer MOVIES_LOAD      = timer("load.movies");
+    public static final Timer RATINGS_LOAD     = timer("load.ratings");
+    public static final Timer SIMILARITY       = timer("engine.similarity");
+    public static final Timer ACCUMULATION     = timer("engine.accumulation");
+    public static final Timer SORTING          = timer("engine.sorting");
+    public static final Timer RECOMMENDATIONS  = timer("engine.recommendations");   // the whole call, stages included
+    public static final Timer RENDER           = timer("page.render");
+    public static final Timer PAGE             = timer("page.total");
+    public static final Counter PAGES_FALLBACK = counter("page.fallback");          // needed the (50, 3) retry
+    public static final Counter PAGES_EMPTY    = counter("page.empty");
+
+    static {
+        if (Boolean.getBoolean("metrics")) setEnabled(true);
+    }
+
+    public static boolean isEnabled() { return enabled; }
+
+    public static void setEnabled(boolean on) {
+        enabled = on;
+        if (on) registerMBean();
+    }
+
+    /** Start of a timed stage: the clock if enabled, else 0. */
+    public static long start() {
+        return enabled ? System.nanoTime() : 0L;
+    }
+
+    public static synchronized Timer timer(String name) {
+        Object m = registry.computeIfAbsent(name, n -> new Timer());
+        if (!(m instanceof Timer)) throw new IllegalArgumentException(name + " is already a counter");
+        return (Timer) m;
+    }
+
+    public static synchronized Counter counter(String name) {
+        Object m = registry.computeIfAbsent(name, n -> new Counter());
+        if (!(m instanceof Counter)) throw new IllegalArgumentException(name + " is already a timer");
+        return (Counter) m;
+    }
+
+    /** Zero every timer and counter. */
+    public static synchronized void reset() {
+        for (Object m : registry.values()) {
+            if (m instanceof Timer) ((Timer) m).histogram.reset();
+            else ((Counter) m).adder.reset();
+        }
+    }
+
+    /** One line per metric; times in milliseconds. */
+    public static synchronized String dump() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("metrics (").append(enabled ? "on" : "off").append(")\n");
+        for (Map.Entry<String, Object> e : registry.entrySet()) {
+            if (e.getValue() instanceof Timer) {
+                LatencyHistogram h = ((Timer) e.getValue()).histogram;
+                sb.append(String.format(Locale.US, "  %-24s count %8d  mean %9.3f  p50 %9.3f  p90 %9.3f  p99 %9.3f  max %9.3f ms%n",
+                    e.getKey(), h.getCount(), h.getMean() / 1e6, h.getValueAt(0.50) / 1e6, h.getValueAt(0.90) / 1e6,
+                    h.getValueAt(0.99) / 1e6, h.getMax() / 1e6));
+            } else {
+                sb.append(String.format(Locale.US, "  %-24s %8d%n", e.getKey(), ((Counter) e.getValue()).get()));
+            }
+        }
+        return sb.toString();
+    }
+
+    /** Latencies of one stage. */
+    public static class Timer {
+        private final LatencyHistogram histogram = new LatencyHistogram();
+
+        /** End of the stage begun at t0 (from Metrics.start()); nothing if t0 is 0. */
+        public void stop(long t0) {
+            if (t0 != 0L) histogram.record(System.nanoTime() - t0);
+        }
+
+        public LatencyHistogram getHistogram() { return histogram; }
+    }
+
+    public static class Counter {
+        private final LongAdder adder = new LongAdder();
+
+        public void increment() {
+            if (enabled) adder.increment();
+        }
+
+        public long get() { return adder.sum(); }
+    }
+
+    // ---------- JMX ----------
+    private static synchronized void registerMBean() {
+        if (registered) return;
+        registered = true;
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsMBean(), new ObjectName(OBJECT_NAME));
+        } catch (JMException e) {
+            System.err.println("Could not register " + OBJECT_NAME + ": " + e.getMessage());
+        }
+    }
+
+    /** The registry as attributes: <timer>.count/.meanMicros/.p50Micros/.p90Micros/.p99Micros/.maxMicros, <counter>. */
+    private static class MetricsMBean implements DynamicMBean {
+        private static final String[] FIGURES = { "count", "meanMicros", "p50Micros", "p90Micros", "p99Micros", "maxMicros" };
+
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            if (attribute.equals("Enabled")) return enabled;
+            synchronized (Metrics.class) {
+                Object m = registry.get(attribute);
+                if (m instanceof Counter) return ((Counter) m).get();
+                int dot = attribute.lastIndexOf('.');
+                m = (dot < 0) ? null : registry.get(attribute.substring(0, dot));
+                if (m instanceof Timer) {
+                    LatencyHistogram h = ((Timer) m).histogram;
+                    switch (attribute.substring(dot + 1)) {
+                        case "count":      return h.getCount();
+                        case "meanMicros": return h.getMean() / 1e3;
+                        case "p50Micros":  return h.getValueAt(0.50) / 1e3;
+                        case "p90Micros":  return h.getValueAt(0.90) / 1e3;
+                        case "p99Micros":  return h.getValueAt(0.99) / 1e3;
+                        case "maxMicros":  return h.getMax() / 1e3;
+                    }
+                }
+            }
+            throw new AttributeNotFoundException(attribute);
+        }
+
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException, InvalidAttributeValueException {
+            if (!attribute.getName().equals("Enabled")) throw new AttributeNotFoundException(attribute.getName() + " is read-only");
+            if (!(attribute.getValue() instanceof Boolean)) throw new InvalidAttributeValueException("Enabled takes a boolean");
+            setEnabled((Boolean) attribute.getValue());
+        }
+
+        public AttributeList getAttributes(String[] attributes) {
+            AttributeList list = new AttributeList();
+            for (String a : attributes) {
+                try {
+                    list.add(new Attribute(a, getAttribute(a)));
+                } catch (AttributeNotFoundException e) {
+                    // left out, as the DynamicMBean contract allows
+                }
+            }
+            return list;
+        }
+
+        public AttributeList setAttributes(AttributeList attributes) {
+            AttributeList done = new AttributeList();
+            for (Attribute a : attributes.asList()) {
+                try {
+                    setAttribute(a);
+                    done.add(a);
+                } catch (JMException e) {
+                    // left out
+                }
+            }
+            return done;
+        }
+
+        public Object invoke(String action, Object[] params, String[] signature) throws ReflectionException {
+            if (action.equals("dump")) return dump();
+            if (action.equals("reset")) {
+                reset();
+                return null;
+            }
+            throw new ReflectionException(new NoSuchMethodException(action));
+        }
+
+        public MBeanInfo getMBeanInfo() {
+            ArrayList<MBeanAttributeInfo> attrs = new ArrayList<>();
+            attrs.add(new MBeanAttributeInfo("Enabled", "boolean", "Whether stages are being timed", true, true, true));
+            synchronized (Metrics.class) {
+                for (Map.Entry<String, Object> e : registry.entrySet()) {
+                    if (e.getValue() instanceof Counter) {
+                        attrs.add(new MBeanAttributeInfo(e.getKey(), "long", "counter", true, false, false));
+                        continue;
+                    }
+                    for (String f : FIGURES) {
+                        String type = f.equals("count") ? "long" : "double";
+                        attrs.add(new MBeanAttributeInfo(e.getKey() + "." + f, type, f, true, false, false));
+                    }
+                }
+            }
+            MBeanOperationInfo[] ops = {
+                new MBeanOperationInfo("dump", "All metrics as text", new MBeanParameterInfo[0], "java.lang.String", MBeanOperationInfo.INFO),
+                new MBeanOperationInfo("reset", "Zero all metrics", new MBeanParameterInfo[0], "void", MBeanOperationInfo.ACTION)
+            };
+            return new MBeanInfo(Metrics.class.getName(), "Recommendation pipeline metrics",
+                attrs.toArray(new MBeanAttributeInfo[0]), null, ops, null);
+        }
+    }
+}
@@ -1,9 +1,22 @@
-public class MinutesFilter implements Filter {
+
+public class MinutesFilter implements IndexedFilter {
     private int min, max;
     public MinutesFilter(int min, int max) { this.min = min; this.max = max; }
     public boolean satisfies(String id) {
         int m = MovieDatabase.getMinutes(id);
         return m >= min && m <= max;
     }
+    public boolean satisfies(MovieColumns movies, int row) {
+        int m = movies.getMinutes(row);
+        return m >= min && m <= max;
+    }
+    public long[] mask(MovieColumns movies) {
+        long[] bits = FilterMasks.none(movies);
+        movies.minutesIndex().mark(bits, min, max);
+        return bits;
+    }
+    public int count(MovieColumns movies) { return movies.minutesIndex().count(min, max); }
+    public int[] rows(MovieColumns movies) { return movies.minutesIndex().rows(min, max); }
+    public String key() { return "minutes[" + min + "," + max + "]"; }
 }
 
@@ -0,0 +1,49 @@
+import java.util.*;
+
+/**
+ * Scratch space for pushing neighbours' ratings into per-movie weighted sums,
+ * indexed by dense movie index. Only the touched slots are cleared between
+ * uses, so reusing one costs nothing proportional to the catalog size.
+ * Not thread-safe; FourthRatings lends them out from a pool, one per call.
+ */
+public class MovieAccumulator {
+    private double[] weightedSum = new double[0];
+    private double[] sumWeights = new double[0];
+    private int[] count = new int[0];
+    private int[] touched = new int[64];
+    private int numTouched = 0;
+
+    /** Make room for movie indices 0..numMovies-1 and forget the previous pass. */
+    public void reset(int numMovies) {
+        for (int t = 0; t < numTouched; t++) {
+            int m = touched[t];
+            weightedSum[m] = 0.0;
+            sumWeights[m] = 0.0;
+            count[m] = 0;
+        }
+        numTouched = 0;
+        if (count.length < numMovies) {
+            int cap = Math.max(numMovies, count.length + count.length / 2);
+            weightedSum = new double[cap];
+            sumWeights = new double[cap];
+            count = new int[cap];
+        }
+    }
+
+    /** Add one neighbour's rating of movie m with similarity weight. */
+    public void add(int m, double weight, double rating) {
+        if (count[m] == 0) {
+            if (numTouched == touched.length) touched = Arrays.copyOf(touched, numTouched * 2);
+            touched[numTouched++] = m;
+        }
+        count[m]++;
+        weightedSum[m] += weight * rating;
+        sumWeights[m] += Math.abs(weight);
+    }
+
+    public int numTouched()           { return numTouched; }
+    public int touchedAt(int t)       { return touched[t]; }
+    public int getCount(int m)        { return count[m]; }
+    public double getWeightedSum(int m) { return weightedSum[m]; }
+    public double getSumWeights(int m)  { return sumWeights[m]; }
+}
@@ -0,0 +1,200 @@
+import java.util.*;
+
+/**
+ * The movie table stored by column, one row per movie, rows numbered by a
+ * dense index (IdDictionary over the movie IDs):
+ *
+ *   year[], minutes[]            plain ints
+ *   country, director, genres    dictionary-encoded: int code per row + distinct values
+ *   year/minutes RangeIndex      rows sorted by value, for range filters
+ *   genres/director/country      TokenIndex: token -> rows listing it
+ *   title[], poster[]            Strings
+ *
+ * Filters that implement ColumnFilter test rows straight from these arrays,
+ * so filterBy over the whole catalog is a loop over ints instead of an ID
+ * lookup per movie per filter. Built once by a Builder, never changed after.
+ *
+ * The table also keeps two caches that are only valid for its own rows:
+ * filter masks by key (see FilterMasks) and the row of each movie index of
+ * a ratings dictionary (rowsOf). A reload builds a new table, so neither
+ * ever needs invalidating.
+ */
+public class MovieColumns {
+    private IdDictionary ids;
+    private String[] title, poster;
+    private int[] year, minutes;
+    private int[] country, director, genres;
+    private String[] countryValues, directorValues, genresValues;
+    private RangeIndex yearIndex, minutesIndex;
+    private TokenIndex genresIndex, directorIndex, countryIndex;
+
+    private static final int MAX_CACHED_MASKS = 64;
+    private static final int MAX_ROW_MAPS = 4;
+    private final LinkedHashMap<String, long[]> masks = new LinkedHashMap<String, long[]>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+        protected boolean removeEldestEntry(Map.Entry<String, long[]> eldest) {
+            return size() > MAX_CACHED_MASKS;     // least recently used goes first
+        }
+    };
+    private volatile RowMap[] rowMaps = new RowMap[0];   // last few dictionaries asked about in rowsOf, newest first
+
+    private MovieColumns() {
+    }
+
+    public int size() { return ids.size(); }
+
+    /** Row of a movie ID, or -1. */
+    public int indexOf(String id) { return ids.indexOf(id); }
+
+    public String getID(int row)       { return ids.get(row); }
+    public String getTitle(int row)    { return title[row]; }
+    public int    getYear(int row)     { return year[row]; }
+    public int    getMinutes(int row)  { return minutes[row]; }
+    public String getPoster(int row)   { return poster[row]; }
+    public String getCountry(int row)  { return countryValues[country[row]]; }
+    public String getDirector(int row) { return directorValues[director[row]]; }
+    public String getGenres(int row)   { return genresValues[genres[row]]; }
+
+    /** Dictionary codes, for comparing rows without touching the Strings. */
+    public int getCountryCode(int row)  { return country[row]; }
+    public int getDirectorCode(int row) { return director[row]; }
+    public int countryCode(String value)  { return indexIn(countryValues, value); }
+    public int directorCode(String value) { return indexIn(directorValues, value); }
+
+    /** year and minutes sorted, for range queries (built with the table). */
+    public RangeIndex yearIndex()    { return yearIndex; }
+    public RangeIndex minutesIndex() { return minutesIndex; }
+
+    /** Comma-separated columns by token (built with the table). */
+    public TokenIndex genresIndex()   { return genresIndex; }
+    public TokenIndex directorIndex() { return directorIndex; }
+    public TokenIndex countryIndex()  { return countryIndex; }
+
+    /** A Movie object for the row (made on demand; the table doesn't keep them). */
+    public Movie getMovie(int row) {
+        return new Movie(getID(row), getTitle(row), getYear(row), getCountry(row), getGenres(row),
+                         getDirector(row), getMinutes(row), getPoster(row));
+    }
+
+    // ---------- caches ----------
+    /** The mask cached under key, or null. An LRU of MAX_CACHED_MASKS masks, so a busy query stays in. */
+    long[] cachedMask(String key) {
+        synchronized (masks) {
+            return masks.get(key);
+        }
+    }
+
+    void cacheMask(String key, long[] bits) {
+        synchronized (masks) {
+            masks.put(key, bits);
+        }
+    }
+
+    /**
+     * rows[i] = the row of dictionary entry i's movie, or -1 if this table
+     * doesn't have it. Meant for the ratings side's movie dictionary, so a
+     * movie index from a rating can be tested against a filter mask without
+     * going through its ID. Remembers the last few dictionaries (and their
+     * sizes, as a dictionary can still grow while it is being built).
+     */
+    public int[] rowsOf(IdDictionary dict) {
+        RowMap[] maps = rowMaps;
+        for (RowMap m : maps) {
+            if (m.dict == dict && m.rows.length == dict.size()) return m.rows;
+        }
+        int[] rows = new int[dict.size()];
+        for (int i = 0; i < rows.length; i++) rows[i] = ids.indexOf(dict.get(i));
+        RowMap[] next = new RowMap[Math.min(maps.length + 1, MAX_ROW_MAPS)];
+        next[0] = new RowMap(dict, rows);
+        System.arraycopy(maps, 0, next, 1, next.length - 1);
+        rowMaps = next;
+        return rows;
+    }
+
+    private static class RowMap {
+        final IdDictionary dict;
+        final int[] rows;
+        RowMap(IdDictionary dict, int[] rows) { this.dict = dict; this.rows = rows; }
+    }
+
+    private static int indexIn(String[] values, String value) {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i].equals(value)) return i;
+        }
+        return -1;
+    }
+
+    // ---------- building ----------
+    /** Collects movie rows; a repeated ID replaces the earlier row (like HashMap.put). */
+    public static class Builder {
+        private IdDictionary ids = new IdDictionary();
+        private ArrayList<String> title = new ArrayList<>(), poster = new ArrayList<>();
+        private int[] year = new int[256], minutes = new int[256];
+        private int[] country = new int[256], director = new int[256], genres = new int[256];
+        private LinkedHashMap<String, Integer> countryCodes = new LinkedHashMap<>();
+        private LinkedHashMap<String, Integer> directorCodes = new LinkedHashMap<>();
+        private LinkedHashMap<String, Integer> genresCodes = new LinkedHashMap<>();
+
+        public void add(String id, String title, int year, String country, String genres,
+                        String director, int minutes, String poster) {
+            int row = ids.intern(id);
+            if (row == this.title.size()) {
+                this.title.add(title);
+                this.poster.add(poster);
+            } else {
+                this.title.set(row, title);
+                this.poster.set(row, poster);
+            }
+            if (row == this.year.length) grow();
+            this.year[row] = year;
+            this.minutes[row] = minutes;
+            this.country[row] = code(countryCodes, country);
+            this.director[row] = code(directorCodes, director);
+            this.genres[row] = code(genresCodes, genres);
+        }
+
+        public void add(Movie m) {
+            add(m.getID(), m.getTitle(), m.getYear(), m.getCountry(), m.getGenres(), m.getDirector(), m.getMinutes(), m.getPoster());
+        }
+
+        public MovieColumns build() {
+            int n = ids.size();
+            MovieColumns c = new MovieColumns();
+            c.ids = ids;
+            c.title = title.toArray(new String[0]);
+            c.poster = poster.toArray(new String[0]);
+            c.year = Arrays.copyOf(year, n);
+            c.minutes = Arrays.copyOf(minutes, n);
+            c.country = Arrays.copyOf(country, n);
+            c.director = Arrays.copyOf(director, n);
+            c.genres = Arrays.copyOf(genres, n);
+            c.countryValues = countryCodes.keySet().toArray(new String[0]);
+            c.directorValues = directorCodes.keySet().toArray(new String[0]);
+            c.genresValues = genresCodes.keySet().toArray(new String[0]);
+            c.yearIndex = new RangeIndex(c.year, n);
+            c.minutesIndex = new RangeIndex(c.minutes, n);
+            c.genresIndex = new TokenIndex(c.genres, c.genresValues, n);
+            c.directorIndex = new TokenIndex(c.director, c.directorValues, n);
+            c.countryIndex = new TokenIndex(c.country, c.countryValues, n);
+            return c;
+        }
+
+        private void grow() {
+            int cap = year.length * 2;
+            year = Arrays.copyOf(year, cap);
+            minutes = Arrays.copyOf(minutes, cap);
+            country = Arrays.copyOf(country, cap);
+            director = Arrays.copyOf(director, cap);
+            genres = Arrays.copyOf(genres, cap);
+        }
+
+        private static int code(HashMap<String, Integer> codes, String value) {
+            Integer c = codes.get(value);
+            if (c == null) {
+                c = codes.size();
+                codes.put(value, c);
+            }
+            return c;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Old line splitter vs CsvTokenizer on a movie CSV.
+ *
+ *   java MovieCsvComparison [ratedmoviesfull.csv] [rounds]
+ *
+ * Both parsers load the whole file in each round. The report shows the
+ * best time and the bytes allocated per row (HotSpot's per-thread
+ * allocation counter). Before timing, it checks that both produce the
+ * same movies. The old splitter is kept here verbatim so the comparison
+ * stays honest; the JMH benchmarks (bench.CsvBenchmarks) and the tests
+ * call it too. For numbers to quote, use the JMH run: it forks, warms up
+ * properly and reports allocation through the gc profiler.
+ */
+public class MovieCsvComparison {
+
+    public static void main(String[] args) throws IOException {
+        String file = (args.length > 0) ? args[0] : "ratedmoviesfull.csv";
+        int rounds  = (args.length > 1) ? Integer.parseInt(args[1]) : 20;
+
+        HashMap<String, Movie> a = legacyLoad(file);
+        MovieColumns b = MovieDatabase.loadMovies(file);
+        if (!same(a, b)) throw new IllegalStateException("the two parsers disagree on " + file);
+
+        report("splitCsvLine", rounds, a.size(), () -> legacyLoad(file));
+        report("CsvTokenizer", rounds, b.size(), () -> MovieDatabase.loadMovies(file));
+    }
+
+    private interface Load { Object run() throws IOException; }
+
+    private static void report(String name, int rounds, int rows, Load load) throws IOException {
+        com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long tid = Thread.currentThread().getId();
+        long best = Long.MAX_VALUE, bytes = 0;
+        for (int r = 0; r < rounds; r++) {
+            long b0 = mx.getThreadAllocatedBytes(tid);
+            long t0 = System.nanoTime();
+            load.run();
+            best = Math.min(best, System.nanoTime() - t0);
+            bytes = mx.getThreadAllocatedBytes(tid) - b0;
+        }
+        System.out.println(String.format(Locale.US, "%-13s %8.2f ms  %7.0f ns/row  %6d B/row", name, best / 1e6, (double) best / rows, bytes / rows));
+    }
+
+    private static boolean same(HashMap<String, Movie> a, MovieColumns b) {
+        if (a.size() != b.size()) return false;
+        for (String id : a.keySet()) {
+            if (b.indexOf(id) < 0) return false;
+            Movie x = a.get(id), y = b.getMovie(b.indexOf(id));
+            if (!x.getTitle().equals(y.getTitle()) || x.getYear() != y.getYear() || !x.getCountry().equals(y.getCountry())
+                || !x.getGenres().equals(y.getGenres()) || !x.getDirector().equals(y.getDirector())
+                || x.getMinutes() != y.getMinutes() || !x.getPoster().equals(y.getPoster())) return false;
+        }
+        return true;
+    }
+
+    // ---- the loader as it was before CsvTokenizer ----
+    static HashMap<String, Movie> legacyLoad(String filename) throws IOException {
+        HashMap<String, Movie> movies = new HashMap<>();
+        try (BufferedReader br = Files.newBufferedReader(Paths.get(filename), StandardCharsets.UTF_8)) {
+            String header = br.readLine();
+            if (header == null) return movies;
+            ArrayList<String> cols = splitCsvLine(header);
+            HashMap<String,Integer> idx = new HashMap<>();
+            for (int i = 0; i < cols.size(); i++) idx.put(cols.get(i).trim().toLowerCase(), i);
+            int iId = idx.getOrDefault("id", -1), iTitle = idx.getOrDefault("title", -1), iYear = idx.getOrDefault("year", -1);
+            int iCountry = idx.getOrDefault("country", -1), iGenres = idx.getOrDefault("genres", idx.getOrDefault("genre", -1));
+            int iDirector = idx.getOrDefault("director", -1), iMinutes = idx.getOrDefault("minutes", -1), iPoster = idx.getOrDefault("poster", -1);
+
+            String line;
+            while ((line = br.readLine()) != null) {
+                if (line.trim().isEmpty()) continue;
+                ArrayList<String> parts = splitCsvLine(line);
+                String id = get(parts, iId);
+                if (id.isEmpty()) continue;
+                movies.put(id, new Movie(id, get(parts, iTitle), parseIntSafe(get(parts, iYear)), get(parts, iCountry),
+                    get(parts, iGenres), get(parts, iDirector), parseIntSafe(get(parts, iMinutes)), get(parts, iPoster)));
+            }
+        }
+        return movies;
+    }
+
+    static ArrayList<String> splitCsvLine(String line) {
+        ArrayList<String> out = new ArrayList<>();
+        if (!line.isEmpty() && line.charAt(0) == '\uFEFF') line = line.substring(1);
+        StringBuilder cur = new StringBuilder();
+        boolean inQuotes = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                if (inQuotes && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    cur.append('"');
+                    i++;
+                } else {
+                    inQuotes = !inQuotes;
+                }
+            } else if (c == ',' && !inQuotes) {
+                out.add(cur.toString());
+                cur.setLength(0);
+            } else {
+                cur.append(c);
+            }
+        }
+        out.add(cur.toString());
+        for (int i = 0; i < out.size(); i++) {
+            String s = out.get(i).trim();
+            if (s.length() >= 2 && s.startsWith("\"") && s.endsWith("\"")) {
+                s = s.substring(1, s.length() - 1).replace("\"\"", "\"");
+            }
+            out.set(i, s);
+        }
+        return out;
+    }
+
+    private static String get(ArrayList<String> parts, int idx) {
+        if (idx < 0 || idx >= parts.size()) return "";
+        return parts.get(idx).trim();
+    }
+
+    private static int parseIntSafe(String s) {
+        try { return Integer.parseInt(s.trim()); }
+        catch (Exception e) { return 0; }
+    }
+}
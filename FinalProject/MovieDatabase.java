@@ -1,4 +1,3 @@
-
 import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
@@ -11,54 +10,97 @@ import java.util.*;
  * Expected columns (header, case-insensitive):
  * id,title,year,country,genres,director,minutes,poster
  * (If your CSV uses "genre" instead of "genres", that's handled too.)
+ *
+ * A reload parses into a fresh MovieColumns table and then publishes it as a
+ * new MovieSnapshot in one step; readers never see a half-loaded table.
  */
 public class MovieDatabase {
-    private static HashMap<String, Movie> ourMovies = new HashMap<>();
-    private static String currentSource = "";
+    private static volatile MovieSnapshot current = MovieSnapshot.EMPTY;
+    private static volatile boolean binarySnapshots = false;
+
+    /**
+     * When on, initialize() reads the movie file's .bin companion (see
+     * BinarySnapshot) instead of the CSV if it is newer, and
+     * writes it after a CSV load.
+     */
+    public static void setBinarySnapshots(boolean on) {
+        binarySnapshots = on;
+    }
 
     /** Load (or reload) movies from a CSV file the first time this is called
      *  for that file path. Safe to call multiple times. */
     public static void initialize(String moviefile) {
         if (moviefile == null) moviefile = "ratedmoviesfull.csv";
-        if (!moviefile.equals(currentSource) || ourMovies.isEmpty()) {
-            loadMovies(moviefile);
+        synchronized (MovieDatabase.class) {
+            MovieSnapshot snap = current;
+            if (!moviefile.equals(snap.getSource()) || snap.size() == 0) {
+                long t0 = Metrics.start();
+                MovieColumns movies = binarySnapshots ? loadBinary(moviefile) : null;
+                boolean fromBinary = movies != null;
+                if (!fromBinary) movies = loadMovies(moviefile);
+                current = new MovieSnapshot(movies, moviefile);
+                Metrics.MOVIES_LOAD.stop(t0);
+                if (binarySnapshots && !fromBinary) saveBinary(current, moviefile);
+            }
         }
     }
 
+    /** The current movie table; unchanged for as long as you hold it. */
+    public static MovieSnapshot snapshot() {
+        return current;
+    }
+
     public static int size() {
-        return ourMovies.size();
+        return current.size();
     }
 
     public static boolean containsID(String id) {
-        return ourMovies.containsKey(id);
+        return current.containsID(id);
     }
 
     public static ArrayList<String> getMovies() {
-        return new ArrayList<>(ourMovies.keySet());
+        return current.getMovies();
     }
 
     // ---- Field getters (course-compatible) ----
-    public static String getTitle(String id)    { Movie m = ourMovies.get(id); return (m==null)?"":m.getTitle(); }
-    public static int    getYear(String id)     { Movie m = ourMovies.get(id); return (m==null)?0:m.getYear(); }
-    public static String getCountry(String id)  { Movie m = ourMovies.get(id); return (m==null)?"":m.getCountry(); }
-    public static String getGenres(String id)   { Movie m = ourMovies.get(id); return (m==null)?"":m.getGenres(); }
-    public static String getDirector(String id) { Movie m = ourMovies.get(id); return (m==null)?"":m.getDirector(); }
-    public static int    getMinutes(String id)  { Movie m = ourMovies.get(id); return (m==null)?0:m.getMinutes(); }
-    public static String getPoster(String id)   { Movie m = ourMovies.get(id); return (m==null)?"":m.getPoster(); }
+    public static String getTitle(String id)    { return current.getTitle(id); }
+    public static int    getYear(String id)     { return current.getYear(id); }
+    public static String getCountry(String id)  { return current.getCountry(id); }
+    public static String getGenres(String id)   { return current.getGenres(id); }
+    public static String getDirector(String id) { return current.getDirector(id); }
+    public static int    getMinutes(String id)  { return current.getMinutes(id); }
+    public static String getPoster(String id)   { return current.getPoster(id); }
 
     /** Return IDs whose movie rows satisfy the given filter */
     public static ArrayList<String> filterBy(Filter f) {
-        ArrayList<String> out = new ArrayList<>();
-        for (String id : ourMovies.keySet()) {
-            if (f.satisfies(id)) out.add(id);
+        return current.filterBy(f);
+    }
+
+    // ---- binary snapshot (only a cache: problems are reported and skipped) ----
+    private static MovieColumns loadBinary(String moviefile) {
+        Path bin = BinarySnapshot.freshCompanion(moviefile);
+        if (bin == null) return null;
+        try {
+            return BinarySnapshot.readMovies(bin);
+        } catch (IOException e) {
+            System.err.println("Ignoring " + bin + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static void saveBinary(MovieSnapshot snap, String moviefile) {
+        Path bin = BinarySnapshot.companion(moviefile);
+        try {
+            BinarySnapshot.writeMovies(bin, snap);
+        } catch (IOException e) {
+            System.err.println("Could not write " + bin + ": " + e.getMessage());
         }
-        return out;
     }
 
     // ---- CSV loading ----
-    private static void loadMovies(String filename) {
-        ourMovies.clear();
-        currentSource = filename;
+    /** Parse the movie CSV (package-private so the benchmarks can call it). */
+    static MovieColumns loadMovies(String filename) {
+        MovieColumns.Builder movies = new MovieColumns.Builder();
         Path p = Paths.get(filename);
 
         if (!Files.exists(p)) {
@@ -69,15 +111,15 @@ public class MovieDatabase {
             }
         }
 
-        try (BufferedReader br = Files.newBufferedReader(p, StandardCharsets.UTF_8)) {
-            String header = br.readLine();
-            if (header == null) return;
+        // One tokenizer streams the whole file; Strings are made only for the
+        // columns we keep, and year/minutes are parsed straight from its buffer.
+        try (CsvTokenizer csv = new CsvTokenizer(Files.newBufferedReader(p, StandardCharsets.UTF_8))) {
+            if (!csv.next()) return movies.build();
 
-            String[] cols = splitCsvLine(header).toArray(new String[0]);
             HashMap<String,Integer> idx = new HashMap<>();
-            for (int i = 0; i < cols.length; i++) idx.put(cols[i].trim().toLowerCase(), i);
+            for (int i = 0; i < csv.fields(); i++) idx.put(csv.field(i).toLowerCase(), i);
 
-            // Helper to read fields by name (case-insensitive)
+            // Helper to find columns by name (case-insensitive)
             java.util.function.Function<String,Integer> pos = name -> idx.getOrDefault(name.toLowerCase(), -1);
 
             int iId       = pos.apply("id");
@@ -90,79 +132,23 @@ public class MovieDatabase {
             int iMinutes  = pos.apply("minutes");
             int iPoster   = pos.apply("poster");
 
-            String line;
-            while ((line = br.readLine()) != null) {
-                if (line.trim().isEmpty()) continue;
-                ArrayList<String> parts = splitCsvLine(line);
-
-                String id      = get(parts, iId);
-                if (id.isEmpty()) continue;
+            while (csv.next()) {
+                String id      = csv.field(iId);
+                if (id.isEmpty()) continue;   // also skips blank lines
 
-                String title   = get(parts, iTitle);
-                int year       = parseIntSafe(get(parts, iYear), 0);
-                String country = get(parts, iCountry);
-                String genres  = get(parts, iGenres);
-                String director= get(parts, iDirector);
-                int minutes    = parseIntSafe(get(parts, iMinutes), 0);
-                String poster  = get(parts, iPoster);
+                String title   = csv.field(iTitle);
+                int year       = csv.intField(iYear, 0);
+                String country = csv.field(iCountry);
+                String genres  = csv.field(iGenres);
+                String director= csv.field(iDirector);
+                int minutes    = csv.intField(iMinutes, 0);
+                String poster  = csv.field(iPoster);
 
-                Movie m = new Movie(id, title, year, country, genres, director, minutes, poster);
-                ourMovies.put(id, m);
+                movies.add(id, title, year, country, genres, director, minutes, poster);
             }
         } catch (IOException ex) {
             throw new RuntimeException("Error reading " + filename + ": " + ex.getMessage(), ex);
         }
-    }
-
-    // Robust CSV splitter: handles quotes, commas, and escaped quotes ("")
-    private static ArrayList<String> splitCsvLine(String line) {
-        ArrayList<String> out = new ArrayList<>();
-        if (line == null) return out;
-
-        // Strip UTF-8 BOM if present
-        if (!line.isEmpty() && line.charAt(0) == '\uFEFF') {
-            line = line.substring(1);
-        }
-
-        StringBuilder cur = new StringBuilder();
-        boolean inQuotes = false;
-        for (int i = 0; i < line.length(); i++) {
-            char c = line.charAt(i);
-            if (c == '"') {
-                if (inQuotes && i + 1 < line.length() && line.charAt(i + 1) == '"') {
-                    // Escaped quote ("")
-                    cur.append('"');
-                    i++; // skip next
-                } else {
-                    inQuotes = !inQuotes;
-                }
-            } else if (c == ',' && !inQuotes) {
-                out.add(cur.toString());
-                cur.setLength(0);
-            } else {
-                cur.append(c);
-            }
-        }
-        out.add(cur.toString());
-        // Trim outer quotes and whitespace
-        for (int i = 0; i < out.size(); i++) {
-            String s = out.get(i).trim();
-            if (s.length() >= 2 && s.startsWith("\"") && s.endsWith("\"")) {
-                s = s.substring(1, s.length() - 1).replace("\"\"", "\"");
-            }
-            out.set(i, s);
-        }
-        return out;
-    }
-
-    private static String get(ArrayList<String> parts, int idx) {
-        if (idx < 0 || idx >= parts.size()) return "";
-        return parts.get(idx).trim();
-    }
-
-    private static int parseIntSafe(String s, int def) {
-        try { return Integer.parseInt(s.trim()); }
-        catch (Exception e) { return def; }
+        return movies.build();
     }
 }
-
@@ -0,0 +1,63 @@
+import java.util.*;
+
+/**
+ * Posting list for one movie: every rater who rated it and the value they gave,
+ * plus a running sum and count so averages don't need a pass over all raters.
+ * Maintained by RaterDatabase as ratings are loaded.
+ */
+public class MovieRatings {
+    private String movieID;
+    private ArrayList<String> raterIDs;
+    private double[] values;
+    private double sum;
+
+    public MovieRatings(String movieID) {
+        this.movieID = movieID;
+        raterIDs = new ArrayList<>();
+        values = new double[4];
+        sum = 0.0;
+    }
+
+    /** Copy, so a new snapshot can change it without touching the original. */
+    public MovieRatings(MovieRatings other) {
+        movieID = other.movieID;
+        raterIDs = new ArrayList<>(other.raterIDs);
+        values = Arrays.copyOf(other.values, Math.max(4, other.raterIDs.size()));
+        sum = other.sum;
+    }
+
+    /** Record a new rating for this movie. */
+    public void add(String raterID, double rating) {
+        int n = raterIDs.size();
+        if (n == values.length) values = Arrays.copyOf(values, n * 2);
+        raterIDs.add(raterID);
+        values[n] = rating;
+        sum += rating;
+    }
+
+    /** Replace the rating an existing rater gave this movie (rare: duplicate rows). */
+    public void replace(String raterID, double rating) {
+        int i = raterIDs.indexOf(raterID);
+        if (i < 0) {
+            add(raterID, rating);
+            return;
+        }
+        values[i] = rating;
+        // recompute rather than patch the sum so it can't drift
+        sum = 0.0;
+        for (int k = 0; k < raterIDs.size(); k++) sum += values[k];
+    }
+
+    public String getMovieID()        { return movieID; }
+    public int    getCount()          { return raterIDs.size(); }
+    public double getSum()            { return sum; }
+    public String getRaterID(int i)   { return raterIDs.get(i); }
+    public double getValue(int i)     { return values[i]; }
+
+    /** Average rating, or 0.0 if fewer than minimalRaters rated the movie. */
+    public double getAverage(int minimalRaters) {
+        int count = raterIDs.size();
+        if (count == 0 || count < minimalRaters) return 0.0;
+        return sum / count;
+    }
+}
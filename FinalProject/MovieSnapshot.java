@@ -0,0 +1,59 @@
+import java.util.*;
+
+/**
+ * Immutable view of the movie table as of one load. MovieDatabase swaps in a
+ * new one atomically on reload; whoever holds this one keeps seeing the old
+ * movies until they drop it.
+ *
+ * The rows live in a MovieColumns table; the by-ID getters look the row up
+ * once and read the column.
+ */
+public class MovieSnapshot {
+    static final MovieSnapshot EMPTY = new MovieSnapshot(new MovieColumns.Builder().build(), "");
+
+    private MovieColumns columns;
+    private String source;
+
+    MovieSnapshot(MovieColumns columns, String source) {
+        this.columns = columns;
+        this.source = source;
+    }
+
+    public int size()                   { return columns.size(); }
+    public boolean containsID(String id) { return columns.indexOf(id) >= 0; }
+    public String getSource()           { return source; }
+
+    /** The columnar table itself, for filters and scans by row. */
+    public MovieColumns getColumns() {
+        return columns;
+    }
+
+    /** The Movie for id, or null. */
+    public Movie getMovie(String id) {
+        int row = columns.indexOf(id);
+        return (row < 0) ? null : columns.getMovie(row);
+    }
+
+    /** All movie IDs, in row order. */
+    public ArrayList<String> getMovies() {
+        ArrayList<String> out = new ArrayList<>(columns.size());
+        for (int row = 0; row < columns.size(); row++) out.add(columns.getID(row));
+        return out;
+    }
+
+    public String getTitle(String id)    { int r = columns.indexOf(id); return (r<0)?"":columns.getTitle(r); }
+    public int    getYear(String id)     { int r = columns.indexOf(id); return (r<0)?0:columns.getYear(r); }
+    public String getCountry(String id)  { int r = columns.indexOf(id); return (r<0)?"":columns.getCountry(r); }
+    public String getGenres(String id)   { int r = columns.indexOf(id); return (r<0)?"":columns.getGenres(r); }
+    public String getDirector(String id) { int r = columns.indexOf(id); return (r<0)?"":columns.getDirector(r); }
+    public int    getMinutes(String id)  { int r = columns.indexOf(id); return (r<0)?0:columns.getMinutes(r); }
+    public String getPoster(String id)   { int r = columns.indexOf(id); return (r<0)?"":columns.getPoster(r); }
+
+    /** IDs whose movie rows satisfy the given filter, in row order (planned by FilterPlanner) */
+    public ArrayList<String> filterBy(Filter f) {
+        int[] rows = FilterPlanner.rows(f, columns);
+        ArrayList<String> out = new ArrayList<>(rows.length);
+        for (int row : rows) out.add(columns.getID(row));
+        return out;
+    }
+}
@@ -0,0 +1,163 @@
+import java.util.*;
+import java.util.function.IntFunction;
+
+/**
+ * LRU cache of each rater's top-K similar raters, so a retry or a page
+ * refresh for the same user doesn't repeat the pass over every rater.
+ *
+ * Lists are kept for RaterDatabase's current snapshot only and are stored
+ * `depth` deep; any k up to that is a prefix of the stored list (the order
+ * is TopRatings.BEST_FIRST, a total order). Register the cache as a
+ * RatingsListener (register() does it) to keep it in step with the data:
+ *
+ *  - a reload drops everything;
+ *  - when rater X changes, X's own list is dropped, and every other list
+ *    is patched with one dot product: X moves, enters or leaves it. A list
+ *    that X falls out of the bottom of loses its last place to someone
+ *    unknown, so that one is dropped instead.
+ *
+ * Thread-safe; the similarity pass on a miss runs outside the lock.
+ */
+public class NeighbourCache implements RatingsListener {
+    // a batch this big touches most lists anyway: cheaper to start over
+    private static final int MAX_PATCHED_RATERS = 64;
+
+    private final int capacity, depth;
+    private final LinkedHashMap<String, Neighbours> lists;
+    private RaterSnapshot snapshot;
+    private long hits, misses, evictions, invalidations;
+
+    /** Up to capacity raters, each with their best `depth` neighbours. */
+    public NeighbourCache(int capacity, int depth) {
+        this.capacity = Math.max(1, capacity);
+        this.depth = Math.max(1, depth);
+        lists = new LinkedHashMap<String, Neighbours>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+            protected boolean removeEldestEntry(Map.Entry<String, Neighbours> eldest) {
+                if (size() <= NeighbourCache.this.capacity) return false;
+                evictions++;
+                return true;
+            }
+        };
+        snapshot = RaterDatabase.snapshot();
+    }
+
+    /** A cache that follows RaterDatabase from now on. */
+    public static NeighbourCache register(int capacity, int depth) {
+        NeighbourCache c = new NeighbourCache(capacity, depth);
+        RaterDatabase.addListener(c);
+        c.ratingsChanged(RaterDatabase.snapshot(), null);   // in case a load landed in between
+        return c;
+    }
+
+    public int getDepth() { return depth; }
+
+    /**
+     * The best k neighbours of raterID in rs. compute(n) must return the top
+     * n by TopRatings.BEST_FIRST; it is called with n = max(k, depth) on a
+     * miss, and the answer is kept only if rs is still the current snapshot.
+     */
+    public ArrayList<Rating> get(RaterSnapshot rs, String raterID, int k, IntFunction<ArrayList<Rating>> compute) {
+        int n = Math.max(k, depth);
+        synchronized (this) {
+            if (rs == snapshot) {
+                Neighbours list = lists.get(raterID);
+                // a list shorter than it was asked to be already holds every positive neighbour
+                if (list != null && (k <= list.size() || list.size() < list.depth)) {
+                    hits++;
+                    return new ArrayList<>(list.subList(0, Math.min(k, list.size())));
+                }
+            }
+            misses++;
+        }
+        ArrayList<Rating> fresh = compute.apply(n);
+        synchronized (this) {
+            if (rs == snapshot) lists.put(raterID, new Neighbours(fresh, n));
+        }
+        return new ArrayList<>(fresh.subList(0, Math.min(k, fresh.size())));
+    }
+
+    /** Drop everything (counters are kept). */
+    public synchronized void clear() {
+        invalidations += lists.size();
+        lists.clear();
+    }
+
+    public synchronized int size()         { return lists.size(); }
+    public synchronized long getHits()      { return hits; }
+    public synchronized long getMisses()    { return misses; }
+    public synchronized long getEvictions() { return evictions; }
+    /** Lists dropped because the ratings changed. */
+    public synchronized long getInvalidations() { return invalidations; }
+
+    public synchronized String toString() {
+        long total = hits + misses;
+        return String.format(Locale.US, "NeighbourCache[%d/%d raters, depth %d, %d hits, %d misses (%.1f%%), %d evicted, %d invalidated]",
+            lists.size(), capacity, depth, hits, misses, total == 0 ? 0.0 : 100.0 * hits / total, evictions, invalidations);
+    }
+
+    // ---------- keeping up with RaterDatabase ----------
+    public synchronized void ratingsChanged(RaterSnapshot published, Set<String> changedRaters) {
+        if (published != RaterDatabase.snapshot()) {
+            // another publish overtook this one; its own call will set the snapshot
+            clear();
+            return;
+        }
+        if (changedRaters == null || changedRaters.size() > MAX_PATCHED_RATERS) {
+            clear();
+        } else {
+            for (String x : changedRaters) patch(published, x);
+        }
+        snapshot = published;
+    }
+
+    /** Bring every list up to date with rater x's new ratings. */
+    private void patch(RaterSnapshot rs, String x) {
+        if (lists.remove(x) != null) invalidations++;
+        SparseVector vx = rs.getVector(x);
+        Iterator<Map.Entry<String, Neighbours>> it = lists.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Neighbours> e = it.next();
+            SparseVector ve = rs.getVector(e.getKey());
+            double s = (vx == null || ve == null) ? 0.0 : SparseVector.dot(ve, vx);
+            if (!repair(e.getValue(), x, s)) {
+                it.remove();
+                invalidations++;
+            }
+        }
+    }
+
+    /** Put x (new similarity s) in its right place in list; false if the list can't be repaired. */
+    private static boolean repair(Neighbours list, String x, double s) {
+        boolean full = list.size() >= list.depth;
+        int at = -1;
+        for (int i = 0; i < list.size(); i++) {
+            if (list.get(i).getItem().equals(x)) { at = i; break; }
+        }
+        if (at >= 0) list.remove(at);
+        Rating r = new Rating(x, s);
+        if (!(s > 0)) {
+            // x leaves (or never was in): the list was full, so someone unseen moves up
+            return at < 0 || !full;
+        }
+        int pos = Collections.binarySearch(list, r, TopRatings.BEST_FIRST);
+        pos = (pos < 0) ? -pos - 1 : pos;
+        if (pos < list.size() || !full) {
+            list.add(pos, r);
+            if (list.size() > list.depth) list.remove(list.size() - 1);
+            return true;
+        }
+        // x sank past the end of a full list: whoever is next is unknown
+        return at < 0;
+    }
+
+    /** A neighbour list plus how deep it was asked to be. */
+    private static class Neighbours extends ArrayList<Rating> {
+        private static final long serialVersionUID = 1L;
+        final int depth;
+        Neighbours(List<Rating> list, int depth) {
+            super(list);
+            this.depth = depth;
+        }
+    }
+}
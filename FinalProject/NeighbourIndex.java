@@ -0,0 +1,145 @@
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Precomputed top-K neighbours per ID: raters (written by SimilarityJob) or
+ * movies (ItemSimilarityJob). Looking an ID up is a hash probe and a copy of
+ * at most K entries, so FourthRatings.setNeighbourIndex can skip the
+ * similarity pass entirely, and the item-based recommendations only touch
+ * the neighbours of the movies a user rated.
+ *
+ * The file is a snapshot of the ratings it was built from: ratings added
+ * since are not reflected until the job is run again.
+ *
+ *   int magic 'DKNN', int version, int kind (1 = raters, 2 = movies), int k,
+ *   IDs (string column), then per ID in that order: int count,
+ *   int[count] neighbour (ID index), float[count] similarity
+ *                                            -- best first, positive only
+ *
+ * Layouts as in BinarySnapshot (big-endian, 4-byte aligned).
+ */
+public class NeighbourIndex {
+    static final int MAGIC = 0x444B4E4E;   // "DKNN"
+    static final int VERSION = 2;
+    public static final int RATERS = 1, MOVIES = 2;
+
+    private int kind;
+    private IdDictionary ids;
+    private int k;
+    private int[] rowStart;     // ID i's neighbours are rowStart[i]..rowStart[i+1]-1
+    private int[] neighbours;
+    private float[] scores;
+
+    /** An index held in memory (ItemSimilarityJob builds one directly). */
+    NeighbourIndex(int kind, int k, String[] ids, int[] rowStart, int[] neighbours, float[] scores) {
+        this.kind = kind;
+        this.k = k;
+        this.ids = new IdDictionary();
+        for (String id : ids) this.ids.intern(id);
+        this.rowStart = rowStart;
+        this.neighbours = neighbours;
+        this.scores = scores;
+    }
+
+    public static NeighbourIndex read(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (ch.size() > Integer.MAX_VALUE) throw new IOException(file + " is too large to map in one piece");
+            ByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            if (buf.remaining() < 16 || buf.getInt() != MAGIC) throw new IOException(file + " is not a neighbour file");
+            int version = buf.getInt();
+            if (version != VERSION) throw new IOException(file + " has neighbour file version " + version + ", expected " + VERSION);
+            int kind = buf.getInt();
+            if (kind != RATERS && kind != MOVIES) throw new IOException(file + " is damaged (kind " + kind + ")");
+            int k = buf.getInt();
+            String[] ids = BinarySnapshot.readStrings(buf);
+
+            int n = ids.length;
+            int[] rowStart = new int[n + 1];
+            int[] nb = new int[(int) Math.max(16, Math.min((long) n * k, 1 << 24))];   // grows if needed
+            float[] sc = new float[nb.length];
+            int total = 0;
+            for (int i = 0; i < n; i++) {
+                int count = buf.getInt();
+                if (count < 0 || count > k) throw new IOException(file + " is damaged (" + ids[i] + ")");
+                if (total + count > nb.length) {
+                    nb = Arrays.copyOf(nb, Math.max(nb.length * 2, total + count));
+                    sc = Arrays.copyOf(sc, nb.length);
+                }
+                buf.asIntBuffer().get(nb, total, count);
+                buf.position(buf.position() + 4 * count);
+                buf.asFloatBuffer().get(sc, total, count);
+                buf.position(buf.position() + 4 * count);
+                total += count;
+                rowStart[i + 1] = total;
+            }
+            nb = Arrays.copyOf(nb, total);
+            for (int j : nb) {
+                if (j < 0 || j >= n) throw new IOException(file + " is damaged (neighbour " + j + " of " + n + ")");
+            }
+            return new NeighbourIndex(kind, k, ids, rowStart, nb, Arrays.copyOf(sc, total));
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IOException(file + " is truncated", e);
+        }
+    }
+
+    public void write(Path file) throws IOException {
+        try (DataOutputStream out = BinarySnapshot.open(file)) {
+            String[] a = new String[ids.size()];
+            for (int i = 0; i < a.length; i++) a[i] = ids.get(i);
+            writeHeader(out, kind, k, a);
+            for (int i = 0; i < a.length; i++) {
+                out.writeInt(rowStart[i + 1] - rowStart[i]);
+                for (int j = rowStart[i]; j < rowStart[i + 1]; j++) out.writeInt(neighbours[j]);
+                for (int j = rowStart[i]; j < rowStart[i + 1]; j++) out.writeFloat(scores[j]);
+            }
+        }
+        BinarySnapshot.commit(file);
+    }
+
+    /** Everything up to the first ID's row; the rows follow in ids order. */
+    static void writeHeader(DataOutputStream out, int kind, int k, String[] ids) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(kind);
+        out.writeInt(k);
+        BinarySnapshot.writeStrings(out, ids);
+    }
+
+    /** RATERS or MOVIES. */
+    public int getKind() { return kind; }
+
+    /** How many neighbours were kept per ID. */
+    public int getK() { return k; }
+
+    /** Number of IDs in the file. */
+    public int size() { return ids.size(); }
+
+    public boolean contains(String id) {
+        return ids.indexOf(id) >= 0;
+    }
+
+    /**
+     * Up to n of id's neighbours as (neighbourID, similarity), best first as
+     * the job ranked them (for raters, the same order as
+     * FourthRatings.getTopSimilarities; similarities are stored as floats);
+     * null if the ID isn't in the file. n past getK() gets only K.
+     */
+    public ArrayList<Rating> top(String id, int n) {
+        int i = ids.indexOf(id);
+        if (i < 0) return null;
+        int from = rowStart[i], to = Math.min(rowStart[i + 1], from + Math.max(0, n));
+        ArrayList<Rating> out = new ArrayList<>(to - from);
+        for (int j = from; j < to; j++) out.add(new Rating(ids.get(neighbours[j]), scores[j]));
+        return out;
+    }
+
+    // ---- by index, for the scoring loops ----
+    IdDictionary getIDs()      { return ids; }
+    int start(int i)           { return rowStart[i]; }
+    int end(int i)             { return rowStart[i + 1]; }
+    int neighbourAt(int j)     { return neighbours[j]; }
+    float scoreAt(int j)       { return scores[j]; }
+}
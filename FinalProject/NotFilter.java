@@ -0,0 +1,25 @@
+/** Passes movies the wrapped filter rejects. */
+public class NotFilter implements MaskFilter {
+    private Filter f;
+    private ColumnFilter byRow;
+    public NotFilter(Filter f) {
+        this.f = f;
+        this.byRow = FilterMasks.byRow(f);
+    }
+    public boolean satisfies(String id) {
+        return !f.satisfies(id);
+    }
+    public boolean satisfies(MovieColumns movies, int row) {
+        return !byRow.satisfies(movies, row);
+    }
+    public long[] mask(MovieColumns movies) {
+        long[] bits = FilterMasks.of(f, movies).clone();
+        for (int w = 0; w < bits.length; w++) bits[w] = ~bits[w];
+        FilterMasks.clearTail(bits, movies.size());
+        return bits;
+    }
+    public String key() {
+        String k = FilterMasks.keyOf(f);
+        return (k == null) ? null : "not(" + k + ")";
+    }
+}
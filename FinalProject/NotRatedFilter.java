@@ -0,0 +1,23 @@
+/** Passes only movies the given rater has not rated yet (everything if rater is null). */
+public class NotRatedFilter implements MaskFilter {
+    private Rater rater;
+    public NotRatedFilter(Rater rater) { this.rater = rater; }
+    public boolean satisfies(String id) {
+        return rater == null || !rater.hasRating(id);
+    }
+    public boolean satisfies(MovieColumns movies, int row) {
+        return rater == null || !rater.hasRating(movies.getID(row));
+    }
+    /** All rows minus the rater's own movies: one lookup per rating, not per movie. */
+    public long[] mask(MovieColumns movies) {
+        long[] bits = FilterMasks.all(movies);
+        if (rater == null) return bits;
+        for (String id : rater.getItemsRated()) {
+            int row = movies.indexOf(id);
+            if (row >= 0) bits[row >>> 6] &= ~(1L << row);
+        }
+        return bits;
+    }
+    /** Depends on the rater's current ratings, so never cached. */
+    public String key() { return null; }
+}
@@ -0,0 +1,80 @@
+import java.util.*;
+
+/**
+ * A map made of a large shared base plus a small layer of newer entries on
+ * top. derive() gives the next version in O(top) instead of copying the
+ * whole base, which is what makes single-rating updates to a snapshot cheap.
+ * Once the top layer outgrows ~2*sqrt(base) the two are merged into a new
+ * base, keeping both the per-update copy and the lookup cost small.
+ *
+ * Neither layer is written after the owning snapshot is published.
+ */
+public class OverlayMap<K, V> {
+    private HashMap<K, V> base;
+    private HashMap<K, V> top;
+    private int size;
+
+    public OverlayMap() {
+        this(new HashMap<>(), new HashMap<>(), 0);
+    }
+
+    private OverlayMap(HashMap<K, V> base, HashMap<K, V> top, int size) {
+        this.base = base;
+        this.top = top;
+        this.size = size;
+    }
+
+    /** A new version to write into; this one is left as it is. */
+    public OverlayMap<K, V> derive() {
+        if (top.size() > 2 * Math.sqrt(base.size()) + 64) {
+            HashMap<K, V> merged = new HashMap<>(base);
+            merged.putAll(top);
+            return new OverlayMap<>(merged, new HashMap<>(), size);
+        }
+        return new OverlayMap<>(base, new HashMap<>(top), size);
+    }
+
+    public V get(K key) {
+        V v = top.get(key);
+        return (v != null) ? v : base.get(key);
+    }
+
+    public boolean containsKey(K key) {
+        return top.containsKey(key) || base.containsKey(key);
+    }
+
+    public void put(K key, V value) {
+        if (!containsKey(key)) size++;
+        top.put(key, value);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /** Every current value (newer layer wins), as a fresh list. */
+    public ArrayList<V> values() {
+        ArrayList<V> out = new ArrayList<>(size);
+        if (top.isEmpty()) {
+            out.addAll(base.values());
+            return out;
+        }
+        for (Map.Entry<K, V> e : base.entrySet()) {
+            V newer = top.get(e.getKey());
+            out.add((newer != null) ? newer : e.getValue());
+        }
+        for (Map.Entry<K, V> e : top.entrySet()) {
+            if (!base.containsKey(e.getKey())) out.add(e.getValue());
+        }
+        return out;
+    }
+
+    /** Fold the top layer into the base if it has grown large (call before publishing). */
+    public OverlayMap<K, V> settle() {
+        if (top.size() <= 2 * Math.sqrt(base.size()) + 64) return this;
+        if (base.isEmpty()) return new OverlayMap<>(top, new HashMap<>(), size);
+        HashMap<K, V> merged = new HashMap<>(base);
+        merged.putAll(top);
+        return new OverlayMap<>(merged, new HashMap<>(), size);
+    }
+}
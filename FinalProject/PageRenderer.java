@@ -0,0 +1,226 @@
+import java.io.*;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Writes the recommendations page straight to a Writer or an OutputStream
+ * (UTF-8), instead of building it in one big String first.
+ *
+ * Text goes through a char buffer that is kept between pages, so keep one
+ * renderer per thread and reuse it. The style sheet and the other fixed
+ * parts of the page are encoded once, when the class loads; on an
+ * OutputStream they are copied out as bytes. Each row looks its movie up
+ * once and reads the columns by row. Escaping is one pass over the string,
+ * and scores are formatted by hand like "%.2f" (String.format is slow).
+ *
+ * The renderer's own buffer is emptied into the output at the end of each
+ * page; the output itself is not flushed.
+ */
+public class PageRenderer {
+    private static final Chunk HEAD = new Chunk("<style>"
+        + "body{font-family:Arial,Helvetica,sans-serif;margin:24px;background:#0b1020;color:#eef1f7}"
+        + "h1{font-size:24px;margin:0 0 8px}"
+        + "p.sub{opacity:.8;margin:0 0 16px}"
+        + "table{border-collapse:collapse;width:100%}"
+        + "th,td{padding:12px 10px;border-bottom:1px solid rgba(255,255,255,.08);vertical-align:top}"
+        + "th{position:sticky;top:0;background:#0b1020;text-align:left;font-size:12px;letter-spacing:.06em;text-transform:uppercase;opacity:.8}"
+        + "tr:hover{background:rgba(255,255,255,.04)}"
+        + ".poster{width:70px;height:105px;object-fit:cover;border-radius:8px;box-shadow:0 2px 10px rgba(0,0,0,.25)}"
+        + ".title{font-weight:700;font-size:16px;margin-bottom:4px}"
+        + ".meta{opacity:.8;font-size:13px}"
+        + ".badge{display:inline-block;padding:2px 8px;border:1px solid rgba(255,255,255,.2);border-radius:999px;font-size:12px;margin-right:6px;opacity:.9}"
+        + "@media (max-width:640px){td:nth-child(1){display:none}}"
+        + "</style>"
+        + "<h1>Recommended for You</h1>"
+        + "<p class='sub'>Based on your ratings and similar users.</p>"
+        + "<table>"
+        + "<thead><tr><th>#</th><th>Movie</th><th>Details</th><th>Score</th></tr></thead><tbody>");
+    private static final Chunk TAIL = new Chunk("</tbody></table>");
+    private static final Chunk EMPTY = new Chunk("<h2>No recommendations yet</h2>"
+        + "<p>Try rating a few more movies and refresh the page.</p>");
+    private static final Chunk NO_POSTER = new Chunk("<div class='poster' style='background:#1a2240;display:flex;align-items:center;justify-content:center;"
+        + "border:1px solid rgba(255,255,255,.1)'>N/A</div>");
+
+    private final char[] buf = new char[8192];
+    private int pos;
+    private Writer writer;                  // one of these two is set while a page is written
+    private OutputStream stream;
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+        .onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final ByteBuffer bytes = ByteBuffer.allocate(3 * 8192);     // room for the buffer at 3 bytes a char
+
+    // ---------- pages ----------
+
+    /** The top limit rows of recs as the recommendations page. */
+    public void writePage(MovieSnapshot movies, List<Rating> recs, int limit, Writer out) throws IOException {
+        writer = out;
+        try { page(movies, recs, limit); } finally { writer = null; pos = 0; }
+    }
+
+    public void writePage(MovieSnapshot movies, List<Rating> recs, int limit, OutputStream out) throws IOException {
+        stream = out;
+        try { page(movies, recs, limit); } finally { stream = null; pos = 0; }
+    }
+
+    /** The "nothing yet" page. */
+    public void writeEmpty(Writer out) throws IOException {
+        writer = out;
+        try { put(EMPTY); drainChars(); } finally { writer = null; pos = 0; }
+    }
+
+    public void writeEmpty(OutputStream out) throws IOException {
+        stream = out;
+        try { put(EMPTY); drainChars(); } finally { stream = null; pos = 0; }
+    }
+
+    private void page(MovieSnapshot movies, List<Rating> recs, int limit) throws IOException {
+        MovieColumns cols = movies.getColumns();
+        limit = Math.min(limit, recs.size());
+        put(HEAD);
+        for (int i = 0; i < limit; i++) {
+            Rating r = recs.get(i);
+            int row = cols.indexOf(r.getItem());
+            String poster = (row < 0) ? "" : cols.getPoster(row);
+
+            put("<tr><td>"); put(i + 1); put("</td>");
+            put("<td style='display:flex;gap:12px;align-items:flex-start'>");
+            if (poster != null && poster.length() > 0 && !"N/A".equals(poster)) {
+                put("<img class='poster' src='"); escape(poster, true); put("' alt='poster'/>");
+            } else {
+                put(NO_POSTER);
+            }
+            put("<div><div class='title'>"); escape((row < 0) ? "" : cols.getTitle(row), false);
+            put(" ("); put((row < 0) ? 0 : cols.getYear(row)); put(")</div>");
+            put("<div class='meta'>"); escape((row < 0) ? "" : cols.getGenres(row), false); put("</div></div></td>");
+            put("<td><span class='badge'>"); put((row < 0) ? 0 : cols.getMinutes(row)); put(" min</span>");
+            put("<span class='badge'>"); escape((row < 0) ? "" : cols.getCountry(row), false); put("</span>");
+            put("<div class='meta'>Directed by "); escape((row < 0) ? "" : cols.getDirector(row), false); put("</div></td>");
+            put("<td>"); score(r.getValue()); put("</td></tr>");
+        }
+        put(TAIL);
+        drainChars();
+    }
+
+    // ---------- text ----------
+
+    /** s with & < > (and ' inside attributes) as entities (see Html), in one pass. */
+    private void escape(String s, boolean attribute) throws IOException {
+        if (s == null) return;
+        int from = 0, n = s.length();
+        for (int i = 0; i < n; i++) {
+            String entity = Html.entity(s.charAt(i), attribute);
+            if (entity == null) continue;
+            put(s, from, i);
+            put(entity);
+            from = i + 1;
+        }
+        put(s, from, n);
+    }
+
+    /** v like String.format(Locale.US, "%.2f", v), which rounds the shortest decimal for v (Double.toString's) half-up. */
+    private void score(double v) throws IOException {
+        if (Double.isNaN(v) || Double.isInfinite(v)) {
+            put(Double.isNaN(v) ? "NaN" : (v > 0) ? "Infinity" : "-Infinity");
+            return;
+        }
+        boolean negative = v < 0 || (v == 0 && 1 / v < 0);
+        double x = Math.abs(v) * 100;
+        if (x >= 1e15 || Math.abs(x - Math.floor(x) - 0.5) < 1e-6) {
+            // near a tie the rounded product can fall either side, so round the
+            // decimal itself, as Formatter does (also past long range)
+            BigDecimal exact = BigDecimal.valueOf(v).setScale(2, RoundingMode.HALF_UP);
+            if (negative && exact.signum() == 0) put('-');
+            put(exact.toPlainString());
+            return;
+        }
+        long cents = Math.round(x);
+        if (negative) put('-');
+        put(cents / 100);
+        put('.');
+        int c = (int) (cents % 100);
+        put((char) ('0' + c / 10));
+        put((char) ('0' + c % 10));
+    }
+
+    private void put(long n) throws IOException {
+        if (n < 0) { put('-'); n = -n; }
+        if (n >= 10) put(n / 10);
+        put((char) ('0' + n % 10));
+    }
+
+    private void put(char c) throws IOException {
+        if (pos == buf.length) drainChars();
+        buf[pos++] = c;
+    }
+
+    private void put(String s) throws IOException {
+        put(s, 0, s.length());
+    }
+
+    private void put(String s, int from, int to) throws IOException {
+        while (from < to) {
+            if (pos == buf.length) drainChars();
+            int n = Math.min(to - from, buf.length - pos);
+            // keep a surrogate pair together, so every drain encodes whole characters
+            if (n > 1 && from + n < to && Character.isHighSurrogate(s.charAt(from + n - 1))) n--;
+            s.getChars(from, from + n, buf, pos);
+            pos += n;
+            from += n;
+        }
+    }
+
+    private void put(Chunk c) throws IOException {
+        if (stream != null) {
+            drainChars();
+            stream.write(c.bytes);
+        } else if (c.chars.length > buf.length - pos) {
+            drainChars();
+            writer.write(c.chars);
+        } else {
+            System.arraycopy(c.chars, 0, buf, pos, c.chars.length);
+            pos += c.chars.length;
+        }
+    }
+
+    // ---------- output ----------
+
+    /** Move the char buffer to the output (encoded, for a stream). */
+    private void drainChars() throws IOException {
+        if (pos == 0) return;
+        if (writer != null) {
+            writer.write(buf, 0, pos);
+        } else {
+            // the buffer ends on a whole character (or a malformed one, which the
+            // encoder replaces), so each drain is encoded as a complete input
+            CharBuffer in = CharBuffer.wrap(buf, 0, pos);
+            while (encoder.encode(in, bytes, true).isOverflow()) drainBytes();
+            while (encoder.flush(bytes).isOverflow()) drainBytes();
+            encoder.reset();
+            drainBytes();
+        }
+        pos = 0;
+    }
+
+    private void drainBytes() throws IOException {
+        bytes.flip();
+        stream.write(bytes.array(), 0, bytes.limit());
+        bytes.clear();
+    }
+
+    /** A fixed piece of the page, as chars for Writers and UTF-8 for streams. */
+    private static final class Chunk {
+        final char[] chars;
+        final byte[] bytes;
+
+        Chunk(String s) {
+            chars = s.toCharArray();
+            bytes = s.getBytes(StandardCharsets.UTF_8);
+        }
+    }
+}
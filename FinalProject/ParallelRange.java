@@ -0,0 +1,43 @@
+import java.util.concurrent.*;
+
+/**
+ * Runs a body over 0..n-1 on a ForkJoinPool by recursively halving the
+ * range. Each leaf gets a disjoint [from, to), so bodies that only write
+ * their own slots of an output array need no locking.
+ */
+public class ParallelRange {
+
+    /** Work on indices from (inclusive) to to (exclusive). */
+    public interface Body {
+        void run(int from, int to);
+    }
+
+    public static void forEach(ForkJoinPool pool, int n, Body body) {
+        if (n <= 0) return;
+        // ~8 leaves per worker keeps everyone busy when ranges are uneven
+        int grain = Math.max(1, n / (pool.getParallelism() * 8));
+        pool.invoke(new RangeTask(0, n, grain, body));
+    }
+
+    private static class RangeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private int from, to, grain;
+        private Body body;
+
+        RangeTask(int from, int to, int grain, Body body) {
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+            this.body = body;
+        }
+
+        protected void compute() {
+            if (to - from <= grain) {
+                body.run(from, to);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new RangeTask(from, mid, grain, body), new RangeTask(mid, to, grain, body));
+        }
+    }
+}
@@ -0,0 +1,75 @@
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Prints the 1..N thread scaling curve for FourthRatings' parallel mode.
+ *
+ *   java ParallelScalingReport [ratings.csv] [maxThreads] [sampleRaters]
+ *
+ * For each thread count it times getTopSimilarities, getSimilarRatingsByFilter
+ * and getAverageRatings over the same sample of raters and reports the
+ * speed-up against the sequential engine. It also checks the parallel output
+ * against the sequential output and stops if they differ.
+ */
+public class ParallelScalingReport {
+
+    public static void main(String[] args) {
+        String ratings = (args.length > 0) ? args[0] : "ratings.csv";
+        int maxThreads = (args.length > 1) ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int sample     = (args.length > 2) ? Integer.parseInt(args[2]) : 50;
+
+        MovieDatabase.initialize("ratedmoviesfull.csv");
+        RaterDatabase.initialize(ratings);
+
+        ArrayList<String> raterIDs = new ArrayList<>();
+        for (Rater r : RaterDatabase.getRaters()) raterIDs.add(r.getID());
+        Collections.shuffle(raterIDs, new Random(42));
+        List<String> picked = raterIDs.subList(0, Math.min(sample, raterIDs.size()));
+
+        FourthRatings sequential = new FourthRatings();
+        String expected = run(sequential, picked);
+        long base = time(sequential, picked);
+
+        System.out.println("Scaling on " + ratings + ": " + RaterDatabase.size() + " raters, "
+          + picked.size() + " sampled, " + Runtime.getRuntime().availableProcessors() + " cores available");
+        System.out.println(String.format(Locale.US, "%8s %12s %9s", "threads", "ms", "speed-up"));
+        System.out.println(String.format(Locale.US, "%8s %12d %9.2f", "seq", base, 1.0));
+
+        for (int t = 1; t <= maxThreads; t++) {
+            ForkJoinPool pool = new ForkJoinPool(t);   // a 1-thread pool shows the fork/join overhead
+            try {
+                FourthRatings fr = new FourthRatings();
+                fr.setPool(pool);
+                if (!run(fr, picked).equals(expected)) {
+                    throw new IllegalStateException("parallel output differs at " + t + " threads");
+                }
+                long ms = time(fr, picked);
+                System.out.println(String.format(Locale.US, "%8d %12d %9.2f", t, ms, (double) base / Math.max(1, ms)));
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    private static String run(FourthRatings fr, List<String> raterIDs) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(fr.getAverageRatings(3));
+        for (String id : raterIDs) {
+            sb.append(fr.getTopSimilarities(id, 20));
+            sb.append(fr.getSimilarRatingsByFilter(id, 20, 3, new TrueFilter()));
+        }
+        return sb.toString();
+    }
+
+    /** Best of three timed rounds after one warm-up. */
+    private static long time(FourthRatings fr, List<String> raterIDs) {
+        run(fr, raterIDs);
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < 3; round++) {
+            long t0 = System.nanoTime();
+            run(fr, raterIDs);
+            best = Math.min(best, (System.nanoTime() - t0) / 1_000_000);
+        }
+        return best;
+    }
+}
@@ -0,0 +1,60 @@
+import java.util.Arrays;
+
+/**
+ * Secondary index on one int column of MovieColumns: the rows sorted by
+ * value (ties in row order). The rows with lo <= value <= hi are then one
+ * contiguous slice, found with two binary searches, so a range filter costs
+ * O(log n + k) instead of a scan.
+ */
+public class RangeIndex {
+    private final int[] values;   // ascending
+    private final int[] rows;     // rows[i] holds values[i]
+
+    RangeIndex(int[] column, int n) {
+        long[] packed = new long[n];
+        for (int row = 0; row < n; row++) packed[row] = ((long) column[row] << 32) | row;
+        Arrays.sort(packed);
+        values = new int[n];
+        rows = new int[n];
+        for (int i = 0; i < n; i++) {
+            values[i] = (int) (packed[i] >> 32);
+            rows[i] = (int) packed[i];
+        }
+    }
+
+    /** Number of rows with lo <= value <= hi. */
+    public int count(int lo, int hi) {
+        return Math.max(0, upTo(hi) - from(lo));
+    }
+
+    /** The rows with lo <= value <= hi, in value order (a fresh array). */
+    public int[] rows(int lo, int hi) {
+        int from = from(lo), to = upTo(hi);
+        return (from < to) ? Arrays.copyOfRange(rows, from, to) : new int[0];
+    }
+
+    /** Set the bits of the rows with lo <= value <= hi. */
+    public void mark(long[] bits, int lo, int hi) {
+        for (int i = from(lo), to = upTo(hi); i < to; i++) bits[rows[i] >>> 6] |= 1L << rows[i];
+    }
+
+    /** First position whose value is >= lo. */
+    private int from(int lo) {
+        int a = 0, b = values.length;
+        while (a < b) {
+            int mid = (a + b) >>> 1;
+            if (values[mid] < lo) a = mid + 1; else b = mid;
+        }
+        return a;
+    }
+
+    /** First position whose value is > hi. */
+    private int upTo(int hi) {
+        int a = 0, b = values.length;
+        while (a < b) {
+            int mid = (a + b) >>> 1;
+            if (values[mid] <= hi) a = mid + 1; else b = mid;
+        }
+        return a;
+    }
+}
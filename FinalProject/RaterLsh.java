@@ -0,0 +1,191 @@
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Approximate "most similar raters" via random-hyperplane LSH, for rater
+ * populations too big to scan per request.
+ *
+ * Every rater's centred vector (the one dotProduct uses) gets a signature
+ * of bands x rows bits: bit h is which side of random hyperplane h the
+ * vector falls on. Two vectors agree on a bit with probability
+ * 1 - angle/pi, so vectors pointing the same way tend to share a whole band.
+ * The angle is only a proxy: similarity here is a plain dot product, so a
+ * rater with many ratings can out-score a closer one with few, and sparse
+ * raters sit near 90 degrees from almost everyone. (Padding vectors to one
+ * length, the usual inner-product trick, did worse on course-shaped data:
+ * the padding swamps the few co-rated movies.)
+ *
+ * A query collects everyone who shares at least one band with it and
+ * reranks just those with the exact SparseVector.dot, best first as in
+ * FourthRatings.getTopSimilarities. So what comes back is always exact
+ * scores in exact order; it is only the candidate set that can miss someone.
+ *
+ * More rows per band = fewer, closer candidates (faster, lower recall);
+ * more bands = more chances to collide (slower, higher recall). See
+ * LshReport for the trade-off on a given ratings file.
+ *
+ * Hyperplanes are +1/-1 per movie, drawn by hashing the movie ID with the
+ * seed, so nothing per hyperplane is stored and a query from a newer
+ * snapshot hashes the same way. Raters added after build() are not
+ * candidates until the index is rebuilt; the rerank reads the ratings of
+ * whatever snapshot the query comes from.
+ */
+public class RaterLsh {
+    public static final int MAX_ROWS = 31;     // a band key plus a rater index fit one long
+
+    private final int bands, rows;
+    private final long seed;
+    private final String[] raterIDs;
+    private final long[][] tables;   // per band: (band key << 32 | rater), sorted
+
+    private RaterLsh(int bands, int rows, long seed, String[] raterIDs, long[][] tables) {
+        this.bands = bands;
+        this.rows = rows;
+        this.seed = seed;
+        this.raterIDs = raterIDs;
+        this.tables = tables;
+    }
+
+    /** Hash every rater in rs; pool may be null (one thread). */
+    public static RaterLsh build(RaterSnapshot rs, int bands, int rows, long seed, ForkJoinPool pool) {
+        if (bands < 1 || rows < 1 || rows > MAX_ROWS) {
+            throw new IllegalArgumentException("need bands >= 1 and 1 <= rows <= " + MAX_ROWS + ", got " + bands + "x" + rows);
+        }
+        ArrayList<Rater> raters = rs.getRaters();
+        int n = raters.size();
+        String[] ids = new String[n];
+        for (int i = 0; i < n; i++) ids[i] = raters.get(i).getID();
+
+        // the hyperplane bits of each movie in rs, worked out once instead of per rating
+        IdDictionary movies = rs.getMovieIDs();
+        int words = (bands * rows + 63) >>> 6;
+        long[][] planes = new long[movies.size()][];
+        for (int m = 0; m < planes.length; m++) planes[m] = planeBits(movies.get(m), seed, words);
+
+        long[][] tables = new long[bands][n];
+        ParallelRange.Body body = (from, to) -> {
+            double[] sums = new double[bands * rows];
+            for (int i = from; i < to; i++) {
+                long[] sig = signature(rs.getVector(ids[i]), m -> planes[m], sums, words);
+                for (int b = 0; b < bands; b++) {
+                    // a rater with nothing but 5s has no direction: it can't score above 0, so leave it out
+                    tables[b][i] = (sig == null) ? -1L : (bandKey(sig, b, rows) << 32) | i;
+                }
+            }
+        };
+        if (pool == null) body.run(0, n);
+        else ParallelRange.forEach(pool, n, body);
+
+        for (int b = 0; b < bands; b++) {
+            long[] t = tables[b];
+            Arrays.sort(t);
+            int skip = 0;
+            while (skip < t.length && t[skip] < 0) skip++;
+            tables[b] = Arrays.copyOfRange(t, skip, t.length);
+        }
+        return new RaterLsh(bands, rows, seed, ids, tables);
+    }
+
+    public int getBands() { return bands; }
+    public int getRows()  { return rows; }
+
+    /** Number of raters hashed. */
+    public int size() { return raterIDs.length; }
+
+    /**
+     * About the k raters most similar to raterID in rs (positive only), best
+     * first with exact scores; empty if raterID has no ratings in rs.
+     */
+    public ArrayList<Rating> top(RaterSnapshot rs, String raterID, int k) {
+        TopRatings top = new TopRatings(k);
+        SparseVector mine = rs.getVector(raterID);
+        if (mine == null) return top.toList();
+        for (int c : candidates(rs, mine)) {
+            String otherID = raterIDs[c];
+            if (otherID.equals(raterID)) continue;
+            SparseVector other = rs.getVector(otherID);
+            if (other == null) continue;
+            double s = SparseVector.dot(mine, other);
+            if (s > 0) top.offer(otherID, s);
+        }
+        return top.toList();
+    }
+
+    /** Raters sharing at least one band with v (indices into the built raters, ascending). */
+    int[] candidates(RaterSnapshot rs, SparseVector v) {
+        int words = (bands * rows + 63) >>> 6;
+        IdDictionary movies = rs.getMovieIDs();
+        long[] sig = signature(v, m -> planeBits(movies.get(m), seed, words), new double[bands * rows], words);
+        if (sig == null) return new int[0];
+
+        int[] found = new int[64];
+        int count = 0;
+        for (int b = 0; b < bands; b++) {
+            long key = bandKey(sig, b, rows) << 32;
+            long[] t = tables[b];
+            int pos = Arrays.binarySearch(t, key);   // key | 0 sorts first among this bucket's entries
+            if (pos < 0) pos = -pos - 1;
+            for (; pos < t.length && (t[pos] & 0xFFFFFFFF00000000L) == key; pos++) {
+                if (count == found.length) found = Arrays.copyOf(found, count * 2);
+                found[count++] = (int) t[pos];
+            }
+        }
+        Arrays.sort(found, 0, count);
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (distinct == 0 || found[i] != found[distinct - 1]) found[distinct++] = found[i];
+        }
+        return Arrays.copyOf(found, distinct);
+    }
+
+    // ---------- hashing ----------
+    private interface Planes {
+        long[] of(int movieIndex);
+    }
+
+    /** One bit per hyperplane, or null for a vector with no direction. */
+    private static long[] signature(SparseVector v, Planes planes, double[] sums, int words) {
+        if (v == null) return null;
+        Arrays.fill(sums, 0.0);
+        boolean any = false;
+        for (int p = 0; p < v.size(); p++) {
+            double c = v.centredAt(p);
+            if (c == 0.0) continue;
+            any = true;
+            long[] bits = planes.of(v.indexAt(p));
+            for (int h = 0; h < sums.length; h++) {
+                sums[h] += ((bits[h >>> 6] >>> h) & 1L) == 0 ? c : -c;
+            }
+        }
+        if (!any) return null;
+        long[] sig = new long[words];
+        for (int h = 0; h < sums.length; h++) {
+            if (sums[h] > 0) sig[h >>> 6] |= 1L << h;
+        }
+        return sig;
+    }
+
+    /** Bits b*rows .. b*rows+rows-1 of the signature. */
+    private static long bandKey(long[] sig, int b, int rows) {
+        long key = 0;
+        for (int r = 0, h = b * rows; r < rows; r++, h++) {
+            key |= ((sig[h >>> 6] >>> h) & 1L) << r;
+        }
+        return key;
+    }
+
+    /** The movie's sign on each hyperplane (bit set = -1), from its ID and the seed. */
+    private static long[] planeBits(String movieID, long seed, int words) {
+        long[] bits = new long[words];
+        long x = seed ^ ((long) movieID.hashCode() * 0x9E3779B97F4A7C15L) ^ movieID.length();
+        for (int w = 0; w < words; w++) {
+            // splitmix64
+            x += 0x9E3779B97F4A7C15L;
+            long z = x;
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            bits[w] = z ^ (z >>> 31);
+        }
+        return bits;
+    }
+}
@@ -0,0 +1,206 @@
+import java.util.*;
+
+/**
+ * One immutable, consistent view of all ratings: the raters, the movie ->
+ * ratings index, the movie ID dictionary and the centred vectors.
+ *
+ * RaterDatabase publishes a new snapshot atomically after every load, so a
+ * reader that grabbed one (RaterDatabase.snapshot()) can use it for a whole
+ * request without locks while a reload builds the next one. Nothing reachable
+ * from a published snapshot is modified again.
+ *
+ * The maps are OverlayMaps, so a snapshot that differs from its base by a
+ * few raters shares almost all of its storage with it.
+ */
+public class RaterSnapshot {
+    static final RaterSnapshot EMPTY = new Builder(null, false).build("");
+
+    private OverlayMap<String, Rater> raters;
+    private OverlayMap<String, MovieRatings> movieRatings;
+    private IdDictionary movieIDs;
+    private OverlayMap<String, SparseVector> vectors;
+    private String source;
+
+    private RaterSnapshot(Builder b, String source) {
+        raters = b.raters.settle();
+        movieRatings = b.movieRatings.settle();
+        movieIDs = b.movieIDs;
+        vectors = b.vectors.settle();
+        this.source = source;
+    }
+
+    /** Single rater by id (or null). */
+    public Rater getRater(String id) {
+        return raters.get(id);
+    }
+
+    /** All raters as a fresh ArrayList. */
+    public ArrayList<Rater> getRaters() {
+        return raters.values();
+    }
+
+    public int size() {
+        return raters.size();
+    }
+
+    /** Raters and values for one movie (or null if nobody rated it). */
+    public MovieRatings getMovieRatings(String movieID) {
+        return movieRatings.get(movieID);
+    }
+
+    /** Dense movie index space used by the SparseVectors. */
+    public IdDictionary getMovieIDs() {
+        return movieIDs;
+    }
+
+    /** Centred sparse vector for a rater (built when the snapshot was), or null if no such rater. */
+    public SparseVector getVector(String raterID) {
+        return vectors.get(raterID);
+    }
+
+    /** The file (or files) this snapshot was loaded from. */
+    public String getSource() {
+        return source;
+    }
+
+    // ---------- building ----------
+    /**
+     * Builds the next snapshot off to the side. Starts as a derived (layered)
+     * copy of a base snapshot; raters and movie postings are copied the first
+     * time the builder changes them, and the movie dictionary only when a new
+     * movie ID shows up, so the base stays untouched for its readers.
+     */
+    static class Builder {
+        private OverlayMap<String, Rater> raters;
+        private OverlayMap<String, MovieRatings> movieRatings;
+        private IdDictionary movieIDs;
+        private boolean ownDictionary;
+        private OverlayMap<String, SparseVector> vectors;
+        private HashSet<String> ownRaters = new HashSet<>();
+        private HashSet<String> ownMovies = new HashSet<>();
+        private boolean compact;
+
+        /** Start from base (or from nothing when base is null). */
+        Builder(RaterSnapshot base, boolean compact) {
+            this.compact = compact;
+            if (base == null) {
+                raters = new OverlayMap<>();
+                movieRatings = new OverlayMap<>();
+                movieIDs = new IdDictionary();
+                ownDictionary = true;
+                vectors = new OverlayMap<>();
+            } else {
+                raters = base.raters.derive();
+                movieRatings = base.movieRatings.derive();
+                movieIDs = base.movieIDs;
+                ownDictionary = false;
+                vectors = base.vectors.derive();
+            }
+        }
+
+        /** The dictionary to intern into (copied from the base first if needed). */
+        IdDictionary getMovieIDs() {
+            ownDictionary();
+            return movieIDs;
+        }
+
+        boolean isCompact() {
+            return compact;
+        }
+
+        /** Raters this builder added or changed so far. */
+        Set<String> getChangedRaters() {
+            return new HashSet<>(ownRaters);
+        }
+
+        /** Add or replace one rating. */
+        void addRating(String raterID, String movieID, double rating) {
+            if (movieIDs.indexOf(movieID) < 0) getMovieIDs().intern(movieID);
+            Rater r = ownRater(raterID);
+            boolean replacing = r.hasRating(movieID);
+            r.addRating(movieID, rating);
+            indexRating(raterID, movieID, rating, replacing);
+        }
+
+        /** Take over each row of a packed matrix; raters we already have get the ratings merged in. */
+        void addMatrix(RatingMatrix m) {
+            IdDictionary movies = m.getMovieIDs();
+            for (int row = 0; row < m.numRaters(); row++) {
+                CompactRater cr = m.getRater(row);
+                String raterID = cr.getID();
+                boolean known = raters.containsKey(raterID);
+                if (!known) {
+                    raters.put(raterID, cr.withDictionary(movieIDs));
+                    ownRaters.add(raterID);
+                }
+                for (int k = 0; k < cr.numRatings(); k++) {
+                    String movieID = movies.get(cr.itemIndexAt(k));
+                    if (known) addRating(raterID, movieID, cr.valueAt(k));
+                    else indexRating(raterID, movieID, cr.valueAt(k), false);
+                }
+            }
+        }
+
+        /** Publishable snapshot; the builder must not be used afterwards. */
+        RaterSnapshot build(String source) {
+            // centre every new or changed rater once, up front; the rest keep the base's vectors
+            for (String raterID : ownRaters) {
+                vectors.put(raterID, SparseVector.of(raters.get(raterID), movieIDs));
+            }
+            return new RaterSnapshot(this, source);
+        }
+
+        /**
+         * Copy the base's dictionary before the first new ID goes in. Compact
+         * raters this builder already owns are re-pointed at the copy so their
+         * own addRating calls intern there too.
+         */
+        private void ownDictionary() {
+            if (ownDictionary) return;
+            movieIDs = movieIDs.copy();
+            ownDictionary = true;
+            for (String raterID : ownRaters) {
+                Rater r = raters.get(raterID);
+                if (r instanceof CompactRater) raters.put(raterID, ((CompactRater) r).withDictionary(movieIDs));
+            }
+        }
+
+        /** The rater, copied into this builder if it still belongs to the base. */
+        private Rater ownRater(String raterID) {
+            Rater r = raters.get(raterID);
+            if (r == null) {
+                // CompactRater in compact storage (see RaterDatabase.setCompactStorage), else EfficientRater
+                r = compact ? new CompactRater(raterID, movieIDs) : new EfficientRater(raterID);
+            } else if (!ownRaters.contains(raterID)) {
+                r = copyRater(r);
+            } else {
+                return r;
+            }
+            raters.put(raterID, r);
+            ownRaters.add(raterID);
+            return r;
+        }
+
+        private Rater copyRater(Rater r) {
+            if (r instanceof CompactRater) return ((CompactRater) r).withDictionary(movieIDs);
+            Rater copy = compact ? new CompactRater(r.getID(), movieIDs) : new EfficientRater(r.getID());
+            for (String item : r.getItemsRated()) copy.addRating(item, r.getRating(item));
+            return copy;
+        }
+
+        private void indexRating(String raterID, String movieID, double rating, boolean replacing) {
+            MovieRatings mr = movieRatings.get(movieID);
+            if (mr == null) {
+                mr = new MovieRatings(movieID);
+                movieRatings.put(movieID, mr);
+                ownMovies.add(movieID);
+            } else if (!ownMovies.contains(movieID)) {
+                mr = new MovieRatings(mr);
+                movieRatings.put(movieID, mr);
+                ownMovies.add(movieID);
+            }
+            if (replacing) mr.replace(raterID, rating);
+            else mr.add(raterID, rating);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+import java.util.*;
+
+/**
+ * The ratings of one snapshot in dense form for the offline jobs: raters
+ * numbered 0..n-1 (getRaters() order) with their centred SparseVectors (by
+ * row), and the movie -> raters postings as columns of (rater index, centred
+ * rating), CSC style, in the snapshot's movie index space.
+ */
+class RatingColumns {
+    final String[] raterIDs;
+    final HashMap<String, Integer> raterIndex = new HashMap<>();
+    final SparseVector[] vectors;
+    final IdDictionary movies;
+    final int[] colStart;     // movie m's raters are colStart[m]..colStart[m+1]-1
+    final int[] colRater;
+    final double[] colCentred;
+
+    RatingColumns(RaterSnapshot rs) {
+        ArrayList<Rater> raters = rs.getRaters();
+        int n = raters.size();
+        raterIDs = new String[n];
+        vectors = new SparseVector[n];
+        for (int i = 0; i < n; i++) {
+            raterIDs[i] = raters.get(i).getID();
+            raterIndex.put(raterIDs[i], i);
+            vectors[i] = rs.getVector(raterIDs[i]);
+        }
+
+        movies = rs.getMovieIDs();
+        int numMovies = movies.size();
+        colStart = new int[numMovies + 1];
+        for (int m = 0; m < numMovies; m++) {
+            MovieRatings mr = rs.getMovieRatings(movies.get(m));
+            colStart[m + 1] = colStart[m] + ((mr == null) ? 0 : mr.getCount());
+        }
+        colRater = new int[colStart[numMovies]];
+        colCentred = new double[colRater.length];
+        for (int m = 0; m < numMovies; m++) {
+            MovieRatings mr = rs.getMovieRatings(movies.get(m));
+            if (mr == null) continue;
+            for (int j = 0; j < mr.getCount(); j++) {
+                colRater[colStart[m] + j] = raterIndex.get(mr.getRaterID(j));
+                colCentred[colStart[m] + j] = mr.getValue(j) - 5.0;
+            }
+        }
+    }
+
+    int numMovies() {
+        return colStart.length - 1;
+    }
+
+    // ---------- co-rating dot products ----------
+
+    /**
+     * Add rater a's centred dot product with every rater who co-rated
+     * something into co: for each movie a rated, a's centred rating times
+     * each of its raters'. The products go in in the same (ascending movie)
+     * order as SparseVector.dot, so the sums match it exactly. a itself is
+     * touched too. Returns the number of products added.
+     */
+    long addRaterDots(int a, CoRatings co) {
+        SparseVector va = vectors[a];
+        if (va == null) return 0;
+        long products = 0;
+        for (int p = 0; p < va.size(); p++) {
+            int m = va.indexAt(p);
+            double ca = va.centredAt(p);
+            for (int q = colStart[m], end = colStart[m + 1]; q < end; q++) co.add(colRater[q], ca * colCentred[q]);
+            products += colStart[m + 1] - colStart[m];
+        }
+        return products;
+    }
+
+    /**
+     * Add movie i's centred column dotted with every movie that shares a
+     * rater with it into co: each rater of i pushes their centred rating of
+     * i times their centred rating of j, for each movie j they rated.
+     */
+    void addMovieDots(int i, CoRatings co) {
+        for (int q = colStart[i]; q < colStart[i + 1]; q++) {
+            double ci = colCentred[q];
+            SparseVector v = vectors[colRater[q]];
+            for (int p = 0; p < v.size(); p++) co.add(v.indexAt(p), ci * v.centredAt(p));
+        }
+    }
+
+    /**
+     * Running dot products of one row (a rater, or a movie) with the rows it
+     * co-occurs with, for the jobs above. Only touched slots are visited and
+     * cleared, so reusing one costs nothing proportional to n. Not
+     * thread-safe; keep one per worker.
+     */
+    static final class CoRatings {
+        private final double[] dot;
+        private final int[] touched;
+        private final boolean[] seen;
+        private int numTouched;
+
+        CoRatings(int n) {
+            dot = new double[n];
+            touched = new int[n];
+            seen = new boolean[n];
+        }
+
+        void add(int j, double product) {
+            if (!seen[j]) {
+                seen[j] = true;
+                touched[numTouched++] = j;
+            }
+            dot[j] += product;
+        }
+
+        int numTouched() { return numTouched; }
+
+        int touchedAt(int t) { return touched[t]; }
+
+        double dot(int j) { return dot[j]; }
+
+        /** The k touched rows other than self with the highest positive dot, as (ids[j], dot); then clear. */
+        ArrayList<Rating> takeTop(int k, int self, String[] ids) {
+            TopRatings top = new TopRatings(k);
+            for (int t = 0; t < numTouched; t++) {
+                int j = touched[t];
+                if (j != self && dot[j] > 0) top.offer(ids[j], dot[j]);
+            }
+            clear();
+            return top.toList();
+        }
+
+        void clear() {
+            for (int t = 0; t < numTouched; t++) {
+                int j = touched[t];
+                dot[j] = 0.0;
+                seen[j] = false;
+            }
+            numTouched = 0;
+        }
+    }
+}
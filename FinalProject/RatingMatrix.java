@@ -0,0 +1,129 @@
+import java.util.*;
+
+/**
+ * All ratings packed in CSR (compressed sparse row) form: one row per rater,
+ * each row a sorted run of movie indices with the matching values.
+ *
+ *   rowStart[r] .. rowStart[r+1]  -> the slice of items/values for rater r
+ *
+ * Rater and movie IDs are interned through IdDictionary. The rows are handed
+ * out as CompactRater views, so a loaded dataset costs about 8 bytes a rating.
+ */
+public class RatingMatrix {
+    private IdDictionary raters;
+    private IdDictionary movies;
+    private int[] rowStart;
+    private int[] items;
+    private float[] values;
+
+    private RatingMatrix(IdDictionary raters, IdDictionary movies, int[] rowStart, int[] items, float[] values) {
+        this.raters = raters;
+        this.movies = movies;
+        this.rowStart = rowStart;
+        this.items = items;
+        this.values = values;
+    }
+
+    public int numRaters()  { return raters.size(); }
+    public int numRatings() { return rowStart[rowStart.length - 1]; }
+
+    public IdDictionary getRaterIDs() { return raters; }
+    public IdDictionary getMovieIDs() { return movies; }
+
+    /** Wrap already packed arrays (rows sorted by movie, no duplicates), e.g. read back from a BinarySnapshot. */
+    static RatingMatrix of(IdDictionary raters, IdDictionary movies, int[] rowStart, int[] items, float[] values) {
+        if (rowStart.length != raters.size() + 1) throw new IllegalArgumentException("rowStart does not match the rater count");
+        return new RatingMatrix(raters, movies, rowStart, items, values);
+    }
+
+    /** Rater for row r as a view onto the shared arrays. */
+    public CompactRater getRater(int r) {
+        return new CompactRater(raters.get(r), movies, items, values, rowStart[r], rowStart[r + 1], true);
+    }
+
+    // ---------- building ----------
+    /** Collects (rater, movie, rating) triples, then packs them into a RatingMatrix. Single use. */
+    public static class Builder {
+        private IdDictionary raters = new IdDictionary();
+        private IdDictionary movies;
+        private int[] rowOf = new int[1024];
+        private int[] itemOf = new int[1024];
+        private float[] valueOf = new float[1024];
+        private int n = 0;
+
+        /** Movie indices come from the given dictionary (shared with other stores). */
+        public Builder(IdDictionary movies) {
+            this.movies = movies;
+        }
+
+        public void add(String raterID, String movieID, double rating) {
+            add(raters.intern(raterID), movies.intern(movieID), rating);
+        }
+
+        public void add(int raterIndex, int movieIndex, double rating) {
+            if (n == rowOf.length) {
+                int cap = n * 2;
+                rowOf = Arrays.copyOf(rowOf, cap);
+                itemOf = Arrays.copyOf(itemOf, cap);
+                valueOf = Arrays.copyOf(valueOf, cap);
+            }
+            rowOf[n] = raterIndex;
+            itemOf[n] = movieIndex;
+            valueOf[n] = (float) rating;
+            n++;
+        }
+
+        public IdDictionary getRaterIDs() { return raters; }
+        public IdDictionary getMovieIDs() { return movies; }
+
+        /**
+         * Counting-sort the triples by rater, then sort each row by movie.
+         * If a rater rated the same movie twice the later row wins, matching
+         * addRating's replace semantics.
+         */
+        public RatingMatrix build() {
+            int numRows = raters.size();
+            int[] start = new int[numRows + 1];
+            for (int i = 0; i < n; i++) start[rowOf[i] + 1]++;
+            for (int r = 0; r < numRows; r++) start[r + 1] += start[r];
+
+            // scatter in input order so each row keeps its original row order
+            int[] fill = Arrays.copyOf(start, numRows);
+            int[] rowItems = new int[n];
+            float[] rowValues = new float[n];
+            int maxRow = 0;
+            for (int i = 0; i < n; i++) {
+                int at = fill[rowOf[i]]++;
+                rowItems[at] = itemOf[i];
+                rowValues[at] = valueOf[i];
+            }
+            for (int r = 0; r < numRows; r++) maxRow = Math.max(maxRow, start[r + 1] - start[r]);
+
+            // sort each row by (movie, arrival) and keep the last arrival per movie
+            long[] keys = new long[maxRow];
+            int[] outStart = new int[numRows + 1];
+            int[] outItems = new int[n];
+            float[] outValues = new float[n];
+            int w = 0;
+            for (int r = 0; r < numRows; r++) {
+                int s = start[r], len = start[r + 1] - s;
+                for (int k = 0; k < len; k++) keys[k] = ((long) rowItems[s + k] << 32) | k;
+                Arrays.sort(keys, 0, len);
+                outStart[r] = w;
+                for (int k = 0; k < len; k++) {
+                    int item = (int) (keys[k] >>> 32);
+                    if (k + 1 < len && (int) (keys[k + 1] >>> 32) == item) continue;  // superseded
+                    outItems[w] = item;
+                    outValues[w] = rowValues[s + (int) keys[k]];
+                    w++;
+                }
+            }
+            outStart[numRows] = w;
+            if (w < n) {
+                outItems = Arrays.copyOf(outItems, w);
+                outValues = Arrays.copyOf(outValues, w);
+            }
+            return new RatingMatrix(raters, movies, outStart, outItems, outValues);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+import java.util.*;
+
+/**
+ * Told by RaterDatabase after a new snapshot is published, so caches built on
+ * top of the ratings (neighbour lists and the like) can drop only what changed.
+ */
+public interface RatingsListener {
+    /**
+     * @param snapshot      the snapshot that is now current
+     * @param changedRaters raters whose ratings were added or replaced, or
+     *                      null when the whole dataset was replaced
+     */
+    public void ratingsChanged(RaterSnapshot snapshot, Set<String> changedRaters);
+}
@@ -1,13 +1,27 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Locale;
 import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
 
 public class RecommendationRunner implements Recommender {
+    // neighbour lists for recent users, deep enough for the (50, 3) fallback too
+    private static final NeighbourCache NEIGHBOURS = NeighbourCache.register(1000, 50);
+    // page buffers, lent out one per request (a pool rather than a ThreadLocal, so
+    // requests on short-lived threads reuse them too)
+    private static final ArrayBlockingQueue<PageRenderer> RENDERERS = new ArrayBlockingQueue<>(64);
+    private static final int PAGE_SIZE = 15;
+
+    // the course files in the working folder, unless -Dmovies.file / -Dratings.file say otherwise
+    static String movieFile()   { return System.getProperty("movies.file", "ratedmoviesfull.csv"); }
+    static String ratingsFile() { return System.getProperty("ratings.file", "ratings.csv"); }
 
     @Override
     public ArrayList<String> getItemsToRate() {
-        MovieDatabase.initialize("ratedmoviesfull.csv");  // safe to call repeatedly
+        MovieDatabase.initialize(movieFile());  // safe to call repeatedly
         ArrayList<String> pool = MovieDatabase.filterBy(new MinutesFilter(85, 180));
         if (pool == null || pool.size() < 15) {
             pool = MovieDatabase.filterBy(new TrueFilter()); // fallback
@@ -19,102 +33,99 @@ public class RecommendationRunner implements Recommender {
         return items;
     }
 
+    /** The page on System.out, in System.out's own encoding (it goes through a Writer, not as UTF-8 bytes). */
     @Override
     public void printRecommendationsFor(String webRaterID) {
-        MovieDatabase.initialize("ratedmoviesfull.csv");
-        RaterDatabase.initialize("ratings.csv");
-
-        FourthRatings fr = new FourthRatings();
-        int numSimilarRaters = 20;
-        int minimalRaters   = 5;
+        PrintStream out = System.out;
+        try {
+            writeRecommendationsFor(webRaterID, writerOn(out));
+        } catch (IOException e) {
+            throw new RuntimeException("Could not write the page: " + e.getMessage(), e);
+        }
+        out.println();
+    }
 
-        ArrayList<Rating> recs = fr.getSimilarRatings(webRaterID, numSimilarRaters, minimalRaters);
+    /** The same page, streamed to out as UTF-8 (out is not flushed or closed). */
+    public void writeRecommendationsFor(String webRaterID, OutputStream out) throws IOException {
+        long t0 = Metrics.start();
+        writePage(webRaterID, null, out);
+        Metrics.PAGE.stop(t0);
+    }
 
-        // Hide movies the user already rated
-        Rater me = RaterDatabase.getRater(webRaterID);
-        ArrayList<Rating> filtered = new ArrayList<>();
-        for (Rating r : recs) {
-            if (me == null || !me.hasRating(r.getItem())) filtered.add(r);
-        }
+    /** The same page as text, for a Writer that does its own encoding (out is not flushed or closed). */
+    public void writeRecommendationsFor(String webRaterID, Writer out) throws IOException {
+        long t0 = Metrics.start();
+        writePage(webRaterID, out, null);
+        Metrics.PAGE.stop(t0);
+    }
 
-        // Gentle fallback to get *something*
-        if (filtered.isEmpty()) {
-            recs = fr.getSimilarRatings(webRaterID, 50, 3);
-            for (Rating r : recs) {
-                if (me == null || !me.hasRating(r.getItem())) filtered.add(r);
+    /** To text if text != null, else to bytes. */
+    private void writePage(String webRaterID, Writer text, OutputStream bytes) throws IOException {
+        MovieDatabase.initialize(movieFile());
+        RaterDatabase.initialize(ratingsFile());
+
+        // One consistent dataset for the whole request, even if a reload lands meanwhile
+        RaterSnapshot raters = RaterDatabase.snapshot();
+        MovieSnapshot movies = MovieDatabase.snapshot();
+        ArrayList<Rating> filtered = recommend(webRaterID, raters, movies);
+
+        long render = Metrics.start();
+        PageRenderer renderer = RENDERERS.poll();
+        if (renderer == null) renderer = new PageRenderer();
+        try {
+            if (filtered.isEmpty()) {
+                Metrics.PAGES_EMPTY.increment();
+                if (text != null) renderer.writeEmpty(text); else renderer.writeEmpty(bytes);
+            } else {
+                if (text != null) renderer.writePage(movies, filtered, PAGE_SIZE, text);
+                else renderer.writePage(movies, filtered, PAGE_SIZE, bytes);
             }
+        } finally {
+            RENDERERS.offer(renderer);
         }
+        Metrics.RENDER.stop(render);
+    }
 
-        if (filtered.isEmpty()) {
-            System.out.println("<h2>No recommendations yet</h2>"
-              + "<p>Try rating a few more movies and refresh the page.</p>");
-            return;
-        }
+    /** A Writer that hands its text to ps, which encodes it with its own charset. */
+    private static Writer writerOn(PrintStream ps) {
+        return new Writer() {
+            public void write(char[] cbuf, int off, int len) { ps.print(new String(cbuf, off, len)); }
+            public void write(String str, int off, int len)  { ps.print(str.substring(off, off + len)); }
+            public void flush() { ps.flush(); }
+            public void close() { ps.flush(); }
+        };
+    }
 
-        int limit = Math.min(15, filtered.size());
-
-        StringBuilder sb = new StringBuilder();
-        sb.append("<style>")
-          .append("body{font-family:Arial,Helvetica,sans-serif;margin:24px;background:#0b1020;color:#eef1f7}")
-          .append("h1{font-size:24px;margin:0 0 8px}")
-          .append("p.sub{opacity:.8;margin:0 0 16px}")
-          .append("table{border-collapse:collapse;width:100%}")
-          .append("th,td{padding:12px 10px;border-bottom:1px solid rgba(255,255,255,.08);vertical-align:top}")
-          .append("th{position:sticky;top:0;background:#0b1020;text-align:left;font-size:12px;letter-spacing:.06em;text-transform:uppercase;opacity:.8}")
-          .append("tr:hover{background:rgba(255,255,255,.04)}")
-          .append(".poster{width:70px;height:105px;object-fit:cover;border-radius:8px;box-shadow:0 2px 10px rgba(0,0,0,.25)}")
-          .append(".title{font-weight:700;font-size:16px;margin-bottom:4px}")
-          .append(".meta{opacity:.8;font-size:13px}")
-          .append(".badge{display:inline-block;padding:2px 8px;border:1px solid rgba(255,255,255,.2);border-radius:999px;font-size:12px;margin-right:6px;opacity:.9}")
-          .append("@media (max-width:640px){td:nth-child(1){display:none}}")
-          .append("</style>");
-
-        sb.append("<h1>Recommended for You</h1>")
-          .append("<p class='sub'>Based on your ratings and similar users.</p>")
-          .append("<table>")
-          .append("<thead><tr><th>#</th><th>Movie</th><th>Details</th><th>Score</th></tr></thead><tbody>");
-
-        for (int i = 0; i < limit; i++) {
-            Rating r = filtered.get(i);
-            String id        = r.getItem();
-            String poster    = MovieDatabase.getPoster(id);
-            String year      = "" + MovieDatabase.getYear(id);
-            String mins      = "" + MovieDatabase.getMinutes(id) + " min";
-            String title     = MovieDatabase.getTitle(id);
-            String genres    = MovieDatabase.getGenres(id);
-            String directors = MovieDatabase.getDirector(id);
-            String country   = MovieDatabase.getCountry(id);
-
-            String imgTag = (poster != null && poster.length() > 0 && !"N/A".equals(poster))
-              ? "<img class='poster' src='" + poster + "' alt='poster'/>"
-              : "<div class='poster' style='background:#1a2240;display:flex;align-items:center;justify-content:center;"
-                + "border:1px solid rgba(255,255,255,.1)'>N/A</div>";
-
-            sb.append("<tr>");
-            sb.append("<td>").append(i + 1).append("</td>");
-            sb.append("<td style='display:flex;gap:12px;align-items:flex-start'>")
-              .append(imgTag)
-              .append("<div>")
-              .append("<div class='title'>").append(escape(title)).append(" (").append(escape(year)).append(")</div>")
-              .append("<div class='meta'>").append(escape(genres)).append("</div>")
-              .append("</div></td>");
-            sb.append("<td>")
-              .append("<span class='badge'>").append(escape(mins)).append("</span>")
-              .append("<span class='badge'>").append(escape(country)).append("</span>")
-              .append("<div class='meta'>Directed by ").append(escape(directors)).append("</div>")
-              .append("</td>");
-            sb.append("<td>").append(String.format(Locale.US, "%.2f", r.getValue())).append("</td>");
-            sb.append("</tr>");
-        }
-        sb.append("</tbody></table>");
+    /** The movies the page would show, best first (empty if there is nothing to recommend yet). */
+    public ArrayList<Rating> getRecommendationsFor(String webRaterID) {
+        MovieDatabase.initialize(movieFile());
+        RaterDatabase.initialize(ratingsFile());
+        return recommend(webRaterID, RaterDatabase.snapshot(), MovieDatabase.snapshot());
+    }
+
+    private ArrayList<Rating> recommend(String webRaterID, RaterSnapshot raters, MovieSnapshot movies) {
+        FourthRatings fr = new FourthRatings(raters, movies);
+        fr.setNeighbourCache(NEIGHBOURS);
+        int numSimilarRaters = 20;
+        int minimalRaters   = 5;
 
-        System.out.println(sb.toString());
+        // Only the top page is needed, and never movies the user already rated
+        Rater me = raters.getRater(webRaterID);
+        Filter unrated = new NotRatedFilter(me);
+        ArrayList<Rating> filtered = fr.getTopRecommendations(webRaterID, PAGE_SIZE, numSimilarRaters, minimalRaters, unrated);
+
+        // Gentle fallback to get *something*
+        if (filtered.isEmpty()) {
+            Metrics.PAGES_FALLBACK.increment();
+            filtered = fr.getTopRecommendations(webRaterID, PAGE_SIZE, 50, 3, unrated);
+        }
+        return filtered;
     }
 
     // Local test harness: choose a valid rater and print HTML to console.
     public static void main(String[] args) {
-        MovieDatabase.initialize("ratedmoviesfull.csv");
-        RaterDatabase.initialize("ratings.csv");
+        MovieDatabase.initialize(movieFile());
+        RaterDatabase.initialize(ratingsFile());
 
         // Prefer an argument if provided; otherwise pick the most-active rater.
         String raterID = (args != null && args.length > 0) ? args[0] : null;
@@ -132,10 +143,6 @@ public class RecommendationRunner implements Recommender {
         // System.out.println(rr.getItemsToRate());
 
         rr.printRecommendationsFor(raterID);
-    }
-
-    private String escape(String s) {
-        if (s == null) return "";
-        return s.replace("&","&amp;").replace("<","&lt;").replace(">","&gt;");
+        if (Metrics.isEnabled()) System.err.print(Metrics.dump());
     }
 }
@@ -0,0 +1,208 @@
+import com.sun.net.httpserver.*;
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * RecommendationRunner over HTTP, on the JDK's built-in server, so pages are
+ * served from one warm JVM instead of one JVM per request.
+ *
+ *   java RecommendationServer [port] [threads]
+ *
+ *   GET /items                      15 movies to rate, as JSON
+ *   GET /items?format=html          the same as an HTML list
+ *   GET /recommendations?rater=ID   the recommendations page (HTML)
+ *   GET /recommendations?rater=ID&format=json
+ *   GET /metrics                    Metrics.dump(), as text
+ *
+ * The movie and ratings files (-Dmovies.file / -Dratings.file, as for
+ * RecommendationRunner) are loaded once at startup. Each request runs on a
+ * virtual thread when the JVM has them (Java 21+); on older JVMs it runs on
+ * a fixed pool of platform threads instead (threads, default 4 per core).
+ * Pages are streamed to the socket as they are rendered.
+ */
+public class RecommendationServer {
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final boolean virtual;
+    private final RecommendationRunner runner = new RecommendationRunner();
+
+    static {
+        // Without this the server's separate header and body writes meet the
+        // client's delayed ACK, and every keep-alive response waits ~40 ms.
+        // Read once, when the first server is created.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    public RecommendationServer(int port, int threads) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(port), 256);
+        ExecutorService perTask = virtualThreadExecutor();
+        virtual = (perTask != null);
+        executor = virtual ? perTask : Executors.newFixedThreadPool(Math.max(1, threads));
+        server.setExecutor(executor);
+        server.createContext("/items", guarded(this::items));
+        server.createContext("/recommendations", guarded(this::recommendations));
+        server.createContext("/metrics", guarded(this::metrics));
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port    = (args.length > 0) ? Integer.parseInt(args[0]) : 8080;
+        int threads = (args.length > 1) ? Integer.parseInt(args[1]) : 4 * Runtime.getRuntime().availableProcessors();
+
+        long t0 = System.nanoTime();
+        MovieDatabase.initialize(RecommendationRunner.movieFile());
+        RaterDatabase.initialize(RecommendationRunner.ratingsFile());
+        System.out.println(String.format(Locale.US, "Loaded %d movies and %d raters in %.1f s",
+            MovieDatabase.size(), RaterDatabase.size(), (System.nanoTime() - t0) / 1e9));
+
+        RecommendationServer s = new RecommendationServer(port, threads);
+        Runtime.getRuntime().addShutdownHook(new Thread(s::stop));
+        s.start();
+        System.out.println("Serving on http://localhost:" + s.getPort() + "/ with "
+            + (s.usesVirtualThreads() ? "virtual threads" : threads + " threads"));
+    }
+
+    public void start() { server.start(); }
+
+    public int getPort() { return server.getAddress().getPort(); }
+
+    /** Stop taking requests, give running ones a second to finish. */
+    public void stop() {
+        server.stop(1);
+        executor.shutdown();
+    }
+
+    public boolean usesVirtualThreads() { return virtual; }
+
+    /**
+     * A new virtual thread per task, or null if this JVM has none. Looked up
+     * by name so the code still compiles and runs on Java 11 and 17.
+     */
+    static ExecutorService virtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;    // older JVM, or virtual threads still a preview feature
+        }
+    }
+
+    // ---------- endpoints ----------
+    private interface Endpoint {
+        void handle(HttpExchange ex, Map<String, String> query) throws IOException;
+    }
+
+    private void items(HttpExchange ex, Map<String, String> query) throws IOException {
+        ArrayList<String> ids = runner.getItemsToRate();
+        MovieSnapshot movies = MovieDatabase.snapshot();
+        StringBuilder sb = new StringBuilder();
+        if ("html".equals(query.get("format"))) {
+            sb.append("<ul>");
+            for (String id : ids) {
+                sb.append("<li>");
+                Html.escape(sb, movies.getTitle(id), false).append(" (").append(movies.getYear(id)).append(")</li>");
+            }
+            sb.append("</ul>");
+            send(ex, 200, "text/html; charset=utf-8", sb.toString());
+            return;
+        }
+        sb.append('[');
+        for (String id : ids) {
+            if (sb.length() > 1) sb.append(',');
+            movieJson(sb, movies, id).append('}');
+        }
+        sb.append(']');
+        send(ex, 200, "application/json", sb.toString());
+    }
+
+    private void recommendations(HttpExchange ex, Map<String, String> query) throws IOException {
+        String rater = query.get("rater");
+        if (rater == null || rater.isEmpty()) {
+            send(ex, 400, "text/plain; charset=utf-8", "missing rater, e.g. /recommendations?rater=17\n");
+            return;
+        }
+        if ("json".equals(query.get("format"))) {
+            ArrayList<Rating> recs = runner.getRecommendationsFor(rater);
+            MovieSnapshot movies = MovieDatabase.snapshot();
+            StringBuilder sb = new StringBuilder("[");
+            for (Rating r : recs) {
+                if (sb.length() > 1) sb.append(',');
+                Json.number(movieJson(sb, movies, r.getItem()).append(",\"score\":"), r.getValue()).append('}');
+            }
+            sb.append(']');
+            send(ex, 200, "application/json", sb.toString());
+            return;
+        }
+        ex.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+        ex.sendResponseHeaders(200, 0);     // length unknown: chunked
+        try (OutputStream out = ex.getResponseBody()) {
+            runner.writeRecommendationsFor(rater, out);
+        }
+    }
+
+    private void metrics(HttpExchange ex, Map<String, String> query) throws IOException {
+        send(ex, 200, "text/plain; charset=utf-8", Metrics.dump());
+    }
+
+    /** Only GET, parsed query, and a 500 (plus a line on stderr) instead of a dropped connection. */
+    private HttpHandler guarded(Endpoint e) {
+        return ex -> {
+            try {
+                if (!"GET".equals(ex.getRequestMethod())) {
+                    send(ex, 405, "text/plain; charset=utf-8", "GET only\n");
+                } else {
+                    e.handle(ex, query(ex.getRequestURI().getRawQuery()));
+                }
+            } catch (Exception err) {
+                System.err.println("Could not serve " + ex.getRequestURI() + ": " + err);
+                try {
+                    send(ex, 500, "text/plain; charset=utf-8", "internal error\n");
+                } catch (IOException | RuntimeException ignored) {
+                    // headers already sent, or the client is gone
+                }
+            } finally {
+                ex.close();
+            }
+        };
+    }
+
+    // ---------- helpers ----------
+    private static void send(HttpExchange ex, int status, String type, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", type);
+        ex.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    static Map<String, String> query(String raw) {
+        HashMap<String, String> map = new HashMap<>();
+        if (raw == null) return map;
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = (eq < 0) ? pair : pair.substring(0, eq);
+            String value = (eq < 0) ? "" : pair.substring(eq + 1);
+            map.put(URLDecoder.decode(key, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return map;
+    }
+
+    /** {"id":..,"title":..,"year":..,"minutes":..,"genres":..,"poster":.. with the closing brace left off. */
+    private static StringBuilder movieJson(StringBuilder sb, MovieSnapshot movies, String id) {
+        Movie m = movies.getMovie(id);
+        sb.append("{\"id\":");
+        Json.string(sb, id);
+        if (m == null) return sb;
+        sb.append(",\"title\":");  Json.string(sb, m.getTitle());
+        sb.append(",\"year\":").append(m.getYear());
+        sb.append(",\"minutes\":").append(m.getMinutes());
+        sb.append(",\"genres\":"); Json.string(sb, m.getGenres());
+        sb.append(",\"poster\":"); Json.string(sb, m.getPoster());
+        return sb;
+    }
+
+}
@@ -0,0 +1,114 @@
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Offline job: every rater's top-K positive neighbours, written to a file
+ * that NeighbourIndex loads.
+ *
+ *   java SimilarityJob [ratings.csv] [out.knn] [k] [threads] [blockSize]
+ *
+ * Only pairs that co-rated something are touched. The movie -> raters
+ * index is turned into dense columns (RatingColumns); then for
+ * rater a, each movie a rated adds a's centred rating times the co-rater's
+ * to that co-rater's running dot product. That adds up the same products in
+ * the same (ascending movie) order as SparseVector.dot, so the scores and
+ * the ranking match FourthRatings exactly before they are stored as floats.
+ *
+ * Raters are done in blocks of blockSize, in parallel inside a block; each
+ * finished block is written out before the next starts. Memory is the
+ * columns plus, per worker thread, one double and one int per rater, plus
+ * blockSize * k results -- not raters * raters.
+ */
+public class SimilarityJob {
+
+    /** What a run did. */
+    public static class Stats {
+        public int raters;
+        public long neighbours;    // entries written
+        public long pairs;         // co-rating (a, b) accumulations
+        public long nanos;
+
+        public String toString() {
+            double s = nanos / 1e9;
+            return String.format(Locale.US, "%d raters, %d neighbours kept, %d co-rating updates in %.2f s (%.0f raters/s)",
+                raters, neighbours, pairs, s, raters / s);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        String ratings = (args.length > 0) ? args[0] : "ratings.csv";
+        String out     = (args.length > 1) ? args[1] : ratings + ".knn";
+        int k          = (args.length > 2) ? Integer.parseInt(args[2]) : 50;
+        int threads    = (args.length > 3) ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        int block      = (args.length > 4) ? Integer.parseInt(args[4]) : 4096;
+
+        RaterDatabase.setCompactStorage(true);
+        RaterDatabase.initialize(ratings);
+        ForkJoinPool pool = (threads > 1) ? new ForkJoinPool(threads) : null;
+        Stats stats = run(RaterDatabase.snapshot(), Paths.get(out), k, pool, block);
+        if (pool != null) pool.shutdown();
+        System.out.println(out + ": " + stats);
+    }
+
+    /** Compute and write the file for rs; pool may be null (one thread). */
+    public static Stats run(RaterSnapshot rs, Path file, int k, ForkJoinPool pool, int blockSize) throws IOException {
+        long t0 = System.nanoTime();
+        RatingColumns cols = new RatingColumns(rs);
+        int n = cols.raterIDs.length;
+        blockSize = Math.max(1, blockSize);
+        Stats stats = new Stats();
+        stats.raters = n;
+        AtomicLong pairs = new AtomicLong();
+        ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(() -> new Scratch(n));
+
+        try (DataOutputStream out = BinarySnapshot.open(file)) {
+            NeighbourIndex.writeHeader(out, NeighbourIndex.RATERS, k, cols.raterIDs);
+
+            List<ArrayList<Rating>> results = new ArrayList<>(Collections.nCopies(blockSize, null));
+            for (int lo = 0; lo < n; lo += blockSize) {
+                int base = lo, size = Math.min(blockSize, n - lo);
+                ParallelRange.Body body = (from, to) -> {
+                    Scratch s = scratch.get();
+                    long touched = 0;
+                    for (int i = from; i < to; i++) {
+                        results.set(i, s.topNeighbours(cols, base + i, k));
+                        touched += s.lastPairs;
+                    }
+                    pairs.addAndGet(touched);
+                };
+                if (pool == null) body.run(0, size);
+                else ParallelRange.forEach(pool, size, body);
+
+                for (int i = 0; i < size; i++) {
+                    ArrayList<Rating> top = results.set(i, null);
+                    out.writeInt(top.size());
+                    for (Rating r : top) out.writeInt(cols.raterIndex.get(r.getItem()));
+                    for (Rating r : top) out.writeFloat((float) r.getValue());
+                    stats.neighbours += top.size();
+                }
+            }
+        }
+        BinarySnapshot.commit(file);   // temp file moved into place, as for snapshots
+        stats.pairs = pairs.get();
+        stats.nanos = System.nanoTime() - t0;
+        return stats;
+    }
+
+    /** One worker's accumulators, reused for every rater it handles. */
+    private static class Scratch {
+        final RatingColumns.CoRatings co;
+        long lastPairs;
+
+        Scratch(int n) {
+            co = new RatingColumns.CoRatings(n);
+        }
+
+        ArrayList<Rating> topNeighbours(RatingColumns c, int a, int k) {
+            lastPairs = c.addRaterDots(a, co);
+            return co.takeTop(k, a, c.raterIDs);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+import java.util.*;
+
+/**
+ * One rater's ratings as a sparse vector over dense movie indices, already
+ * centred (rating - 5) the way FourthRatings' similarity wants them.
+ * Indices are sorted ascending so two vectors can be merge-joined.
+ * The raw ratings are kept alongside for the weighted-average pass.
+ */
+public class SparseVector {
+    private int[] idx;
+    private double[] ratings;
+    private double[] centred;
+
+    private SparseVector(int[] idx, double[] ratings) {
+        this.idx = idx;
+        this.ratings = ratings;
+        centred = new double[ratings.length];
+        for (int k = 0; k < ratings.length; k++) centred[k] = ratings[k] - 5.0;
+    }
+
+    /** Build the centred vector for r, interning its movie IDs in movies. */
+    public static SparseVector of(Rater r, IdDictionary movies) {
+        int n = r.numRatings();
+        int[] idx = new int[n];
+        double[] ratings = new double[n];
+        if (r instanceof CompactRater) {
+            // already sorted by movie index
+            CompactRater cr = (CompactRater) r;
+            for (int k = 0; k < n; k++) {
+                idx[k] = cr.itemIndexAt(k);
+                ratings[k] = cr.valueAt(k);
+            }
+            return new SparseVector(idx, ratings);
+        }
+        ArrayList<String> items = r.getItemsRated();
+        long[] keys = new long[n];
+        for (int k = 0; k < n; k++) keys[k] = ((long) movies.intern(items.get(k)) << 32) | k;
+        Arrays.sort(keys);
+        for (int k = 0; k < n; k++) {
+            idx[k] = (int) (keys[k] >>> 32);
+            ratings[k] = r.getRating(items.get((int) keys[k]));
+        }
+        return new SparseVector(idx, ratings);
+    }
+
+    public int    size()            { return idx.length; }
+    public int    indexAt(int k)    { return idx[k]; }
+    public double ratingAt(int k)   { return ratings[k]; }
+    public double centredAt(int k)  { return centred[k]; }
+
+    /** First position whose movie index is >= m (size() if none). */
+    public int lowerBound(int m) {
+        int pos = Arrays.binarySearch(idx, m);
+        return (pos >= 0) ? pos : -pos - 1;
+    }
+
+    /**
+     * Dot product of two centred vectors. Walks the shorter one and gallops
+     * through the longer one, so no allocation and O(m log(n/m)) when the
+     * sizes are lopsided. Products are added in ascending movie order.
+     */
+    public static double dot(SparseVector a, SparseVector b) {
+        if (a.idx.length > b.idx.length) {
+            SparseVector t = a; a = b; b = t;
+        }
+        int[] ai = a.idx, bi = b.idx;
+        int na = ai.length, nb = bi.length;
+        double sum = 0.0;
+        int j = 0;
+        for (int i = 0; i < na && j < nb; i++) {
+            int target = ai[i];
+            if (bi[j] < target) {
+                // exponential probe, then binary search inside the bracket
+                int lo = j, step = 1;
+                while (lo + step < nb && bi[lo + step] < target) {
+                    lo += step;
+                    step <<= 1;
+                }
+                int hi = Math.min(lo + step, nb - 1);
+                int pos = Arrays.binarySearch(bi, lo + 1, hi + 1, target);
+                if (pos < 0) {
+                    j = -pos - 1;
+                    continue;
+                }
+                j = pos;
+            }
+            if (bi[j] == target) {
+                sum += a.centred[i] * b.centred[j];
+                j++;
+            }
+        }
+        return sum;
+    }
+}
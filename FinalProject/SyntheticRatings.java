@@ -0,0 +1,119 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Writes a movie file and a ratings file in the course formats, of any size,
+ * for timing and for the reports that compare approximate answers with exact
+ * ones.
+ *
+ *   java SyntheticRatings [folder] [movies] [raters] [avgRatingsPerRater] [skew] [seed]
+ *
+ * writes folder/ratedmoviesfull.csv and folder/ratings.csv. Unlike uniform
+ * random rows, the ratings have the shape real ones do: a few movies get
+ * most of the ratings (Zipf popularity with exponent skew; 0 = uniform,
+ * around 1 = like MovieLens), raters differ a lot in how much
+ * they rate, and scores follow tastes -- each rater likes some genres and
+ * dislikes others, each movie has a quality -- so similar raters really do
+ * exist. Same arguments, same files.
+ */
+public class SyntheticRatings {
+    private static final String[] GENRES = {
+        "Action", "Adventure", "Animation", "Comedy", "Crime", "Documentary", "Drama", "Family",
+        "Fantasy", "Horror", "Musical", "Mystery", "Romance", "Sci-Fi", "Thriller", "Western"
+    };
+    private static final String[] COUNTRIES = { "USA", "UK", "France", "Germany", "Italy", "Japan", "India", "Canada" };
+
+    public static void main(String[] args) throws IOException {
+        Path folder  = Paths.get((args.length > 0) ? args[0] : ".");
+        int movies   = (args.length > 1) ? Integer.parseInt(args[1]) : 10_000;
+        int raters   = (args.length > 2) ? Integer.parseInt(args[2]) : 50_000;
+        int average  = (args.length > 3) ? Integer.parseInt(args[3]) : 30;
+        double skew  = (args.length > 4) ? Double.parseDouble(args[4]) : 0.9;
+        long seed    = (args.length > 5) ? Long.parseLong(args[5]) : 42L;
+
+        Files.createDirectories(folder);
+        long t0 = System.nanoTime();
+        long rows = write(folder.resolve("ratedmoviesfull.csv"), folder.resolve("ratings.csv"), movies, raters, average, skew, seed);
+        System.out.println(String.format(Locale.US, "%s: %d movies, %d raters, %d ratings in %.1f s",
+            folder, movies, raters, rows, (System.nanoTime() - t0) / 1e9));
+    }
+
+    /** Write both files; returns the number of ratings written. */
+    public static long write(Path movieFile, Path ratingFile, int numMovies, int numRaters, int average, double skew, long seed)
+            throws IOException {
+        Random rnd = new Random(seed);
+        numMovies = Math.max(1, numMovies);
+
+        int[] genreBits = new int[numMovies];
+        double[] quality = new double[numMovies];
+        try (BufferedWriter w = Files.newBufferedWriter(movieFile, StandardCharsets.UTF_8)) {
+            w.write("id,title,year,country,genre,director,minutes,poster\n");
+            int directors = Math.max(10, numMovies / 4);
+            for (int m = 0; m < numMovies; m++) {
+                int count = 1 + rnd.nextInt(3);
+                while (Integer.bitCount(genreBits[m]) < count) genreBits[m] |= 1 << rnd.nextInt(GENRES.length);
+                quality[m] = rnd.nextGaussian() * 0.8;
+                StringBuilder genres = new StringBuilder();
+                for (int g = 0; g < GENRES.length; g++) {
+                    if ((genreBits[m] & (1 << g)) == 0) continue;
+                    if (genres.length() > 0) genres.append(", ");
+                    genres.append(GENRES[g]);
+                }
+                w.write(movieID(m) + ",Synthetic Movie " + (m + 1) + "," + (1920 + rnd.nextInt(100)) + ","
+                    + COUNTRIES[rnd.nextInt(COUNTRIES.length)] + ",\"" + genres + "\",Director " + (1 + rnd.nextInt(directors)) + ","
+                    + (70 + rnd.nextInt(110)) + ",N/A\n");
+            }
+        }
+
+        // popularity: movie m (in a shuffled order) is picked with weight 1/(rank+1)^skew
+        int[] byRank = new int[numMovies];
+        for (int m = 0; m < numMovies; m++) byRank[m] = m;
+        for (int m = numMovies - 1; m > 0; m--) {
+            int j = rnd.nextInt(m + 1);
+            int t = byRank[m]; byRank[m] = byRank[j]; byRank[j] = t;
+        }
+        double[] cumulative = new double[numMovies];
+        double total = 0.0;
+        for (int r = 0; r < numMovies; r++) {
+            total += 1.0 / Math.pow(r + 1, skew);
+            cumulative[r] = total;
+        }
+
+        long rows = 0;
+        double[] taste = new double[GENRES.length];
+        HashSet<Integer> seen = new HashSet<>();
+        try (BufferedWriter w = Files.newBufferedWriter(ratingFile, StandardCharsets.UTF_8)) {
+            w.write("rater_id,movie_id,rating,time\n");
+            for (int r = 1; r <= numRaters; r++) {
+                for (int g = 0; g < taste.length; g++) taste[g] = rnd.nextGaussian();
+                double generosity = rnd.nextGaussian() * 0.7;
+                // heavy-tailed activity with the requested mean (log-normal, sigma 1)
+                int count = (int) Math.round(Math.exp(Math.log(Math.max(1, average)) - 0.5 + rnd.nextGaussian()));
+                count = Math.max(1, Math.min(numMovies, count));
+                seen.clear();
+                while (seen.size() < count) {
+                    int pos = Arrays.binarySearch(cumulative, rnd.nextDouble() * total);
+                    int m = byRank[Math.min(numMovies - 1, (pos < 0) ? -pos - 1 : pos)];
+                    if (!seen.add(m)) continue;
+                    double like = 0.0;
+                    for (int g = 0; g < GENRES.length; g++) {
+                        if ((genreBits[m] & (1 << g)) != 0) like += taste[g];
+                    }
+                    like /= Integer.bitCount(genreBits[m]);
+                    long score = Math.round(5.5 + 1.8 * like + quality[m] + generosity + rnd.nextGaussian() * 0.8);
+                    score = Math.max(1, Math.min(10, score));
+                    w.write(r + "," + movieID(m) + "," + score + "," + (1377000000L + rnd.nextInt(100_000_000)) + "\n");
+                    rows++;
+                }
+            }
+        }
+        return rows;
+    }
+
+    /** Seven digits, like the IMDb-style IDs in the course files. */
+    private static String movieID(int m) {
+        return String.format("%07d", 100000 + m);
+    }
+}
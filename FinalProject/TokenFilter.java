@@ -0,0 +1,49 @@
+import java.util.Arrays;
+
+/**
+ * Base for filters on a comma-separated column: passes movies that list
+ * any of the query's tokens (e.g. "Comedy" or "Charles Chaplin,Michael
+ * Mann"). Case and spaces around the commas don't matter. The answer comes
+ * from the column's TokenIndex as a union of posting lists; satisfies(id)
+ * gives the same answer by splitting that one movie's value, and a single
+ * row is a binary search in each token's list.
+ */
+public abstract class TokenFilter implements IndexedFilter {
+    private final String[] tokens;
+    private final String key;
+
+    protected TokenFilter(String name, String query) {
+        tokens = TokenIndex.tokens(query);
+        String[] sorted = tokens.clone();
+        Arrays.sort(sorted);
+        StringBuilder sb = new StringBuilder(name).append('[');
+        for (String t : sorted) sb.append(t.length()).append(':').append(t);   // length-prefixed, so no token can fake a separator
+        key = sb.append(']').toString();
+    }
+
+    /** The column's index in movies. */
+    protected abstract TokenIndex index(MovieColumns movies);
+
+    /** The column's raw value for a movie ID. */
+    protected abstract String value(String id);
+
+    public boolean satisfies(String id) {
+        return TokenIndex.listsAny(value(id), tokens);
+    }
+
+    /** Looks the row up in the tokens' posting lists rather than splitting its value. */
+    public boolean satisfies(MovieColumns movies, int row) {
+        return index(movies).lists(row, tokens);
+    }
+
+    public long[] mask(MovieColumns movies) {
+        long[] bits = FilterMasks.none(movies);
+        index(movies).mark(bits, tokens);
+        return bits;
+    }
+
+    public String key() { return key; }
+
+    public int count(MovieColumns movies) { return index(movies).count(tokens); }
+    public int[] rows(MovieColumns movies) { return index(movies).rows(tokens); }
+}
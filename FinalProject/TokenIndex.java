@@ -0,0 +1,118 @@
+import java.util.*;
+
+/**
+ * Inverted index on a comma-separated column of MovieColumns (genres,
+ * director, country): token -> the rows listing it, ascending. Tokens are
+ * trimmed and matched ignoring case, so "Action, Adventure" is found under
+ * "action" and "adventure".
+ *
+ * A query for several tokens ("any of these directors") is the union of
+ * their posting lists: merged into a sorted list for rows(), or OR-ed into
+ * a bitset for mark().
+ */
+public class TokenIndex {
+    private static final int[] NONE = new int[0];
+
+    private final HashMap<String, int[]> postings = new HashMap<>();
+
+    /** Index a dictionary-encoded column: codes[row] points into values. Each distinct value is split once. */
+    TokenIndex(int[] codes, String[] values, int n) {
+        HashMap<String, Integer> ids = new HashMap<>();
+        int[][] tokensOf = new int[values.length][];
+        for (int v = 0; v < values.length; v++) {
+            String[] parts = tokens(values[v]);
+            int[] t = new int[parts.length];
+            int k = 0;
+            for (String p : parts) {
+                Integer id = ids.computeIfAbsent(p, x -> ids.size());
+                boolean dup = false;   // "Drama, drama" lists the row once
+                for (int j = 0; j < k; j++) dup |= t[j] == id;
+                if (!dup) t[k++] = id;
+            }
+            tokensOf[v] = Arrays.copyOf(t, k);
+        }
+
+        int[] sizes = new int[ids.size()];
+        for (int row = 0; row < n; row++) {
+            for (int t : tokensOf[codes[row]]) sizes[t]++;
+        }
+        int[][] lists = new int[sizes.length][];
+        for (int t = 0; t < lists.length; t++) lists[t] = new int[sizes[t]];
+        int[] fill = new int[sizes.length];
+        for (int row = 0; row < n; row++) {
+            for (int t : tokensOf[codes[row]]) lists[t][fill[t]++] = row;
+        }
+        for (Map.Entry<String, Integer> e : ids.entrySet()) postings.put(e.getKey(), lists[e.getValue()]);
+    }
+
+    /** The trimmed, lower-cased, non-empty tokens of a comma-separated value. */
+    public static String[] tokens(String value) {
+        ArrayList<String> out = new ArrayList<>();
+        for (String s : value.split(",")) {
+            String t = s.trim().toLowerCase(Locale.ROOT);
+            if (!t.isEmpty()) out.add(t);
+        }
+        return out.toArray(new String[0]);
+    }
+
+    /** Number of distinct tokens. */
+    public int size() {
+        return postings.size();
+    }
+
+    /** Rows listing token (already normalised by tokens()), ascending; shared, do not write. */
+    public int[] postings(String token) {
+        int[] rows = postings.get(token);
+        return (rows == null) ? NONE : rows;
+    }
+
+    /** Sum of the posting list lengths: exact for one token, an upper bound for a union. */
+    public int count(String[] tokens) {
+        int c = 0;
+        for (String t : tokens) c += postings(t).length;
+        return c;
+    }
+
+    /** Rows listing any of the tokens, ascending, no repeats (a fresh array). */
+    public int[] rows(String[] tokens) {
+        if (tokens.length == 1) return postings(tokens[0]).clone();
+        int[] all = new int[count(tokens)];
+        int k = 0;
+        for (String t : tokens) {
+            int[] p = postings(t);
+            System.arraycopy(p, 0, all, k, p.length);
+            k += p.length;
+        }
+        Arrays.sort(all);
+        int u = 0;
+        for (int i = 0; i < all.length; i++) {
+            if (u == 0 || all[i] != all[u - 1]) all[u++] = all[i];
+        }
+        return Arrays.copyOf(all, u);
+    }
+
+    /** Set the bits of the rows listing any of the tokens. */
+    public void mark(long[] bits, String[] tokens) {
+        for (String t : tokens) {
+            for (int row : postings(t)) bits[row >>> 6] |= 1L << row;
+        }
+    }
+
+    /** True if the row lists any of the tokens: a binary search per token in its posting list. */
+    public boolean lists(int row, String[] tokens) {
+        for (String t : tokens) {
+            if (Arrays.binarySearch(postings(t), row) >= 0) return true;
+        }
+        return false;
+    }
+
+    /** True if value (a raw column value) lists any of the tokens. */
+    public static boolean listsAny(String value, String[] tokens) {
+        for (String t : tokens(value)) {
+            for (String q : tokens) {
+                if (t.equals(q)) return true;
+            }
+        }
+        return false;
+    }
+}
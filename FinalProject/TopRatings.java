@@ -0,0 +1,56 @@
+import java.util.*;
+
+/**
+ * Keeps the k best Ratings seen so far in a bounded min-heap, so picking the
+ * top k of n costs O(n log k) instead of sorting all n.
+ *
+ * "Best" is highest value first; equal values are ordered by item ID so the
+ * result doesn't depend on HashMap iteration order.
+ */
+public class TopRatings {
+    /** Highest value first, ties broken by ascending item ID. */
+    public static final Comparator<Rating> BEST_FIRST = new Comparator<Rating>() {
+        public int compare(Rating a, Rating b) {
+            int c = Double.compare(b.getValue(), a.getValue());
+            return (c != 0) ? c : a.getItem().compareTo(b.getItem());
+        }
+    };
+
+    private int k;
+    private PriorityQueue<Rating> heap;   // worst of the kept ratings at the head
+
+    public TopRatings(int k) {
+        this.k = Math.max(0, k);
+        heap = new PriorityQueue<>(Math.max(1, this.k), BEST_FIRST.reversed());
+    }
+
+    /** Offer a candidate; only allocates a Rating if it makes the cut. */
+    public void offer(String item, double value) {
+        if (k == 0) return;
+        if (heap.size() < k) {
+            heap.add(new Rating(item, value));
+            return;
+        }
+        Rating worst = heap.peek();
+        if (value > worst.getValue() || (value == worst.getValue() && item.compareTo(worst.getItem()) < 0)) {
+            heap.poll();
+            heap.add(new Rating(item, value));
+        }
+    }
+
+    public int size() { return heap.size(); }
+
+    /** The kept ratings, best first. */
+    public ArrayList<Rating> toList() {
+        ArrayList<Rating> out = new ArrayList<>(heap);
+        Collections.sort(out, BEST_FIRST);
+        return out;
+    }
+
+    /** Top k of a whole list, best first. */
+    public static ArrayList<Rating> select(List<Rating> ratings, int k) {
+        TopRatings top = new TopRatings(k);
+        for (Rating r : ratings) top.offer(r.getItem(), r.getValue());
+        return top.toList();
+    }
+}
@@ -1,6 +1,14 @@
-public class TrueFilter implements Filter {
+
+public class TrueFilter implements MaskFilter {
     public boolean satisfies(String id) {
         return true;
     }
+    public boolean satisfies(MovieColumns movies, int row) {
+        return true;
+    }
+    public long[] mask(MovieColumns movies) {
+        return FilterMasks.all(movies);
+    }
+    public String key() { return "true"; }
 }
 
@@ -1,4 +1,5 @@
-public class YearsAfterFilter implements Filter {
+
+public class YearsAfterFilter implements IndexedFilter {
     private int year;
     public YearsAfterFilter(int year) {
         this.year = year;
@@ -6,5 +7,16 @@ public class YearsAfterFilter implements Filter {
     public boolean satisfies(String id) {
         return MovieDatabase.getYear(id) >= year;
     }
+    public boolean satisfies(MovieColumns movies, int row) {
+        return movies.getYear(row) >= year;
+    }
+    public long[] mask(MovieColumns movies) {
+        long[] bits = FilterMasks.none(movies);
+        movies.yearIndex().mark(bits, year, Integer.MAX_VALUE);
+        return bits;
+    }
+    public int count(MovieColumns movies) { return movies.yearIndex().count(year, Integer.MAX_VALUE); }
+    public int[] rows(MovieColumns movies) { return movies.yearIndex().rows(year, Integer.MAX_VALUE); }
+    public String key() { return "year>=" + year; }
 }
 
@@ -0,0 +1,108 @@
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * The default-package side of bench.Workload: calls straight into the
+ * engine the way the app does.
+ */
+public class BenchWorkload implements bench.Workload {
+    private String movieFile, ratingsFile;
+    private FourthRatings engine;
+    private RecommendationRunner runner;
+    private PageRenderer renderer;
+    private ArrayList<Rating> page;
+    private String movieText;
+
+    public void prepare(int movies, int raters, int ratingsPerRater, double skew, boolean compact) throws Exception {
+        Path dir = Paths.get(System.getProperty("java.io.tmpdir"), "recommender-bench",
+            "m" + movies + "-r" + raters + "-p" + ratingsPerRater + "-s" + skew);
+        Path done = dir.resolve("complete");
+        if (!Files.exists(done)) {
+            Files.createDirectories(dir);
+            SyntheticRatings.write(dir.resolve("ratedmoviesfull.csv"), dir.resolve("ratings.csv"), movies, raters, ratingsPerRater, skew, 42L);
+            Files.createFile(done);   // written last: an interrupted run is redone next time
+        }
+        movieFile = dir.resolve("ratedmoviesfull.csv").toString();
+        ratingsFile = dir.resolve("ratings.csv").toString();
+        movieText = new String(Files.readAllBytes(Paths.get(movieFile)), java.nio.charset.StandardCharsets.UTF_8);
+
+        // RecommendationRunner reads these, so printRecommendationsFor uses the same data
+        System.setProperty("movies.file", movieFile);
+        System.setProperty("ratings.file", ratingsFile);
+        RaterDatabase.setCompactStorage(compact);
+        MovieDatabase.initialize(movieFile);
+        RaterDatabase.initialize(ratingsFile);
+        engine = new FourthRatings();
+        runner = new RecommendationRunner();
+        renderer = new PageRenderer();
+        page = engine.getAverageRatings(1);
+        page.sort(Collections.reverseOrder());
+        page = new ArrayList<>(page.subList(0, Math.min(15, page.size())));
+    }
+
+    public String[] sampleRaters(int n) {
+        ArrayList<String> ids = new ArrayList<>();
+        for (Rater r : RaterDatabase.getRaters()) ids.add(r.getID());
+        Collections.shuffle(ids, new Random(42));
+        return ids.subList(0, Math.min(n, ids.size())).toArray(new String[0]);
+    }
+
+    public Object loadMovies() {
+        return MovieDatabase.loadMovies(movieFile);
+    }
+
+    public Object legacyLoadMovies() throws Exception {
+        return MovieCsvComparison.legacyLoad(movieFile);
+    }
+
+    public int splitMovieFields() throws IOException {
+        int fields = 0;
+        BufferedReader in = new BufferedReader(new StringReader(movieText));
+        for (String line = in.readLine(); line != null; line = in.readLine()) {
+            for (String f : MovieCsvComparison.splitCsvLine(line)) fields += (f.length() >= 0) ? 1 : 0;
+        }
+        return fields;
+    }
+
+    public int tokenizeMovieFields() throws IOException {
+        int fields = 0;
+        try (CsvTokenizer in = new CsvTokenizer(new StringReader(movieText))) {
+            while (in.next()) {
+                for (int i = 0; i < in.fields(); i++) fields += (in.field(i).length() >= 0) ? 1 : 0;
+            }
+        }
+        return fields;
+    }
+
+    public Object loadRatings() {
+        RaterDatabase.reset();
+        RaterDatabase.initialize(ratingsFile);
+        return RaterDatabase.snapshot();
+    }
+
+    public Object averageRatings(int minimalRaters) {
+        return engine.getAverageRatings(minimalRaters);
+    }
+
+    public Object similarities(String raterID) {
+        return engine.getSimilarities(raterID);
+    }
+
+    public Object similarRatingsByFilter(String raterID) {
+        // a typical page query: unseen movies, recent-ish, two genres
+        AllFilters f = new AllFilters();
+        f.addFilter(new NotRatedFilter(RaterDatabase.getRater(raterID)));
+        f.addFilter(new YearsAfterFilter(1980));
+        f.addFilter(new GenreFilter("Comedy,Drama"));
+        return engine.getSimilarRatingsByFilter(raterID, 20, 5, f);
+    }
+
+    public void printRecommendationsFor(String raterID) {
+        runner.printRecommendationsFor(raterID);
+    }
+
+    public void renderPage() throws Exception {
+        renderer.writePage(MovieDatabase.snapshot(), page, 15, OutputStream.nullOutputStream());
+    }
+}
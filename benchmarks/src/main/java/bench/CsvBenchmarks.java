@@ -0,0 +1,40 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * The old line splitter (splitCsvLine) against CsvTokenizer on the movie
+ * file. splitFields/tokenizeFields only parse: every field of the file,
+ * held in memory, becomes a String. legacyLoad/load are the two whole
+ * loaders, from disk; load also builds the column table and its indexes,
+ * which the old HashMap loader never had. Compare gc.alloc.rate.norm as
+ * well as the score.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CsvBenchmarks {
+
+    @Benchmark
+    public int splitFields(Dataset d) throws Exception {
+        return d.workload.splitMovieFields();
+    }
+
+    @Benchmark
+    public int tokenizeFields(Dataset d) throws Exception {
+        return d.workload.tokenizeMovieFields();
+    }
+
+    @Benchmark
+    public Object legacyLoad(Dataset d) throws Exception {
+        return d.workload.legacyLoadMovies();
+    }
+
+    @Benchmark
+    public Object load(Dataset d) {
+        return d.workload.loadMovies();
+    }
+}
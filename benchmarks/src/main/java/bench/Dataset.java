@@ -0,0 +1,34 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * The data set a trial runs on. Change the scale on the command line, e.g.
+ * -p raters=60000 -p skew=1.1 -p compact=true.
+ */
+@State(Scope.Benchmark)
+public class Dataset {
+    @Param("3000")  public int movies;
+    @Param("5000")  public int raters;
+    @Param("30")    public int ratingsPerRater;
+    @Param("0.9")   public double skew;
+    @Param("false") public boolean compact;
+
+    Workload workload;
+    private String[] sample;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        workload = Workload.create();
+        workload.prepare(movies, raters, ratingsPerRater, skew, compact);
+        sample = workload.sampleRaters(64);
+    }
+
+    /** The next rater of a fixed sample, round robin, so no one rater's shape dominates. */
+    String nextRater() {
+        String id = sample[next];
+        next = (next + 1) % sample.length;
+        return id;
+    }
+}
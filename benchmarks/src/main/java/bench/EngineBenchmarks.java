@@ -0,0 +1,53 @@
+package bench;
+
+import java.io.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/** FourthRatings' request-time calls and the whole HTML page, per rater. */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EngineBenchmarks {
+    private PrintStream stdout;
+
+    @Setup(Level.Trial)
+    public void muteStdout() {
+        // the page is built and printed in full, just not to the terminal
+        stdout = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @TearDown(Level.Trial)
+    public void restoreStdout() {
+        System.setOut(stdout);
+    }
+
+    @Benchmark
+    public Object getAverageRatings(Dataset d) {
+        return d.workload.averageRatings(3);
+    }
+
+    @Benchmark
+    public Object getSimilarities(Dataset d) {
+        return d.workload.similarities(d.nextRater());
+    }
+
+    @Benchmark
+    public Object getSimilarRatingsByFilter(Dataset d) {
+        return d.workload.similarRatingsByFilter(d.nextRater());
+    }
+
+    @Benchmark
+    public void printRecommendationsFor(Dataset d) {
+        d.workload.printRecommendationsFor(d.nextRater());
+    }
+
+    @Benchmark
+    public void renderPage(Dataset d) throws Exception {
+        d.workload.renderPage();
+    }
+}
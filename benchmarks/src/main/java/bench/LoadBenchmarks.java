@@ -0,0 +1,23 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/** Parsing the two CSVs, as MovieDatabase and RaterDatabase do on a cold start. */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoadBenchmarks {
+
+    @Benchmark
+    public Object loadMovies(Dataset d) {
+        return d.workload.loadMovies();
+    }
+
+    @Benchmark
+    public Object loadRatings(Dataset d) {
+        return d.workload.loadRatings();
+    }
+}
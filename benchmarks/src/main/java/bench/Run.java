@@ -0,0 +1,22 @@
+package bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.*;
+
+/**
+ * Main class of benchmarks.jar: JMH's own command line, with the gc
+ * profiler always on, so every run reports allocation (gc.alloc.rate.norm =
+ * bytes per operation) next to the throughput.
+ *
+ *   java -jar benchmarks/target/benchmarks.jar [JMH options] [benchmark regex]
+ */
+public class Run {
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+            .parent(new CommandLineOptions(args))
+            .addProfiler(GCProfiler.class)
+            .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,52 @@
+package bench;
+
+/**
+ * Everything the benchmarks call, in one interface.
+ *
+ * The engine classes live in the default package (the BlueJ layout), which
+ * code in a named package can't import, and JMH won't generate benchmarks
+ * in the default package. So the calls go through this interface to
+ * BenchWorkload, a default-package class compiled next to the engine. It is
+ * looked up once per trial and is the only implementation, so the JIT
+ * inlines the calls and the measured work is the engine's own.
+ */
+public interface Workload {
+
+    /**
+     * Make the data set for these sizes (written once under java.io.tmpdir
+     * and reused by later runs), then load both databases from it.
+     */
+    void prepare(int movies, int raters, int ratingsPerRater, double skew, boolean compact) throws Exception;
+
+    /** n rater IDs picked at random (fixed seed) from the loaded ratings. */
+    String[] sampleRaters(int n);
+
+    Object loadMovies();
+
+    /** The movie file through the old splitCsvLine loader (MovieCsvComparison), for comparison. */
+    Object legacyLoadMovies() throws Exception;
+
+    /** Every field of the movie file (held in memory) as a String via splitCsvLine; returns the field count. */
+    int splitMovieFields() throws Exception;
+
+    /** The same fields via CsvTokenizer. */
+    int tokenizeMovieFields() throws Exception;
+
+    Object loadRatings();
+
+    Object averageRatings(int minimalRaters);
+
+    Object similarities(String raterID);
+
+    Object similarRatingsByFilter(String raterID);
+
+    /** RecommendationRunner's page; System.out is swapped for a null stream by the caller. */
+    void printRecommendationsFor(String raterID);
+
+    /** Only the HTML of a fixed 15-row page, to a null stream. */
+    void renderPage() throws Exception;
+
+    static Workload create() throws ReflectiveOperationException {
+        return (Workload) Class.forName("BenchWorkload").getDeclaredConstructor().newInstance();
+    }
+}
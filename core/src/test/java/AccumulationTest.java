@@ -0,0 +1,40 @@
+import java.nio.file.Path;
+import java.util.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Pushing each neighbour's ratings gives the per-movie loop's averages, bit for bit. */
+class AccumulationTest {
+    @TempDir static Path dir;
+
+    @BeforeAll
+    static void load() throws Exception {
+        TestData.loadSynthetic(dir, 400, 500, 17L);
+    }
+
+    @Test
+    void perNeighbourMatchesPerMovie() {
+        FourthRatings perMovie = new FourthRatings();
+        perMovie.setAccumulation(FourthRatings.Accumulation.PER_MOVIE);
+        FourthRatings perNeighbour = new FourthRatings();
+        perNeighbour.setAccumulation(FourthRatings.Accumulation.PER_NEIGHBOUR);
+
+        for (String id : TestData.raterIDs().subList(0, 50)) {
+            for (Filter f : filters(id)) {
+                for (int[] p : new int[][] { { 20, 5 }, { 50, 3 }, { 10, 1 } }) {
+                    TestData.assertSameRatings(perMovie.getSimilarRatingsByFilter(id, p[0], p[1], f),
+                                               perNeighbour.getSimilarRatingsByFilter(id, p[0], p[1], f),
+                                               id + " " + f.getClass().getSimpleName() + " " + Arrays.toString(p));
+                }
+            }
+        }
+    }
+
+    private static List<Filter> filters(String raterID) {
+        AllFilters both = new AllFilters();
+        both.addFilter(new YearsAfterFilter(1960));
+        both.addFilter(new NotRatedFilter(RaterDatabase.getRater(raterID)));
+        return Arrays.asList(new TrueFilter(), new YearsAfterFilter(1980), new GenreFilter("Drama"),
+                             new NotRatedFilter(RaterDatabase.getRater(raterID)), both);
+    }
+}
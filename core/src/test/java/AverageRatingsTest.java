@@ -0,0 +1,76 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Path;
+import java.util.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+/** The movie -> ratings index against a plain pass over the raters. */
+class AverageRatingsTest {
+    @TempDir Path dir;
+
+    @BeforeEach
+    void load() throws Exception {
+        TestData.load(
+            TestData.movies(dir,
+                "1,One,2001,USA,Drama,A,100,N/A",
+                "2,Two,2002,USA,Comedy,B,90,N/A",
+                "3,Three,2003,UK,Drama,C,120,N/A"),
+            TestData.ratings(dir,
+                "a,1,8", "a,2,5",
+                "b,1,6", "b,3,9",
+                "c,1,7", "c,2,4"));
+    }
+
+    @Test
+    void indexHasCountsAndSums() {
+        MovieRatings one = RaterDatabase.getMovieRatings("1");
+        assertEquals(3, one.getCount());
+        assertEquals(21.0, one.getSum());
+        assertEquals(7.0, one.getAverage(3));
+        assertEquals(0.0, one.getAverage(4));
+        assertEquals(1, RaterDatabase.getRatingCount("3"));
+        assertNull(RaterDatabase.getMovieRatings("4"));
+    }
+
+    @Test
+    void averagesHonourMinimalRaters() {
+        FourthRatings fr = new FourthRatings();
+        assertEquals("[[2, 4.5], [1, 7.0], [3, 9.0]]", fr.getAverageRatings(1).toString());
+        assertEquals("[[2, 4.5], [1, 7.0]]", fr.getAverageRatings(2).toString());
+        assertEquals("[[1, 7.0]]", fr.getAverageRatings(3).toString());
+    }
+
+    @Test
+    void matchesAScanOverRaters(@TempDir Path big) throws Exception {
+        TestData.loadSynthetic(big, 300, 400, 7L);
+        Map<String, double[]> scan = new HashMap<>();     // movie -> {sum, count}
+        for (Rater r : RaterDatabase.getRaters()) {
+            for (String m : r.getItemsRated()) {
+                double[] s = scan.computeIfAbsent(m, x -> new double[2]);
+                s[0] += r.getRating(m);
+                s[1]++;
+            }
+        }
+        for (Map.Entry<String, double[]> e : scan.entrySet()) {
+            MovieRatings mr = RaterDatabase.getMovieRatings(e.getKey());
+            assertEquals((int) e.getValue()[1], mr.getCount(), e.getKey());
+            assertEquals(e.getValue()[0], mr.getSum(), 1e-9, e.getKey());
+        }
+        for (Rating avg : new FourthRatings().getAverageRatings(5)) {
+            double[] s = scan.get(avg.getItem());
+            assertTrue(s[1] >= 5);
+            assertEquals(s[0] / s[1], avg.getValue(), 1e-9);
+        }
+    }
+
+    @Test
+    void duplicateRowReplacesTheOldValue() {
+        MovieRatings mr = new MovieRatings("1");
+        mr.add("a", 4);
+        mr.add("b", 6);
+        mr.replace("a", 8);
+        assertEquals(2, mr.getCount());
+        assertEquals(14.0, mr.getSum());
+    }
+}
@@ -0,0 +1,99 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+/** BatchRecommendations' CSV and JSON lines, and its Stats, against the runner's page for each rater. */
+class BatchRecommendationsTest {
+    @TempDir Path dir;
+
+    @Test
+    void filesMatchTheRunner() throws Exception {
+        Path m = dir.resolve("movies.csv"), r = dir.resolve("ratings.csv");
+        SyntheticRatings.write(m, r, 200, 150, 20, 0.9, 25L);
+        TestData.load(m, r);
+        String oldMovies = System.getProperty("movies.file"), oldRatings = System.getProperty("ratings.file");
+        System.setProperty("movies.file", m.toString());
+        System.setProperty("ratings.file", r.toString());
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            RaterSnapshot rs = RaterDatabase.snapshot();
+            MovieSnapshot ms = MovieDatabase.snapshot();
+            List<String> ids = new ArrayList<>(TestData.raterIDs());
+            ids.add("nobody");
+            RecommendationRunner runner = new RecommendationRunner();
+            LinkedHashMap<String, ArrayList<Rating>> expected = new LinkedHashMap<>();
+            long rows = 0;
+            int empty = 0;
+            for (String id : ids) {
+                ArrayList<Rating> page = runner.getRecommendationsFor(id);
+                expected.put(id, page);
+                rows += page.size();
+                if (page.isEmpty()) empty++;
+            }
+            assertTrue(rows > 0);
+
+            Path csv = dir.resolve("out.csv"), jsonl = dir.resolve("out.jsonl");
+            BatchRecommendations.Stats stats = BatchRecommendations.run(rs, ms, ids, new TrueFilter(), 15, csv,
+                BatchRecommendations.Format.CSV, null, 7);     // several blocks, the last one short
+            assertEquals(ids.size(), stats.raters);
+            assertEquals(rows, stats.rows);
+            assertEquals(empty, stats.empty);
+            stats = BatchRecommendations.run(rs, ms, ids, new TrueFilter(), 15, jsonl,
+                BatchRecommendations.Format.JSONL, pool, 64);
+            assertEquals(rows, stats.rows);
+            assertEquals(empty, stats.empty);
+
+            LinkedHashMap<String, ArrayList<Rating>> fromCsv = new LinkedHashMap<>();
+            List<String> lines = Files.readAllLines(csv, StandardCharsets.UTF_8);
+            assertEquals("rater_id,rank,movie_id,score", lines.get(0));
+            for (String line : lines.subList(1, lines.size())) {
+                String[] f = line.split(",");
+                ArrayList<Rating> recs = fromCsv.computeIfAbsent(f[0], x -> new ArrayList<>());
+                assertEquals(recs.size() + 1, Integer.parseInt(f[1]), line);
+                recs.add(new Rating(f[2], Double.parseDouble(f[3])));
+            }
+
+            lines = Files.readAllLines(jsonl, StandardCharsets.UTF_8);
+            assertEquals(ids.size(), lines.size());
+            Pattern rec = Pattern.compile("\\{\"movie\":\"([^\"]*)\",\"score\":([^}]*)\\}");
+            for (int i = 0; i < ids.size(); i++) {
+                String id = ids.get(i), line = lines.get(i);
+                assertTrue(line.startsWith("{\"rater\":\"" + id + "\",\"recommendations\":[") && line.endsWith("]}"), line);
+                ArrayList<Rating> recs = new ArrayList<>();
+                for (Matcher mm = rec.matcher(line); mm.find(); ) recs.add(new Rating(mm.group(1), Double.parseDouble(mm.group(2))));
+                TestData.assertSameRatings(expected.get(id), recs, id + " in JSON");
+                TestData.assertSameRatings(expected.get(id), fromCsv.getOrDefault(id, new ArrayList<>()), id + " in CSV");
+            }
+        } finally {
+            pool.shutdown();
+            if (oldMovies == null) System.clearProperty("movies.file"); else System.setProperty("movies.file", oldMovies);
+            if (oldRatings == null) System.clearProperty("ratings.file"); else System.setProperty("ratings.file", oldRatings);
+        }
+    }
+
+    @Test
+    void failedRunLeavesNoFile() throws Exception {
+        TestData.loadSynthetic(dir, 50, 40, 26L);
+        List<String> raters = TestData.raterIDs();
+        List<String> ids = new AbstractList<String>() {
+            public String get(int i) {
+                if (i == 10) throw new IllegalStateException("rater list broke");
+                return raters.get(i);
+            }
+            public int size() { return raters.size(); }
+        };
+        Path out = dir.resolve("out.csv");
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> BatchRecommendations.run(RaterDatabase.snapshot(),
+            MovieDatabase.snapshot(), ids, new TrueFilter(), 15, out, BatchRecommendations.Format.CSV, null, 4));
+        assertEquals("rater list broke", e.getMessage());
+        assertFalse(Files.exists(out));
+        assertFalse(Files.exists(dir.resolve("out.csv.tmp")));
+    }
+}
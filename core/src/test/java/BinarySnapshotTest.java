@@ -0,0 +1,110 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+/** .bin companions load the same data as their CSVs. */
+class BinarySnapshotTest {
+    @TempDir Path dir;
+
+    @AfterEach
+    void defaults() {
+        RaterDatabase.setBinarySnapshots(false);
+        MovieDatabase.setBinarySnapshots(false);
+        RaterDatabase.setCompactStorage(false);
+    }
+
+    @Test
+    void moviesRoundTrip() throws Exception {
+        Path csv = TestData.movies(dir,
+            "1,\"Quoted, \"\"title\"\"\",1999,USA,\"Drama, Comedy\",\"A, B\",101,http://x/1.jpg",
+            "2,Ünïcödé,2005,France,Drama,C,90,N/A");
+        MovieColumns fromCsv = MovieDatabase.loadMovies(csv.toString());
+        Path bin = BinarySnapshot.companion(csv.toString());
+        BinarySnapshot.writeMovies(bin, new MovieSnapshot(fromCsv, csv.toString()));
+        MovieColumns fromBin = BinarySnapshot.readMovies(bin);
+        assertEquals(fromCsv.size(), fromBin.size());
+        for (int row = 0; row < fromCsv.size(); row++) {
+            assertEquals(fromCsv.getID(row), fromBin.getID(row));
+            assertEquals(fromCsv.getTitle(row), fromBin.getTitle(row));
+            assertEquals(fromCsv.getYear(row), fromBin.getYear(row));
+            assertEquals(fromCsv.getCountry(row), fromBin.getCountry(row));
+            assertEquals(fromCsv.getGenres(row), fromBin.getGenres(row));
+            assertEquals(fromCsv.getDirector(row), fromBin.getDirector(row));
+            assertEquals(fromCsv.getMinutes(row), fromBin.getMinutes(row));
+            assertEquals(fromCsv.getPoster(row), fromBin.getPoster(row));
+        }
+    }
+
+    @Test
+    void fractionalRatingsKeepFullPrecision() throws Exception {
+        Path movies = TestData.movies(dir, "1,One,2001,USA,Drama,A,100,N/A", "2,Two,2002,USA,Drama,B,100,N/A");
+        Path ratings = TestData.ratings(dir, "a,1,7.3", "a,2,0.1", "b,1,8");
+        Map<String, Double> csv = loadAll(movies, ratings, true);
+        assertTrue(Files.exists(BinarySnapshot.companion(ratings.toString())));
+        Files.copy(ratings, dir.resolve("kept.csv"));
+        Files.delete(ratings);                      // so the second load can only come from the .bin
+        assertEquals(csv, loadAll(movies, ratings, true));
+        Files.copy(dir.resolve("kept.csv"), ratings);
+        assertEquals(7.3, csv.get("a/1"));
+        assertEquals(0.1, csv.get("a/2"));
+
+        RaterDatabase.setCompactStorage(true);        // compact raters keep floats either way
+        assertEquals((double) 7.3f, loadAll(movies, ratings, false).get("a/1"));
+        Files.setLastModifiedTime(BinarySnapshot.companion(ratings.toString()),
+            FileTime.fromMillis(Files.getLastModifiedTime(ratings).toMillis() + 1000));
+        assertEquals((double) 7.3f, loadAll(movies, ratings, true).get("a/1"));
+    }
+
+    @Test
+    void syntheticRatingsRoundTrip(@TempDir Path data) throws Exception {
+        SyntheticRatings.write(data.resolve("m.csv"), data.resolve("r.csv"), 150, 120, 15, 0.9, 41L);
+        for (boolean compact : new boolean[] { false, true }) {
+            RaterDatabase.setCompactStorage(compact);
+            Files.deleteIfExists(BinarySnapshot.companion(data.resolve("r.csv").toString()));
+            Map<String, Double> csv = loadAll(data.resolve("m.csv"), data.resolve("r.csv"), true);
+            assertNotNull(BinarySnapshot.freshCompanion(data.resolve("r.csv").toString()));
+            assertEquals(csv, loadAll(data.resolve("m.csv"), data.resolve("r.csv"), true));
+        }
+    }
+
+    @Test
+    void onlyANewerCompanionIsUsed() throws Exception {
+        Path csv = TestData.ratings(dir, "a,1,7");
+        Path bin = BinarySnapshot.companion(csv.toString());
+        assertNull(BinarySnapshot.freshCompanion(csv.toString()));
+        Files.write(bin, new byte[0]);
+        FileTime t = Files.getLastModifiedTime(csv);
+        Files.setLastModifiedTime(bin, t);
+        assertNull(BinarySnapshot.freshCompanion(csv.toString()), "same time is not newer");
+        Files.setLastModifiedTime(bin, FileTime.fromMillis(t.toMillis() + 1000));
+        assertEquals(bin, BinarySnapshot.freshCompanion(csv.toString()));
+    }
+
+    @Test
+    void damagedFileFallsBackToTheCsv() throws Exception {
+        Path movies = TestData.movies(dir, "1,One,2001,USA,Drama,A,100,N/A");
+        Path ratings = TestData.ratings(dir, "a,1,6.5");
+        Path bin = BinarySnapshot.companion(ratings.toString());
+        Files.write(bin, new byte[] { 'D', 'K', 'S', 'N', 0, 0, 0, 1, 0, 0, 0, 2 });   // version 1
+        Files.setLastModifiedTime(bin, FileTime.fromMillis(Files.getLastModifiedTime(ratings).toMillis() + 1000));
+        assertThrows(java.io.IOException.class, () -> BinarySnapshot.readRatings(bin, new IdDictionary()));
+        assertEquals(6.5, loadAll(movies, ratings, true).get("a/1"));
+        assertTrue(Files.size(bin) > 12, "rewritten after the CSV load");
+    }
+
+    /** "rater/movie" -> rating after a fresh load with snapshots on or off. */
+    private static Map<String, Double> loadAll(Path movies, Path ratings, boolean bin) {
+        RaterDatabase.setBinarySnapshots(bin);
+        MovieDatabase.setBinarySnapshots(bin);
+        TestData.load(movies, ratings);
+        TreeMap<String, Double> all = new TreeMap<>();
+        for (Rater r : RaterDatabase.getRaters()) {
+            for (String item : r.getItemsRated()) all.put(r.getID() + "/" + item, r.getRating(item));
+        }
+        return all;
+    }
+}
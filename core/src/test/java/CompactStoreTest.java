@@ -0,0 +1,96 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+/** IdDictionary, RatingMatrix and CompactRater, and compact storage against EfficientRater. */
+class CompactStoreTest {
+
+    @AfterEach
+    void plainStorage() {
+        RaterDatabase.setCompactStorage(false);
+    }
+
+    @Test
+    void dictionaryInternsDensely() {
+        IdDictionary d = new IdDictionary();
+        for (int i = 0; i < 1000; i++) assertEquals(i, d.intern("id" + i));
+        assertEquals(17, d.intern("id17"));
+        assertEquals(1000, d.size());
+        assertEquals(-1, d.indexOf("nope"));
+        assertEquals("id999", d.get(999));
+        assertThrows(IndexOutOfBoundsException.class, () -> d.get(1000));
+
+        ByteBuffer buf = ByteBuffer.wrap("xx,id42,é1".getBytes(StandardCharsets.UTF_8));
+        assertEquals(42, d.internAscii(buf, 3, 4));
+        int accented = d.internAscii(buf, 8, 3);     // "é1", not ASCII
+        assertEquals("é1", d.get(accented));
+
+        IdDictionary copy = d.copy();
+        copy.intern("only in the copy");
+        assertEquals(-1, d.indexOf("only in the copy"));
+        assertEquals(42, copy.indexOf("id42"));
+    }
+
+    @Test
+    void matrixRowsAreSortedAndLastDuplicateWins() {
+        RatingMatrix.Builder b = new RatingMatrix.Builder(new IdDictionary());
+        b.add("a", "m3", 3);
+        b.add("b", "m1", 9);
+        b.add("a", "m1", 1);
+        b.add("a", "m3", 7);     // replaces the first m3
+        RatingMatrix m = b.build();
+        assertEquals(2, m.numRaters());
+        assertEquals(3, m.numRatings());
+
+        CompactRater a = m.getRater(m.getRaterIDs().indexOf("a"));
+        assertEquals(2, a.numRatings());
+        assertTrue(a.itemIndexAt(0) < a.itemIndexAt(1));
+        assertEquals(7.0, a.getRating("m3"));
+        assertEquals(1.0, a.getRating("m1"));
+        assertEquals(-1.0, a.getRating("m2"));
+    }
+
+    @Test
+    void writingAViewLeavesTheMatrixAlone() {
+        RatingMatrix.Builder b = new RatingMatrix.Builder(new IdDictionary());
+        b.add("a", "m1", 1);
+        b.add("a", "m2", 2);
+        b.add("b", "m1", 5);
+        RatingMatrix m = b.build();
+        CompactRater a = m.getRater(0);
+        a.addRating("m1", 8);
+        a.addRating("m0", 4);
+        assertEquals(8.0, a.getRating("m1"));
+        assertEquals(3, a.numRatings());
+        assertEquals(1.0, m.getRater(0).getRating("m1"));
+        assertEquals(2, m.getRater(0).numRatings());
+        assertEquals(5.0, m.getRater(1).getRating("m1"));
+    }
+
+    @Test
+    void compactStorageAnswersLikeEfficientRater(@TempDir Path dir) throws Exception {
+        TestData.loadSynthetic(dir, 200, 300, 3L);
+        Map<String, String> plain = new TreeMap<>();
+        for (Rater r : RaterDatabase.getRaters()) plain.put(r.getID(), ratings(r));
+
+        RaterDatabase.setCompactStorage(true);
+        TestData.load(dir.resolve("ratedmoviesfull.csv"), dir.resolve("ratings.csv"));
+        assertEquals(plain.size(), RaterDatabase.size());
+        for (Rater r : RaterDatabase.getRaters()) {
+            assertTrue(r instanceof CompactRater);
+            assertEquals(plain.get(r.getID()), ratings(r), r.getID());
+        }
+    }
+
+    /** "movie=value" for every rating, by movie. */
+    private static String ratings(Rater r) {
+        TreeMap<String, Double> m = new TreeMap<>();
+        for (String item : r.getItemsRated()) m.put(item, r.getRating(item));
+        return m.toString();
+    }
+}
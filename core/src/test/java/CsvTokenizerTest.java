@@ -0,0 +1,132 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+/** CsvTokenizer against the old splitCsvLine, and the cases only it handles. */
+class CsvTokenizerTest {
+
+    /** Every record of text as its list of fields. */
+    private static List<List<String>> records(String text) throws IOException {
+        List<List<String>> out = new ArrayList<>();
+        try (CsvTokenizer csv = new CsvTokenizer(new StringReader(text))) {
+            while (csv.next()) {
+                List<String> fields = new ArrayList<>();
+                for (int i = 0; i < csv.fields(); i++) fields.add(csv.field(i));
+                out.add(fields);
+            }
+        }
+        return out;
+    }
+
+    @Test
+    void quotesCommasAndTrimming() throws IOException {
+        assertEquals(Arrays.asList(
+                Arrays.asList("id", "title", "genre"),
+                Arrays.asList("1", "Movie 0, the \"sequel\"", "Action, Horror"),
+                Arrays.asList("2", "plain", "")),
+            records("id,title,genre\n1,\"Movie 0, the \"\"sequel\"\"\",\"Action, Horror\"\n 2 ,  plain  ,\n"));
+    }
+
+    @Test
+    void lineEndingsBomAndQuotedLineBreaks() throws IOException {
+        assertEquals(Arrays.asList(Arrays.asList("a", "b"), Arrays.asList("c", "d"), Arrays.asList("e", "f")),
+            records("﻿a,b\r\nc,d\re,f"));
+        assertEquals(Arrays.asList(Arrays.asList("1", "two\nlines", "x"), Arrays.asList("2", "y")),
+            records("1,\"two\nlines\",x\n2,y\n"));
+    }
+
+    @Test
+    void unterminatedQuoteAtTheEndIsAnError(@TempDir Path dir) throws IOException {
+        IOException e = assertThrows(IOException.class, () -> records("id,title\n1,\"unterminated\n2,ok\n"));
+        assertTrue(e.getMessage().contains("record 2"), e.getMessage());
+        assertThrows(IOException.class, () -> records("\"a\"\"b"));
+        assertEquals(Arrays.asList(Arrays.asList("a\"b")), records("\"a\"\"b\""));
+
+        Path m = TestData.write(dir.resolve("m.csv"), "id,title", "1,\"unterminated", "2,ok");
+        RuntimeException load = assertTimeoutPreemptively(Duration.ofSeconds(10),
+            () -> assertThrows(RuntimeException.class, () -> MovieDatabase.loadMovies(m.toString())));
+        assertTrue(load.getMessage().contains("unterminated quote"), load.getMessage());
+    }
+
+    @Test
+    void intFields() throws IOException {
+        try (CsvTokenizer csv = new CsvTokenizer(new StringReader(" 1999 ,-7,+3,x,2147483648,,12a\n"))) {
+            assertTrue(csv.next());
+            assertEquals(1999, csv.intField(0, -1));
+            assertEquals(-7, csv.intField(1, -1));
+            assertEquals(3, csv.intField(2, -1));
+            assertEquals(-1, csv.intField(3, -1));
+            assertEquals(-1, csv.intField(4, -1));
+            assertEquals(-1, csv.intField(5, -1));
+            assertEquals(-1, csv.intField(6, -1));
+            assertEquals(-1, csv.intField(7, -1));
+            assertEquals("", csv.field(9));
+            assertFalse(csv.next());
+        }
+    }
+
+    @Test
+    void recordsLongerThanTheBuffer() throws IOException {
+        char[] big = new char[200_000];
+        Arrays.fill(big, 'x');
+        String longField = new String(big);
+        List<List<String>> r = records("a,\"" + longField + "\"\nb," + longField + "\n");
+        assertEquals(2, r.size());
+        assertEquals(longField, r.get(0).get(1));
+        assertEquals(longField, r.get(1).get(1));
+    }
+
+    @Test
+    void agreesWithSplitCsvLineOnRandomRecords() throws IOException {
+        Random rnd = new Random(43);
+        String alphabet = "abc XYZ é,\"";
+        StringBuilder text = new StringBuilder();
+        List<List<String>> expected = new ArrayList<>();
+        for (int r = 0; r < 3000; r++) {
+            StringBuilder line = new StringBuilder();
+            int n = 1 + rnd.nextInt(8);
+            for (int f = 0; f < n; f++) {
+                StringBuilder v = new StringBuilder();
+                for (int k = rnd.nextInt(10); k > 0; k--) v.append(alphabet.charAt(rnd.nextInt(alphabet.length())));
+                String value = v.toString();
+                // the old splitter unwraps a value that starts and ends with a quote a
+                // second time, and a blank line is one field to it but no record here
+                String trimmed = value.trim();
+                if (trimmed.startsWith("\"") || trimmed.endsWith("\"") || (f == 0 && trimmed.isEmpty())) value = "q" + value + "q";
+                if (f > 0) line.append(',');
+                if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || rnd.nextBoolean()) {
+                    line.append('"').append(value.replace("\"", "\"\"")).append('"');
+                } else {
+                    line.append(value);
+                }
+            }
+            expected.add(MovieCsvComparison.splitCsvLine(line.toString()));
+            text.append(line).append(rnd.nextBoolean() ? "\n" : "\r\n");
+        }
+        assertEquals(expected, records(text.toString()));
+    }
+
+    @Test
+    void movieLoaderMatchesTheOldOne(@TempDir Path dir) throws Exception {
+        Path m = dir.resolve("m.csv");
+        SyntheticRatings.write(m, dir.resolve("r.csv"), 500, 10, 5, 0.9, 47L);
+        HashMap<String, Movie> old = MovieCsvComparison.legacyLoad(m.toString());
+        MovieColumns cols = MovieDatabase.loadMovies(m.toString());
+        assertEquals(old.size(), cols.size());
+        for (Movie a : old.values()) {
+            Movie b = cols.getMovie(cols.indexOf(a.getID()));
+            assertEquals(a.getTitle(), b.getTitle());
+            assertEquals(a.getYear(), b.getYear());
+            assertEquals(a.getCountry(), b.getCountry());
+            assertEquals(a.getGenres(), b.getGenres());
+            assertEquals(a.getDirector(), b.getDirector());
+            assertEquals(a.getMinutes(), b.getMinutes());
+            assertEquals(a.getPoster(), b.getPoster());
+        }
+    }
+}
@@ -0,0 +1,81 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+/** FactorModel: same model for any thread count, a file round trip, damaged files, and the engine calls. */
+class FactorModelTest {
+    @TempDir Path dir;
+
+    @Test
+    void trainingIgnoresThreadsAndTheFileRoundTrips() throws Exception {
+        TestData.loadSynthetic(dir, 100, 120, 6L);
+        RaterSnapshot rs = RaterDatabase.snapshot();
+        FactorModel one = FactorModel.train(rs, 5, 4, 0.1, 42L, null);
+        ForkJoinPool pool = new ForkJoinPool(3);
+        FactorModel three;
+        try {
+            three = FactorModel.train(rs, 5, 4, 0.1, 42L, pool);
+        } finally {
+            pool.shutdown();
+        }
+        Path file = dir.resolve("model.mf");
+        one.write(file);
+        FactorModel read = FactorModel.read(file);
+        assertEquals(5, read.getFactors());
+
+        FourthRatings a = new FourthRatings(), b = new FourthRatings(), c = new FourthRatings();
+        a.setFactorModel(one);
+        b.setFactorModel(three);
+        c.setFactorModel(read);
+        for (String id : TestData.raterIDs().subList(0, 20)) {
+            ArrayList<Rating> all = a.getFactorRatingsByFilter(id, new TrueFilter());
+            TestData.assertSameRatings(all, b.getFactorRatingsByFilter(id, new TrueFilter()), id + " 3 threads");
+            TestData.assertSameRatings(all, c.getFactorRatingsByFilter(id, new TrueFilter()), id + " read back");
+            TestData.assertSameRatings(all.subList(0, 7), a.getTopFactorRecommendations(id, 7, new TrueFilter()), id + " top 7");
+            for (Rating r : a.getFactorRatingsByFilter(id, new YearsAfterFilter(1980))) assertTrue(MovieDatabase.getYear(r.getItem()) >= 1980);
+        }
+        assertEquals(one.rmse(rs), read.rmse(rs));
+        assertTrue(a.getFactorRatingsByFilter("nobody", new TrueFilter()).isEmpty());
+    }
+
+    @Test
+    void needsAModel() throws Exception {
+        TestData.loadSynthetic(dir, 20, 10, 1L);
+        String someone = TestData.raterIDs().get(0);
+        assertThrows(IllegalStateException.class, () -> new FourthRatings().getTopFactorRecommendations(someone, 5, new TrueFilter()));
+    }
+
+    @Test
+    void damagedFilesFailCleanly() throws Exception {
+        TestData.loadSynthetic(dir, 30, 20, 3L);
+        Path file = dir.resolve("model.mf");
+        FactorModel.train(RaterDatabase.snapshot(), 3, 2, 0.1, 1L, null).write(file);
+        byte[] good = Files.readAllBytes(file);
+
+        // factors = 2^31 - 1: raters x factors is past int range
+        byte[] huge = good.clone();
+        ByteBuffer.wrap(huge).putInt(8, Integer.MAX_VALUE);
+        Files.write(file, huge);
+        IOException e = assertThrows(IOException.class, () -> FactorModel.read(file));
+        assertTrue(e.getMessage().contains("damaged"), e.getMessage());
+
+        // a string table claiming more IDs than the file could hold
+        byte[] ids = good.clone();
+        ByteBuffer.wrap(ids).putInt(16, 1 << 30);
+        Files.write(file, ids);
+        assertThrows(IOException.class, () -> FactorModel.read(file));
+
+        Files.write(file, Arrays.copyOf(good, good.length - 3));
+        e = assertThrows(IOException.class, () -> FactorModel.read(file));
+        assertTrue(e.getMessage().contains("truncated"), e.getMessage());
+
+        Files.write(file, new byte[] { 1, 2, 3 });
+        assertThrows(IOException.class, () -> FactorModel.read(file));
+    }
+}
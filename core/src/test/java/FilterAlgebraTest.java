@@ -0,0 +1,81 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Masks of the combinators against their satisfies(), keys, and FilterMasks.rowTest. */
+class FilterAlgebraTest {
+    private static MovieColumns cols;
+
+    @BeforeAll
+    static void load(@TempDir Path dir) throws Exception {
+        TestData.loadSynthetic(dir, 700, 60, 9L);     // 700 rows: the last mask word is partly used
+        cols = MovieDatabase.snapshot().getColumns();
+    }
+
+    private static void assertMaskMatches(Filter f) {
+        long[] bits = FilterMasks.of(f, cols);
+        assertEquals(FilterMasks.words(cols.size()), bits.length);
+        for (int row = 0; row < cols.size(); row++) {
+            assertEquals(f.satisfies(cols.getID(row)), FilterMasks.get(bits, row), "row " + row);
+        }
+        for (int row = cols.size(); row < bits.length * 64; row++) assertFalse(FilterMasks.get(bits, row), "tail bit " + row);
+    }
+
+    @Test
+    void combinatorsMatchTheirParts() {
+        Rater someone = RaterDatabase.getRaters().get(0);
+        AllFilters and = new AllFilters();
+        and.addFilter(new YearsAfterFilter(1960));
+        and.addFilter(new MinutesFilter(80, 140));
+        AnyFilters or = new AnyFilters();
+        or.addFilter(new GenreFilter("Horror"));
+        or.addFilter(and);
+        or.addFilter(id -> id.hashCode() % 5 == 0);
+        AllFilters notRated = new AllFilters();
+        notRated.addFilter(new NotFilter(or));
+        notRated.addFilter(new NotRatedFilter(someone));
+
+        for (Filter f : new Filter[] { new TrueFilter(), and, or, new NotFilter(and), new NotFilter(new TrueFilter()),
+                                       new NotRatedFilter(someone), notRated, new AllFilters(), new AnyFilters() }) {
+            assertMaskMatches(f);
+        }
+        assertEquals(FilterMasks.count(FilterMasks.all(cols)), FilterMasks.count(FilterMasks.of(new AllFilters(), cols)));
+        assertEquals(0, FilterMasks.count(FilterMasks.of(new AnyFilters(), cols)));
+    }
+
+    @Test
+    void keysOnlyForWhatTheTableDecides() {
+        AllFilters and = new AllFilters();
+        and.addFilter(new YearsAfterFilter(1990));
+        and.addFilter(new NotFilter(new MinutesFilter(90, 150)));
+        assertEquals("and(year>=1990,not(minutes[90,150]))", and.key());
+        assertEquals(new GenreFilter("comedy, Drama").key(), new GenreFilter("Drama,Comedy").key());
+
+        and.addFilter(new NotRatedFilter(null));
+        assertNull(and.key());
+        assertNull(FilterMasks.keyOf(new NotFilter(id -> true)));
+        assertSame(FilterMasks.of(new YearsAfterFilter(1990), cols), FilterMasks.of(new YearsAfterFilter(1990), cols));
+    }
+
+    @Test
+    void rowTestOnlyAsksAboutTheRowsGiven() {
+        AtomicInteger calls = new AtomicInteger();
+        Filter plain = id -> { calls.incrementAndGet(); return id.hashCode() % 2 == 0; };
+        AllFilters perRequest = new AllFilters();
+        perRequest.addFilter(new NotRatedFilter(RaterDatabase.getRaters().get(1)));
+        perRequest.addFilter(plain);
+
+        for (Filter f : new Filter[] { plain, perRequest, new YearsAfterFilter(1975), new NotRatedFilter(null) }) {
+            calls.set(0);
+            FilterMasks.RowTest test = FilterMasks.rowTest(f, cols);
+            for (int row = 0; row < cols.size(); row += 50) {
+                assertEquals(f.satisfies(cols.getID(row)), test.passes(row), "row " + row);
+            }
+            assertTrue(calls.get() <= 2 * ((cols.size() + 49) / 50), "satisfies calls: " + calls.get());
+        }
+    }
+}
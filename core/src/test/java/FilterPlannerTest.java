@@ -0,0 +1,79 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Path;
+import java.util.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+/** RangeIndex against a scan, and the planner's index path against the mask path. */
+class FilterPlannerTest {
+
+    @Test
+    void rangeIndexMatchesAScan() {
+        Random rnd = new Random(3);
+        int n = 1000;
+        int[] column = new int[n + 5];         // longer than n: only the first n count
+        for (int i = 0; i < column.length; i++) column[i] = rnd.nextInt(200) - 100;
+        column[0] = Integer.MIN_VALUE;
+        column[1] = Integer.MAX_VALUE;
+        RangeIndex index = new RangeIndex(column, n);
+
+        int[][] ranges = { {-10, 10}, {5, 5}, {10, -10}, {Integer.MIN_VALUE, Integer.MAX_VALUE}, {100, Integer.MAX_VALUE},
+                           {Integer.MIN_VALUE, -101}, {1000, 2000} };
+        for (int[] r : ranges) {
+            int lo = r[0], hi = r[1];
+            ArrayList<Integer> expected = new ArrayList<>();
+            for (int row = 0; row < n; row++) if (column[row] >= lo && column[row] <= hi) expected.add(row);
+
+            int[] rows = index.rows(lo, hi);
+            assertEquals(expected.size(), index.count(lo, hi), lo + ".." + hi);
+            for (int i = 1; i < rows.length; i++) {
+                assertTrue(column[rows[i - 1]] < column[rows[i]] || (column[rows[i - 1]] == column[rows[i]] && rows[i - 1] < rows[i]),
+                           "value order, ties by row");
+            }
+            int[] sorted = rows.clone();
+            Arrays.sort(sorted);
+            assertArrayEquals(expected.stream().mapToInt(Integer::intValue).toArray(), sorted);
+
+            long[] bits = new long[FilterMasks.words(n)];
+            index.mark(bits, lo, hi);
+            assertEquals(expected.size(), FilterMasks.count(bits));
+            for (int row : expected) assertTrue(FilterMasks.get(bits, row));
+        }
+    }
+
+    @Test
+    void plannedRowsMatchTheMask(@TempDir Path dir) throws Exception {
+        TestData.loadSynthetic(dir, 2000, 40, 13L);
+        MovieColumns cols = MovieDatabase.snapshot().getColumns();
+
+        AllFilters narrow = new AllFilters();                 // minutes 90-91 is ~2% of the table
+        narrow.addFilter(new GenreFilter("Drama"));
+        AllFilters nested = new AllFilters();
+        nested.addFilter(new MinutesFilter(90, 91));
+        nested.addFilter(id -> !id.endsWith("3"));
+        narrow.addFilter(nested);
+        narrow.addFilter(new NotRatedFilter(RaterDatabase.getRaters().get(0)));
+
+        AllFilters wide = new AllFilters();
+        wide.addFilter(new YearsAfterFilter(1930));
+        wide.addFilter(new GenreFilter("Comedy"));
+
+        assertNotNull(FilterPlanner.indexed(narrow, cols));
+        assertNotNull(FilterPlanner.indexed(new DirectorsFilter("Director 7"), cols));
+        assertNull(FilterPlanner.indexed(wide, cols));
+        assertNull(FilterPlanner.indexed(id -> true, cols));
+
+        for (Filter f : new Filter[] { narrow, wide, new DirectorsFilter("Director 7"), new MinutesFilter(300, 400) }) {
+            long[] bits = FilterMasks.of(f, cols);
+            int[] rows = FilterPlanner.rows(f, cols);
+            assertEquals(FilterMasks.count(bits), rows.length);
+            int expected = FilterMasks.next(bits, 0);
+            for (int row : rows) {
+                assertEquals(expected, row);
+                expected = FilterMasks.next(bits, row + 1);
+            }
+            assertEquals(-1, expected);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Path;
+import java.util.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Item-based recommendations: the movie index against cosines, the scores against a plain loop. */
+class ItemBasedTest {
+    @TempDir Path dir;
+
+    /** Cosine of two movies' centred columns, straight from the raters. */
+    private static double cosine(List<Rater> raters, String i, String j) {
+        double dot = 0, ni = 0, nj = 0;
+        for (Rater r : raters) {
+            double ci = r.hasRating(i) ? r.getRating(i) - 5 : 0, cj = r.hasRating(j) ? r.getRating(j) - 5 : 0;
+            dot += ci * cj;
+            ni += ci * ci;
+            nj += cj * cj;
+        }
+        return (ni == 0 || nj == 0) ? 0 : dot / Math.sqrt(ni * nj);
+    }
+
+    @Test
+    void needsAnIndexAndStaysWithinItsK() throws Exception {
+        TestData.loadSynthetic(dir, 60, 40, 2L);
+        FourthRatings fr = new FourthRatings();
+        String someone = TestData.raterIDs().get(0);
+        assertThrows(IllegalStateException.class, () -> fr.getItemSimilarRatings(someone, 10, 1));
+        fr.setItemNeighbours(ItemSimilarityJob.build(RaterDatabase.snapshot(), 10, null));
+        assertThrows(IllegalArgumentException.class, () -> fr.getItemSimilarRatings(someone, 11, 1));
+        assertNotNull(fr.getItemSimilarRatings(someone, 10, 1));
+        assertThrows(IllegalArgumentException.class, () -> fr.setItemNeighbours(new NeighbourIndex(NeighbourIndex.RATERS, 1, new String[0], new int[1], new int[0], new float[0])));
+    }
+
+    @Test
+    void scoresMatchAPlainLoop() throws Exception {
+        TestData.loadSynthetic(dir, 120, 150, 8L);
+        ArrayList<Rater> raters = RaterDatabase.getRaters();
+        NeighbourIndex items = ItemSimilarityJob.build(RaterDatabase.snapshot(), 15, null);
+
+        List<String> movies = MovieDatabase.getMovies();
+        for (String i : movies.subList(0, 10)) {
+            ArrayList<Rating> top = items.top(i, 15);
+            if (top == null) continue;
+            for (Rating r : top) assertEquals((float) cosine(raters, i, r.getItem()), (float) r.getValue(), 1e-6, i + "~" + r.getItem());
+        }
+
+        FourthRatings fr = new FourthRatings();
+        fr.setItemNeighbours(items);
+        Filter after1950 = new YearsAfterFilter(1950);
+        for (String id : TestData.raterIDs().subList(0, 25)) {
+            Rater me = RaterDatabase.getRater(id);
+            HashMap<String, double[]> sums = new HashMap<>();      // movie -> weighted sum, weights, count
+            ArrayList<String> mine = new ArrayList<>(me.getItemsRated());
+            mine.sort(Comparator.comparingInt(m -> RaterDatabase.getMovieIDs().indexOf(m)));   // the engine's order
+            for (String m : mine) {
+                ArrayList<Rating> nbs = items.top(m, 8);
+                if (nbs == null) continue;
+                for (Rating nb : nbs) {
+                    double[] s = sums.computeIfAbsent(nb.getItem(), x -> new double[3]);
+                    s[0] += nb.getValue() * me.getRating(m);
+                    s[1] += Math.abs(nb.getValue());
+                    s[2]++;
+                }
+            }
+            ArrayList<Rating> expected = new ArrayList<>();
+            for (Map.Entry<String, double[]> e : sums.entrySet()) {
+                double[] s = e.getValue();
+                if (s[2] >= 2 && s[1] > 0 && after1950.satisfies(e.getKey())) expected.add(new Rating(e.getKey(), s[0] / s[1]));
+            }
+            expected.sort(TopRatings.BEST_FIRST);
+            TestData.assertSameRatings(expected, fr.getItemSimilarRatingsByFilter(id, 8, 2, after1950), id);
+        }
+    }
+}
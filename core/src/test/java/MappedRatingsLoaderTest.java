@@ -0,0 +1,94 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+/** The mapped ratings parser on awkward files, and its number parsing against Double.parseDouble. */
+class MappedRatingsLoaderTest {
+    @TempDir Path dir;
+
+    /** "rater movie rating" per row, as the loader saw them. */
+    private List<String> load(String content) throws Exception {
+        Path file = dir.resolve("r.csv");
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        IdDictionary raters = new IdDictionary(), movies = new IdDictionary();
+        List<String> rows = new ArrayList<>();
+        long n = MappedRatingsLoader.load(file.toString(), raters, movies,
+            (r, m, v) -> rows.add(raters.get(r) + " " + movies.get(m) + " " + v));
+        assertEquals(rows.size(), n);
+        return rows;
+    }
+
+    @Test
+    void plainFile() throws Exception {
+        assertEquals(Arrays.asList("1 0068646 10.0", "1 0113277 8.0", "2 1798709 7.5"),
+            load("rater_id,movie_id,rating,time\n1,0068646,10,1\n1,0113277,8,2\n2,1798709,7.5,3\n"));
+    }
+
+    @Test
+    void headerByNameBomCrlfQuotesAndBlankLines() throws Exception {
+        String csv = "﻿ time , Rating,\"MOVIE_ID\",extra,rater_id\r\n"
+                   + "1,  6 ,\"0068646\",x,\" 17 \"\r\n"
+                   + "\r\n"
+                   + "2,9.25,\"a, quoted id\",y,é\r\n"
+                   + "3,1,0113277,z,17";                       // no newline at the end
+        assertEquals(Arrays.asList("17 0068646 6.0", "é a, quoted id 9.25", "17 0113277 1.0"), load(csv));
+    }
+
+    @Test
+    void emptyAndHeaderOnlyFiles() throws Exception {
+        assertTrue(load("").isEmpty());
+        assertTrue(load("rater_id,movie_id,rating,time\n").isEmpty());
+    }
+
+    @Test
+    void badInput() {
+        assertThrows(IllegalArgumentException.class, () -> load("rater,movie_id,rating\n1,2,3\n"));
+        assertThrows(IllegalArgumentException.class, () -> load("rater_id,movie_id,rating\n1,2\n"));
+        assertThrows(RuntimeException.class, () -> MappedRatingsLoader.load(dir.resolve("missing.csv").toString(),
+            new IdDictionary(), new IdDictionary(), (r, m, v) -> { }));
+    }
+
+    @Test
+    void ratingsParseLikeParseDouble() throws Exception {
+        Random rnd = new Random(31);
+        StringBuilder csv = new StringBuilder("rater_id,movie_id,rating\n");
+        List<String> texts = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            String v;
+            switch (i % 5) {
+                case 0:  v = Integer.toString(rnd.nextInt(11)); break;
+                case 1:  v = String.format(Locale.US, "%.1f", rnd.nextDouble() * 10); break;
+                case 2:  v = String.format(Locale.US, "%.7f", rnd.nextDouble() * 10); break;
+                case 3:  v = Double.toString(rnd.nextDouble() * 10); break;    // 16-17 digits: the slow path
+                default: v = "-0." + rnd.nextInt(1000);
+            }
+            texts.add(v);
+            csv.append("r,m").append(i).append(',').append(v).append('\n');
+        }
+        csv.append("r,bad,n/a\n");
+        List<String> rows = load(csv.toString());
+        for (int i = 0; i < texts.size(); i++) {
+            assertEquals("r m" + i + " " + Double.parseDouble(texts.get(i)), rows.get(i), texts.get(i));
+        }
+        assertEquals("r bad 0.0", rows.get(texts.size()));
+    }
+
+    @Test
+    void databaseLoadMatchesTheRows(@TempDir Path data) throws Exception {
+        TestData.loadSynthetic(data, 100, 80, 37L);
+        List<String> lines = Files.readAllLines(data.resolve("ratings.csv"), StandardCharsets.UTF_8);
+        int rows = 0;
+        for (String line : lines.subList(1, lines.size())) {
+            String[] f = line.split(",");
+            assertEquals(Double.parseDouble(f[2]), RaterDatabase.getRater(f[0]).getRating(f[1]), line);
+            rows++;
+        }
+        int total = 0;
+        for (Rater r : RaterDatabase.getRaters()) total += r.numRatings();
+        assertEquals(rows, total);
+    }
+}
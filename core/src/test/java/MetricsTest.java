@@ -0,0 +1,85 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+import org.junit.jupiter.api.*;
+
+/** LatencyHistogram's buckets and percentiles, and the Metrics switch. */
+class MetricsTest {
+
+    @Test
+    void bucketsCoverEveryValueWithin1In32() {
+        Random rnd = new Random(1);
+        for (int i = 0; i < 100_000; i++) {
+            long v = (i < 1000) ? i : (rnd.nextLong() >>> 1) >>> rnd.nextInt(63);
+            int b = LatencyHistogram.bucket(v);
+            long lo = LatencyHistogram.lowest(b), next = LatencyHistogram.lowest(b + 1);
+            assertTrue(lo <= v && (v < next || next < lo), v + " in bucket " + b + " [" + lo + ", " + next + ")");
+            assertTrue(next - lo <= Math.max(1, lo / 32), "bucket " + b + " too wide");
+        }
+        assertTrue(LatencyHistogram.lowest(LatencyHistogram.bucket(Long.MAX_VALUE)) > 0, "the top bucket holds Long.MAX_VALUE");
+    }
+
+    @Test
+    void percentilesOfAKnownSpread() {
+        LatencyHistogram h = new LatencyHistogram();
+        assertEquals(0, h.getValueAt(0.5));
+        for (long v = 1; v <= 100_000; v++) h.record(v);
+        h.record(-5);                                   // counted as 0
+        assertEquals(100_001, h.getCount());
+        assertEquals(100_000, h.getMax());
+        assertEquals(100_000L * 100_001 / 2 / 100_001.0, h.getMean(), 1e-9);
+        for (double q : new double[] { 0.1, 0.5, 0.9, 0.99 }) {
+            double exact = q * 100_001;
+            assertEquals(exact, h.getValueAt(q), exact / 32, "p" + q);
+        }
+        assertEquals(100_000, h.getValueAt(1.0));
+        h.reset();
+        assertEquals(0, h.getCount());
+        assertEquals(0, h.getMax());
+    }
+
+    @Test
+    void recordsFromManyThreads() throws Exception {
+        LatencyHistogram h = new LatencyHistogram();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            long base = t;
+            threads[t] = new Thread(() -> { for (int i = 0; i < 50_000; i++) h.record(base * 1000 + i % 1000); });
+            threads[t].start();
+        }
+        for (Thread t : threads) t.join();
+        assertEquals(200_000, h.getCount());
+        assertEquals(3999, h.getMax());
+    }
+
+    @Test
+    void onlyRecordsWhileEnabled() {
+        boolean was = Metrics.isEnabled();
+        Metrics.Timer timer = Metrics.timer("test.stage");
+        Metrics.Counter counter = Metrics.counter("test.count");
+        try {
+            Metrics.setEnabled(false);
+            Metrics.reset();
+            long t0 = Metrics.start();
+            assertEquals(0L, t0);
+            timer.stop(t0);
+            counter.increment();
+            assertEquals(0, timer.getHistogram().getCount());
+            assertEquals(0, counter.get());
+
+            Metrics.setEnabled(true);
+            timer.stop(Metrics.start());
+            counter.increment();
+            assertEquals(1, timer.getHistogram().getCount());
+            assertEquals(1, counter.get());
+            assertSame(timer, Metrics.timer("test.stage"));
+            assertThrows(IllegalArgumentException.class, () -> Metrics.counter("test.stage"));
+            String dump = Metrics.dump();
+            assertTrue(dump.startsWith("metrics (on)"), dump);
+            assertTrue(dump.contains("test.stage") && dump.contains("test.count") && dump.contains("engine.similarity"), dump);
+        } finally {
+            Metrics.setEnabled(was);
+            Metrics.reset();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Path;
+import java.util.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+/** The columnar movie table, and filterBy over it against satisfies(id) per movie. */
+class MovieColumnsTest {
+
+    @Test
+    void repeatedIdReplacesTheRow() {
+        MovieColumns.Builder b = new MovieColumns.Builder();
+        b.add("1", "First", 1990, "USA", "Drama", "A", 100, "p1");
+        b.add("2", "Second", 2000, "UK", "Comedy, Drama", "B", 90, "N/A");
+        b.add("1", "First again", 1991, "France", "Comedy", "B", 101, "p3");
+        MovieColumns c = b.build();
+
+        assertEquals(2, c.size());
+        assertEquals(0, c.indexOf("1"));
+        assertEquals(-1, c.indexOf("3"));
+        Movie m = c.getMovie(0);
+        assertEquals("First again", m.getTitle());
+        assertEquals(1991, m.getYear());
+        assertEquals("France", m.getCountry());
+        assertEquals("Comedy", m.getGenres());
+        assertEquals("B", m.getDirector());
+        assertEquals(101, m.getMinutes());
+        assertEquals("p3", m.getPoster());
+        assertEquals(c.getDirectorCode(0), c.getDirectorCode(1));
+        assertEquals(c.directorCode("B"), c.getDirectorCode(1));
+        assertEquals(-1, c.countryCode("Japan"));
+    }
+
+    @Test
+    void filterByMatchesTheFiltersOneMovieAtATime(@TempDir Path dir) throws Exception {
+        TestData.loadSynthetic(dir, 600, 50, 5L);
+        MovieSnapshot snap = MovieDatabase.snapshot();
+        MovieColumns cols = snap.getColumns();
+
+        AllFilters comedyAfter1980 = new AllFilters();
+        comedyAfter1980.addFilter(new GenreFilter("Comedy"));
+        comedyAfter1980.addFilter(new YearsAfterFilter(1980));
+        AllFilters withPlainFilter = new AllFilters();
+        withPlainFilter.addFilter(new MinutesFilter(80, 120));
+        withPlainFilter.addFilter(id -> id.hashCode() % 3 == 0);     // not a ColumnFilter
+
+        Filter[] filters = {
+            new TrueFilter(), new YearsAfterFilter(1970), new MinutesFilter(90, 100), new GenreFilter("Comedy, Horror"),
+            new CountryFilter("japan"), new DirectorsFilter("Director 1,Director 2"), comedyAfter1980, withPlainFilter,
+            id -> id.endsWith("7"),
+        };
+        for (Filter f : filters) {
+            ArrayList<String> expected = new ArrayList<>();
+            for (int row = 0; row < cols.size(); row++) {
+                String id = cols.getID(row);
+                if (f.satisfies(id)) expected.add(id);
+                if (f instanceof ColumnFilter) assertEquals(f.satisfies(id), ((ColumnFilter) f).satisfies(cols, row), id);
+            }
+            assertEquals(expected, snap.filterBy(f), f.getClass().getName());
+            assertEquals(expected, MovieDatabase.filterBy(f));
+        }
+        assertFalse(snap.filterBy(new CountryFilter("Japan")).isEmpty());
+    }
+}
@@ -0,0 +1,90 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Path;
+import java.util.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+/** The neighbour cache: LRU order, prefixes, and lists patched after upserts match a fresh scan. */
+class NeighbourCacheTest {
+    @TempDir Path dir;
+
+    private static ArrayList<Rating> fake(String id, int n) {
+        ArrayList<Rating> out = new ArrayList<>();
+        for (int i = 0; i < n; i++) out.add(new Rating(id + "-" + i, 100 - i));
+        return out;
+    }
+
+    @Test
+    void leastRecentlyUsedGoesFirst() throws Exception {
+        TestData.loadSynthetic(dir, 50, 10, 1L);
+        RaterSnapshot rs = RaterDatabase.snapshot();
+        NeighbourCache cache = new NeighbourCache(2, 10);
+        int[] computed = new int[1];
+        for (String id : new String[] { "a", "b", "a", "c", "a", "b" }) {
+            cache.get(rs, id, 5, n -> { computed[0]++; return fake(id, n); });
+        }
+        // a, b miss; a hits; c evicts b; a hits; b misses again and evicts c
+        assertEquals(4, computed[0]);
+        assertEquals(2, cache.getHits());
+        assertEquals(4, cache.getMisses());
+        assertEquals(2, cache.getEvictions());
+        assertEquals(2, cache.size());
+
+        ArrayList<Rating> prefix = cache.get(rs, "a", 3, n -> fail("should be cached"));
+        TestData.assertSameRatings(fake("a", 3), prefix, "prefix");
+        cache.get(rs, "a", 20, n -> fake("a", n));              // deeper than stored: a miss
+        assertEquals(5, cache.getMisses());
+
+        TestData.loadSynthetic(dir, 50, 10, 2L);                // not registered: it still holds rs's lists
+        RaterSnapshot other = RaterDatabase.snapshot();
+        cache.get(other, "d", 5, n -> fake("d", n));
+        cache.get(other, "d", 5, n -> fake("d", n));
+        assertEquals(7, cache.getMisses());
+    }
+
+    @Test
+    void patchedListsMatchAFreshScan() throws Exception {
+        TestData.loadSynthetic(dir, 150, 120, 17L);
+        NeighbourCache cache = NeighbourCache.register(1000, 10);
+        try {
+            FourthRatings cached = new FourthRatings(), scan = new FourthRatings();
+            cached.setNeighbourCache(cache);
+            List<String> ids = TestData.raterIDs().subList(0, 40);
+            for (String id : ids) cached.getTopSimilarities(id, 10);
+            assertEquals(40, cache.size());
+
+            String x = ids.get(5);
+            List<String> movies = RaterDatabase.getRater(ids.get(6)).getItemsRated();
+            List<Rating> copy = new ArrayList<>();
+            for (String m : movies) copy.add(new Rating(m, RaterDatabase.getRater(ids.get(6)).getRating(m)));
+            RaterDatabase.upsertRatings(x, copy);                      // x now agrees with ids[6]
+            RaterDatabase.addRaterRating(ids.get(7), movies.get(0), 1);
+            assertTrue(cache.getInvalidations() >= 2, "x's and ids[7]'s own lists go");
+
+            long misses = cache.getMisses();
+            for (String id : ids) {
+                TestData.assertSameRatings(scan.getTopSimilarities(id, 10), cached.getTopSimilarities(id, 10), id);
+            }
+            assertTrue(cache.getMisses() - misses < ids.size(), "most lists were patched, not recomputed");
+        } finally {
+            RaterDatabase.removeListener(cache);
+        }
+    }
+
+    @Test
+    void reloadDropsEverything() throws Exception {
+        TestData.loadSynthetic(dir, 80, 30, 4L);
+        NeighbourCache cache = NeighbourCache.register(100, 5);
+        try {
+            FourthRatings fr = new FourthRatings();
+            fr.setNeighbourCache(cache);
+            for (String id : TestData.raterIDs()) fr.getTopSimilarities(id, 5);
+            assertEquals(30, cache.size());
+            TestData.loadSynthetic(dir, 80, 30, 5L);
+            assertEquals(0, cache.size());
+        } finally {
+            RaterDatabase.removeListener(cache);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+/** PageRenderer's hand-made "%.2f" and escaping, and the runner's Writer / stream / System.out paths. */
+class PageRendererTest {
+    @TempDir Path dir;
+
+    /** The score cell of a one-row page. */
+    private static String score(PageRenderer pr, MovieSnapshot movies, double v) throws IOException {
+        StringWriter out = new StringWriter();
+        pr.writePage(movies, Collections.singletonList(new Rating("m", v)), 1, out);
+        String page = out.toString();
+        int end = page.lastIndexOf("</td></tr>");
+        return page.substring(page.lastIndexOf("<td>", end) + 4, end);
+    }
+
+    @Test
+    void scoresMatchStringFormat() throws IOException {
+        MovieSnapshot movies = MovieSnapshot.EMPTY;
+        PageRenderer pr = new PageRenderer();
+        ArrayList<Double> values = new ArrayList<>(Arrays.asList(0.0, -0.0, -0.004, -0.005, 0.005, 0.015, 0.125, 1.005, 2.675,
+            9.995, 1e15, 123456789.125, -7.5, Double.MIN_VALUE, 1e-300, Double.MAX_VALUE, Double.NaN,
+            Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY));
+        for (int c = 0; c <= 10_000; c++) {
+            values.add(c / 1000.0 + 0.0005);           // x.xx5 ties, and their neighbours
+            values.add(Math.nextUp(c / 1000.0 + 0.0005));
+            values.add(Math.nextDown(c / 1000.0 + 0.0005));
+            values.add(-(c / 100.0));
+        }
+        Random rnd = new Random(23);
+        for (int i = 0; i < 20_000; i++) values.add(rnd.nextDouble() * 20 - 5);
+        for (double v : values) {
+            assertEquals(String.format(Locale.US, "%.2f", v), score(pr, movies, v), "score of " + v);
+        }
+    }
+
+    @Test
+    void escapesTextAndAttributes() throws IOException {
+        MovieColumns.Builder b = new MovieColumns.Builder();
+        b.add("m", "Tom & Jerry <3", 1999, "Côte d'Ivoire", "A&B", "O'Brien", 90, "http://x/?a=1&b='2'");
+        StringWriter out = new StringWriter();
+        new PageRenderer().writePage(new MovieSnapshot(b.build(), "test"), Collections.singletonList(new Rating("m", 1)), 15, out);
+        String page = out.toString();
+        assertTrue(page.contains("Tom &amp; Jerry &lt;3 (1999)"), page);
+        assertTrue(page.contains("src='http://x/?a=1&amp;b=&#39;2&#39;'"), page);
+        assertTrue(page.contains("Directed by O'Brien"), page);
+        assertTrue(page.contains("Côte d'Ivoire"), page);
+    }
+
+    @Test
+    void writerStreamAndConsoleAgree() throws Exception {
+        Path m = dir.resolve("movies.csv"), r = dir.resolve("ratings.csv");
+        SyntheticRatings.write(m, r, 200, 300, 25, 0.9, 4L);
+        Files.write(m, new String(Files.readAllBytes(m), StandardCharsets.UTF_8).replace("Synthetic", "Synthétique")
+            .getBytes(StandardCharsets.UTF_8));
+        TestData.load(m, r);
+        String oldMovies = System.getProperty("movies.file"), oldRatings = System.getProperty("ratings.file");
+        PrintStream oldOut = System.out;
+        System.setProperty("movies.file", m.toString());
+        System.setProperty("ratings.file", r.toString());
+        try {
+            RecommendationRunner runner = new RecommendationRunner();
+            String rater = TestData.raterIDs().get(0);
+            assertFalse(runner.getRecommendationsFor(rater).isEmpty());
+
+            StringWriter text = new StringWriter();
+            runner.writeRecommendationsFor(rater, text);
+            ByteArrayOutputStream utf8 = new ByteArrayOutputStream();
+            runner.writeRecommendationsFor(rater, utf8);
+            assertTrue(text.toString().contains("Synthétique"));
+            assertEquals(text.toString(), new String(utf8.toByteArray(), StandardCharsets.UTF_8));
+
+            ByteArrayOutputStream console = new ByteArrayOutputStream();
+            System.setOut(new PrintStream(console, true, "ISO-8859-1"));
+            runner.printRecommendationsFor(rater);
+            System.out.flush();
+            assertEquals(text + System.lineSeparator(), new String(console.toByteArray(), StandardCharsets.ISO_8859_1));
+        } finally {
+            System.setOut(oldOut);
+            if (oldMovies == null) System.clearProperty("movies.file"); else System.setProperty("movies.file", oldMovies);
+            if (oldRatings == null) System.clearProperty("ratings.file"); else System.setProperty("ratings.file", oldRatings);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Parallel mode gives the sequential answers bit for bit, whatever the pool size. */
+class ParallelModeTest {
+    @TempDir static Path dir;
+
+    @BeforeAll
+    static void load() throws Exception {
+        TestData.loadSynthetic(dir, 500, 600, 19L);
+    }
+
+    @Test
+    void everyPoolSizeMatchesSequential() {
+        FourthRatings sequential = new FourthRatings();
+        List<String> ids = TestData.raterIDs().subList(0, 25);
+        for (int threads : new int[] { 1, 2, 3, 8 }) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                FourthRatings parallel = new FourthRatings();
+                parallel.setPool(pool);
+                String p = "threads=" + threads;
+                TestData.assertSameRatings(sequential.getAverageRatings(2), parallel.getAverageRatings(2), p);
+                TestData.assertSameRatings(sequential.getAverageRatingsByFilter(1, new YearsAfterFilter(1970)),
+                                           parallel.getAverageRatingsByFilter(1, new YearsAfterFilter(1970)), p);
+                for (String id : ids) {
+                    TestData.assertSameRatings(sequential.getSimilarities(id), parallel.getSimilarities(id), p + " " + id);
+                    TestData.assertSameRatings(sequential.getSimilarRatingsByFilter(id, 20, 3, new TrueFilter()),
+                                               parallel.getSimilarRatingsByFilter(id, 20, 3, new TrueFilter()), p + " " + id);
+                    TestData.assertSameRatings(sequential.getSimilarRatingsByFilter(id, 50, 2, new GenreFilter("Comedy")),
+                                               parallel.getSimilarRatingsByFilter(id, 50, 2, new GenreFilter("Comedy")), p + " " + id);
+                }
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    @Test
+    void ownPoolIsShutDownWhenReplaced() {
+        FourthRatings fr = new FourthRatings();
+        fr.setParallelism(2);
+        ForkJoinPool owned = fr.getPool();
+        ForkJoinPool mine = new ForkJoinPool(2);
+        try {
+            fr.setPool(mine);
+            assertTrue(owned.isShutdown());
+            fr.setParallelism(1);
+            assertFalse(fr.isParallel());
+            assertFalse(mine.isShutdown(), "a caller's pool is left alone");
+        } finally {
+            mine.shutdown();
+        }
+    }
+}
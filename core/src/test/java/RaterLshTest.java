@@ -0,0 +1,69 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+/** LSH neighbours: exact scores over the candidates, and high recall with many bands. */
+class RaterLshTest {
+    @TempDir Path dir;
+
+    @Test
+    void candidatesAreReRankedExactly() throws Exception {
+        TestData.loadSynthetic(dir, 150, 300, 12L);
+        RaterSnapshot rs = RaterDatabase.snapshot();
+        RaterLsh lsh = RaterLsh.build(rs, 8, 6, 99L, null);
+        FourthRatings approx = new FourthRatings(rs, MovieDatabase.snapshot());
+        approx.setApproximateNeighbours(lsh);
+        ArrayList<Rater> raters = rs.getRaters();
+
+        for (String id : TestData.raterIDs().subList(0, 60)) {
+            SparseVector mine = rs.getVector(id);
+            TopRatings expected = new TopRatings(10);
+            for (int c : lsh.candidates(rs, mine)) {
+                String other = raters.get(c).getID();
+                double s = SparseVector.dot(mine, rs.getVector(other));
+                if (!other.equals(id) && s > 0) expected.offer(other, s);
+            }
+            TestData.assertSameRatings(expected.toList(), lsh.top(rs, id, 10), id);
+            TestData.assertSameRatings(expected.toList(), approx.getTopSimilarities(id, 10), id + " via FourthRatings");
+        }
+        assertTrue(lsh.top(rs, "nobody", 10).isEmpty());
+    }
+
+    @Test
+    void manyBandsFindTheExactNeighbours() throws Exception {
+        TestData.loadSynthetic(dir, 150, 300, 13L);
+        RaterSnapshot rs = RaterDatabase.snapshot();
+        FourthRatings exact = new FourthRatings(rs, MovieDatabase.snapshot());
+        RaterLsh lsh = RaterLsh.build(rs, 48, 2, 7L, null);
+        ForkJoinPool pool = new ForkJoinPool(3);
+        RaterLsh parallel;
+        try {
+            parallel = RaterLsh.build(rs, 48, 2, 7L, pool);
+        } finally {
+            pool.shutdown();
+        }
+
+        int found = 0, wanted = 0;
+        for (String id : TestData.raterIDs()) {
+            Set<String> truth = new HashSet<>();
+            for (Rating r : exact.getTopSimilarities(id, 10)) truth.add(r.getItem());
+            for (Rating r : lsh.top(rs, id, 10)) if (truth.contains(r.getItem())) found++;
+            wanted += truth.size();
+            assertArrayEquals(lsh.candidates(rs, rs.getVector(id)), parallel.candidates(rs, rs.getVector(id)), id);
+        }
+        assertTrue(found >= 0.95 * wanted, "recall " + found + "/" + wanted);
+    }
+
+    @Test
+    void rejectsBadShapes() throws Exception {
+        TestData.loadSynthetic(dir, 20, 10, 1L);
+        RaterSnapshot rs = RaterDatabase.snapshot();
+        assertThrows(IllegalArgumentException.class, () -> RaterLsh.build(rs, 0, 4, 1L, null));
+        assertThrows(IllegalArgumentException.class, () -> RaterLsh.build(rs, 4, RaterLsh.MAX_ROWS + 1, 1L, null));
+        assertEquals(10, RaterLsh.build(rs, 4, RaterLsh.MAX_ROWS, 1L, null).size());
+    }
+}
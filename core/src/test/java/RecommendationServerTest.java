@@ -0,0 +1,74 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.net.URI;
+import java.net.http.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Json and Html, and the server's JSON and HTML answers built with them. */
+class RecommendationServerTest {
+    @TempDir Path dir;
+
+    @Test
+    void jsonStringsAndNumbers() {
+        assertEquals("\"a\\\"b\\\\c\\n\\r\\t\\u0001\\u001f é\"", Json.string(new StringBuilder(), "a\"b\\c\n\r\t\u0001\u001f é").toString());
+        assertEquals("null", Json.string(new StringBuilder(), null).toString());
+        assertEquals("\"\"", Json.string(new StringBuilder(), "").toString());
+        assertEquals("2.5", Json.number(new StringBuilder(), 2.5).toString());
+        assertEquals("null", Json.number(new StringBuilder(), Double.NaN).toString());
+        assertEquals("null", Json.number(new StringBuilder(), Double.POSITIVE_INFINITY).toString());
+        assertEquals("null", Json.number(new StringBuilder(), Double.NEGATIVE_INFINITY).toString());
+    }
+
+    @Test
+    void htmlEscaping() {
+        assertEquals("Tom &amp; Jerry &lt;3&gt; O'Brien", Html.escape(new StringBuilder(), "Tom & Jerry <3> O'Brien", false).toString());
+        assertEquals("a=1&amp;b=&#39;2&#39;", Html.escape(new StringBuilder(), "a=1&b='2'", true).toString());
+        assertEquals("x", Html.escape(new StringBuilder("x"), null, false).toString());
+        assertNull(Html.entity('a', true));
+        assertNull(Html.entity('\'', false));
+    }
+
+    @Test
+    void servesEscapedItemsAndRecommendations() throws Exception {
+        Path m = dir.resolve("movies.csv"), r = dir.resolve("ratings.csv");
+        SyntheticRatings.write(m, r, 200, 300, 25, 0.9, 24L);
+        Files.write(m, new String(Files.readAllBytes(m), StandardCharsets.UTF_8).replace("Synthetic", "Tom & \"Jerry\" <3")
+            .getBytes(StandardCharsets.UTF_8));
+        TestData.load(m, r);
+        String oldMovies = System.getProperty("movies.file"), oldRatings = System.getProperty("ratings.file");
+        System.setProperty("movies.file", m.toString());
+        System.setProperty("ratings.file", r.toString());
+        RecommendationServer server = new RecommendationServer(0, 2);
+        server.start();
+        try {
+            HttpClient http = HttpClient.newHttpClient();
+            String base = "http://localhost:" + server.getPort();
+
+            String html = get(http, base + "/items?format=html");
+            assertTrue(html.contains("<li>Tom &amp; \"Jerry\" &lt;3 Movie "), html);
+            String json = get(http, base + "/items");
+            assertTrue(json.contains("\"title\":\"Tom & \\\"Jerry\\\" <3 Movie "), json);
+
+            String rater = TestData.raterIDs().get(0);
+            int recs = new RecommendationRunner().getRecommendationsFor(rater).size();
+            assertTrue(recs > 0);
+            json = get(http, base + "/recommendations?rater=" + rater + "&format=json");
+            assertTrue(json.startsWith("[{") && json.endsWith("}]"), json);
+            assertEquals(recs, json.split("\"score\":", -1).length - 1);
+            assertFalse(json.contains("NaN") || json.contains("Infinity"), json);
+        } finally {
+            server.stop();
+            if (oldMovies == null) System.clearProperty("movies.file"); else System.setProperty("movies.file", oldMovies);
+            if (oldRatings == null) System.clearProperty("ratings.file"); else System.setProperty("ratings.file", oldRatings);
+        }
+    }
+
+    private static String get(HttpClient http, String url) throws Exception {
+        HttpResponse<String> res = http.send(HttpRequest.newBuilder(URI.create(url)).build(), HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, res.statusCode(), url);
+        return res.body();
+    }
+}
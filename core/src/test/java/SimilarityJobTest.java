@@ -0,0 +1,47 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+/** SimilarityJob's file against FourthRatings' exact neighbour lists. */
+class SimilarityJobTest {
+    @TempDir Path dir;
+
+    @Test
+    void fileMatchesTheExactScan() throws Exception {
+        TestData.loadSynthetic(dir, 200, 150, 31L);
+        RaterSnapshot rs = RaterDatabase.snapshot();
+        FourthRatings exact = new FourthRatings(rs, MovieDatabase.snapshot());
+        int k = 12;
+
+        Path one = dir.resolve("one.knn"), four = dir.resolve("four.knn");
+        SimilarityJob.Stats stats = SimilarityJob.run(rs, one, k, null, 7);     // several blocks, the last one short
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            SimilarityJob.run(rs, four, k, pool, 64);
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(rs.size(), stats.raters);
+
+        NeighbourIndex a = NeighbourIndex.read(one), b = NeighbourIndex.read(four);
+        assertEquals(NeighbourIndex.RATERS, a.getKind());
+        assertEquals(k, a.getK());
+        long kept = 0;
+        for (String id : TestData.raterIDs()) {
+            ArrayList<Rating> expected = exact.getTopSimilarities(id, k);
+            ArrayList<Rating> got = a.top(id, k);
+            assertEquals(expected.size(), got.size(), id);
+            for (int i = 0; i < got.size(); i++) {
+                assertEquals(expected.get(i).getItem(), got.get(i).getItem(), id + " at " + i);
+                assertEquals((float) expected.get(i).getValue(), (float) got.get(i).getValue(), id + " at " + i);
+            }
+            TestData.assertSameRatings(got, b.top(id, k), id + " in parallel");
+            kept += got.size();
+        }
+        assertEquals(kept, stats.neighbours);
+    }
+}
@@ -0,0 +1,45 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Path;
+import java.util.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+/** The merge-join kernel gives the HashMap kernel's similarities, bit for bit. */
+class SimilarityKernelTest {
+    @TempDir static Path dir;
+
+    @BeforeAll
+    static void load() throws Exception {
+        TestData.loadSynthetic(dir, 300, 500, 11L);
+    }
+
+    @Test
+    void kernelsAgreeExactly() {
+        FourthRatings hash = new FourthRatings(FourthRatings.SimilarityKernel.HASH_LOOKUP);
+        FourthRatings merge = new FourthRatings(FourthRatings.SimilarityKernel.SORTED_MERGE);
+        for (String id : TestData.raterIDs().subList(0, 60)) {
+            TestData.assertSameRatings(hash.getSimilarities(id), merge.getSimilarities(id), id);
+            TestData.assertSameRatings(hash.getSimilarRatings(id, 20, 3), merge.getSimilarRatings(id, 20, 3), id);
+        }
+    }
+
+    @Test
+    void dotIsTheCentredSumOverSharedMovies() {
+        List<String> ids = TestData.raterIDs();
+        RaterSnapshot rs = RaterDatabase.snapshot();
+        for (int i = 0; i + 1 < 40; i++) {
+            Rater a = RaterDatabase.getRater(ids.get(i)), b = RaterDatabase.getRater(ids.get(i + 1));
+            double expected = 0.0;
+            for (String m : a.getItemsRated()) {
+                if (b.hasRating(m)) expected += (a.getRating(m) - 5.0) * (b.getRating(m) - 5.0);
+            }
+            assertEquals(expected, SparseVector.dot(rs.getVector(a.getID()), rs.getVector(b.getID())));
+        }
+    }
+
+    @Test
+    void unknownRaterHasNoSimilarities() {
+        assertTrue(new FourthRatings().getSimilarities("nobody").isEmpty());
+    }
+}
@@ -0,0 +1,99 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.*;
+import java.util.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+/** A published snapshot never changes, whatever the loads after it do. */
+class SnapshotIsolationTest {
+    @TempDir Path dir;
+
+    @AfterEach
+    void plainStorage() {
+        RaterDatabase.setCompactStorage(false);
+    }
+
+    @Test
+    void upsertsAndLoadsLeaveOldSnapshotsAlone() throws Exception {
+        check(false);
+    }
+
+    @Test
+    void sameWithCompactRaters() throws Exception {
+        check(true);
+    }
+
+    private void check(boolean compact) throws Exception {
+        RaterDatabase.setCompactStorage(compact);
+        TestData.loadSynthetic(dir, 200, 150, 23L);
+        List<String> ids = TestData.raterIDs();
+        String a = ids.get(0), b = ids.get(1);
+
+        RaterSnapshot first = RaterDatabase.snapshot();
+        String before = dump(first, ids);
+
+        // existing and brand-new movie IDs (the second kind makes the builder copy the dictionary)
+        RaterDatabase.upsertRatings(a, Arrays.asList(new Rating("new-1", 9), new Rating(first.getRater(a).getItemsRated().get(0), 1)));
+        RaterSnapshot second = RaterDatabase.snapshot();
+        String afterFirstUpsert = dump(second, ids);
+        RaterDatabase.addRaterRating(a, "new-2", 4);     // a is now second's rater: copied again, not written
+        RaterDatabase.addRaterRating(b, "new-1", 2);
+        Path more = TestData.write(dir.resolve("more.csv"), TestData.RATING_HEADER, a + ",new-3,7,1", "fresh,new-3,6,2");
+        RaterDatabase.addRatings(more.toString());
+
+        assertEquals(before, dump(first, ids));
+        assertEquals(afterFirstUpsert, dump(second, ids));
+        assertNull(first.getMovieRatings("new-1"));
+        assertEquals(-1, first.getMovieIDs().indexOf("new-1"));
+        assertEquals(1, second.getMovieRatings("new-1").getCount());
+
+        RaterSnapshot last = RaterDatabase.snapshot();
+        assertEquals(9.0, last.getRater(a).getRating("new-1"));
+        assertEquals(4.0, last.getRater(a).getRating("new-2"));
+        assertEquals(7.0, last.getRater(a).getRating("new-3"));
+        assertEquals(2, last.getMovieRatings("new-1").getCount());
+        assertNotNull(last.getRater("fresh"));
+        assertNull(second.getRater("fresh"));
+    }
+
+    @Test
+    void withDictionaryDoesNotWriteTheOriginal() throws Exception {
+        IdDictionary movies = new IdDictionary();
+        CompactRater original = new CompactRater("r", movies);
+        original.addRating("m1", 3);
+        original.addRating("m2", 5);
+        java.lang.reflect.Field shared = CompactRater.class.getDeclaredField("shared");
+        shared.setAccessible(true);
+        assertFalse(shared.getBoolean(original));
+
+        CompactRater copy = original.withDictionary(movies.copy());
+        assertFalse(shared.getBoolean(original), "the original may be in a published snapshot");
+        copy.addRating("m1", 8);
+        copy.addRating("m0", 1);
+        assertEquals(3.0, original.getRating("m1"));
+        assertEquals(2, original.numRatings());
+        assertEquals(8.0, copy.getRating("m1"));
+        assertEquals(3, copy.numRatings());
+    }
+
+    /** Every rater's ratings, every movie's count and sum, and every centred vector, as text. */
+    private static String dump(RaterSnapshot s, List<String> ids) {
+        StringBuilder sb = new StringBuilder();
+        for (String id : ids) {
+            Rater r = s.getRater(id);
+            TreeMap<String, Double> m = new TreeMap<>();
+            for (String item : r.getItemsRated()) m.put(item, r.getRating(item));
+            sb.append(id).append(m);
+            SparseVector v = s.getVector(id);
+            for (int k = 0; k < v.size(); k++) sb.append(' ').append(v.indexAt(k)).append(':').append(v.centredAt(k));
+            sb.append('\n');
+            for (String item : m.keySet()) {
+                MovieRatings mr = s.getMovieRatings(item);
+                sb.append(item).append('=').append(mr.getCount()).append('/').append(mr.getSum()).append(' ');
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+}
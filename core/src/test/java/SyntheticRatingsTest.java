@@ -0,0 +1,66 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+/** The benchmarks' data: same arguments, same files; skew concentrates the ratings. */
+class SyntheticRatingsTest {
+    @TempDir Path dir;
+
+    /** Share of all ratings that go to the 10 most rated movies. */
+    private static double topTenShare(Path ratings) throws Exception {
+        HashMap<String, Integer> perMovie = new HashMap<>();
+        List<String> lines = Files.readAllLines(ratings, StandardCharsets.UTF_8);
+        for (String line : lines.subList(1, lines.size())) perMovie.merge(line.split(",")[1], 1, Integer::sum);
+        List<Integer> counts = new ArrayList<>(perMovie.values());
+        counts.sort(Collections.reverseOrder());
+        int top = 0;
+        for (int c : counts.subList(0, 10)) top += c;
+        return (double) top / (lines.size() - 1);
+    }
+
+    @Test
+    void sameArgumentsSameFiles() throws Exception {
+        Path m1 = dir.resolve("m1.csv"), r1 = dir.resolve("r1.csv"), m2 = dir.resolve("m2.csv"), r2 = dir.resolve("r2.csv");
+        long rows = SyntheticRatings.write(m1, r1, 300, 200, 15, 0.9, 5L);
+        SyntheticRatings.write(m2, r2, 300, 200, 15, 0.9, 5L);
+        assertArrayEquals(Files.readAllBytes(m1), Files.readAllBytes(m2));
+        assertArrayEquals(Files.readAllBytes(r1), Files.readAllBytes(r2));
+
+        List<String> lines = Files.readAllLines(r1, StandardCharsets.UTF_8);
+        assertEquals(TestData.RATING_HEADER, lines.get(0));
+        assertEquals(rows, lines.size() - 1);
+        for (String line : lines.subList(1, lines.size())) {
+            int score = Integer.parseInt(line.split(",")[2]);
+            assertTrue(score >= 1 && score <= 10, line);
+        }
+        assertEquals(301, Files.readAllLines(m1, StandardCharsets.UTF_8).size());
+        assertEquals(TestData.MOVIE_HEADER, Files.readAllLines(m1, StandardCharsets.UTF_8).get(0));
+    }
+
+    @Test
+    void skewConcentratesTheRatings() throws Exception {
+        SyntheticRatings.write(dir.resolve("m.csv"), dir.resolve("flat.csv"), 500, 300, 20, 0.0, 5L);
+        SyntheticRatings.write(dir.resolve("m.csv"), dir.resolve("steep.csv"), 500, 300, 20, 1.2, 5L);
+        double flat = topTenShare(dir.resolve("flat.csv")), steep = topTenShare(dir.resolve("steep.csv"));
+        assertTrue(flat < 0.05, "flat " + flat);
+        assertTrue(steep > 3 * flat, "steep " + steep + " vs flat " + flat);
+    }
+
+    @Test
+    void dataFilesFromSystemProperties() {
+        String old = System.getProperty("movies.file");
+        try {
+            System.clearProperty("movies.file");
+            assertEquals("ratedmoviesfull.csv", RecommendationRunner.movieFile());
+            System.setProperty("movies.file", "/data/m.csv");
+            assertEquals("/data/m.csv", RecommendationRunner.movieFile());
+        } finally {
+            if (old == null) System.clearProperty("movies.file");
+            else System.setProperty("movies.file", old);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Small data sets for the tests, written to a temp folder in the course's
+ * CSV formats, and a way to load them into the (static) databases.
+ */
+class TestData {
+    static final String MOVIE_HEADER = "id,title,year,country,genre,director,minutes,poster";
+    static final String RATING_HEADER = "rater_id,movie_id,rating,time";
+
+    /** A movie file: a header plus these rows. */
+    static Path movies(Path dir, String... rows) throws IOException {
+        return write(dir.resolve("movies.csv"), MOVIE_HEADER, rows);
+    }
+
+    /** A ratings file from "rater,movie,rating" triples (the time column is filled in). */
+    static Path ratings(Path dir, String... triples) throws IOException {
+        String[] rows = new String[triples.length];
+        for (int i = 0; i < triples.length; i++) rows[i] = triples[i] + "," + (1000 + i);
+        return write(dir.resolve("ratings.csv"), RATING_HEADER, rows);
+    }
+
+    static Path write(Path file, String header, String... rows) throws IOException {
+        try (BufferedWriter w = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            w.write(header);
+            w.write('\n');
+            for (String row : rows) {
+                w.write(row);
+                w.write('\n');
+            }
+        }
+        return file;
+    }
+
+    /** SyntheticRatings' files in dir, loaded into both databases. */
+    static void loadSynthetic(Path dir, int movies, int raters, long seed) throws IOException {
+        Path m = dir.resolve("ratedmoviesfull.csv"), r = dir.resolve("ratings.csv");
+        SyntheticRatings.write(m, r, movies, raters, 20, 0.9, seed);
+        load(m, r);
+    }
+
+    /** Fresh databases from these files (the file names are new to them, so they reload). */
+    static void load(Path movieFile, Path ratingFile) {
+        RaterDatabase.reset();
+        MovieDatabase.initialize(movieFile.toString());
+        RaterDatabase.initialize(ratingFile.toString());
+    }
+
+    /** Same movies (or raters) in the same order with bit-for-bit the same values. */
+    static void assertSameRatings(List<Rating> expected, List<Rating> actual, String what) {
+        org.junit.jupiter.api.Assertions.assertEquals(expected.size(), actual.size(), what + ": size");
+        for (int i = 0; i < expected.size(); i++) {
+            Rating e = expected.get(i), a = actual.get(i);
+            if (!e.getItem().equals(a.getItem()) || Double.doubleToLongBits(e.getValue()) != Double.doubleToLongBits(a.getValue())) {
+                org.junit.jupiter.api.Assertions.fail(what + ": at " + i + " expected " + e + " but was " + a);
+            }
+        }
+    }
+
+    /** Every rater ID in the current ratings, sorted. */
+    static List<String> raterIDs() {
+        ArrayList<String> ids = new ArrayList<>();
+        for (Rater r : RaterDatabase.getRaters()) ids.add(r.getID());
+        Collections.sort(ids);
+        return ids;
+    }
+}
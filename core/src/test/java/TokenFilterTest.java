@@ -0,0 +1,79 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Path;
+import java.util.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Token filters by row, the LRU of masks, and one mask per part per evaluation. */
+class TokenFilterTest {
+
+    private static MovieColumns table(String... genres) {
+        MovieColumns.Builder b = new MovieColumns.Builder();
+        for (int i = 0; i < genres.length; i++) b.add("m" + i, "T" + i, 2000 + i, "USA, UK", genres[i], "D" + (i % 3), 90 + i, "N/A");
+        return b.build();
+    }
+
+    @Test
+    void rowsAreTestedFromThePostingLists() {
+        MovieColumns cols = table("Drama, Comedy", "drama", " Horror ,Drama, drama", "", "Comedy", "Sci-Fi");
+        TokenIndex genres = cols.genresIndex();
+        assertArrayEquals(new int[] { 0, 1, 2 }, genres.postings("drama"));
+        assertArrayEquals(new int[] { 0, 1, 2, 4 }, genres.rows(TokenIndex.tokens("Comedy,DRAMA, horror")));
+
+        GenreFilter f = new GenreFilter("comedy,horror");
+        for (int row = 0; row < cols.size(); row++) {
+            boolean expected = TokenIndex.listsAny(cols.getGenres(row), TokenIndex.tokens("comedy,horror"));
+            assertEquals(expected, f.satisfies(cols, row), "row " + row);
+            assertEquals(expected, genres.lists(row, TokenIndex.tokens("Horror, Comedy")), "row " + row);
+        }
+        assertNull(cols.cachedMask(f.key()), "a row test doesn't build the mask");
+        assertTrue(new CountryFilter("uk").satisfies(cols, 3));
+        assertFalse(new DirectorsFilter("D1").satisfies(cols, 0));
+    }
+
+    @Test
+    void maskCacheDropsTheLeastRecentlyUsed() {
+        MovieColumns cols = table("Drama", "Comedy");
+        List<MinutesFilter> filters = new ArrayList<>();
+        for (int i = 0; i <= 64; i++) filters.add(new MinutesFilter(i, 1000));
+        for (int i = 0; i < 64; i++) FilterMasks.of(filters.get(i), cols);
+        long[] first = FilterMasks.of(filters.get(0), cols);      // used again: now the newest
+        FilterMasks.of(filters.get(64), cols);                   // one too many
+
+        assertSame(first, cols.cachedMask(filters.get(0).key()));
+        assertNull(cols.cachedMask(filters.get(1).key()));
+        for (int i = 2; i <= 64; i++) assertNotNull(cols.cachedMask(filters.get(i).key()), "mask " + i);
+    }
+
+    /** A MaskFilter that counts how often its mask is built. */
+    private static class Counting implements MaskFilter {
+        int masks;
+        private final Filter f;
+        Counting(Filter f) { this.f = f; }
+        public boolean satisfies(String id) { return f.satisfies(id); }
+        public boolean satisfies(MovieColumns movies, int row) { return f.satisfies(movies.getID(row)); }
+        public long[] mask(MovieColumns movies) { masks++; return FilterMasks.of(f, movies); }
+        public String key() { return null; }
+    }
+
+    @Test
+    void eachPartIsEvaluatedOnce(@TempDir Path dir) throws Exception {
+        TestData.loadSynthetic(dir, 500, 20, 21L);
+        MovieSnapshot snap = MovieDatabase.snapshot();
+        Counting a = new Counting(new YearsAfterFilter(1950)), b = new Counting(new GenreFilter("Drama"));
+        AllFilters and = new AllFilters();
+        and.addFilter(a);
+        and.addFilter(b);
+        AnyFilters or = new AnyFilters();
+        or.addFilter(and);
+        or.addFilter(new NotFilter(b));
+
+        snap.filterBy(and);
+        assertEquals(1, a.masks);
+        assertEquals(1, b.masks);
+        snap.filterBy(or);
+        assertEquals(2, a.masks);
+        assertEquals(3, b.masks);       // once under the AND, once under the NOT
+    }
+}
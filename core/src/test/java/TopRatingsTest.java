@@ -0,0 +1,50 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Path;
+import java.util.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Heap selection against sorting everything, ties included. */
+class TopRatingsTest {
+
+    @Test
+    void selectIsTheHeadOfAFullSort() {
+        Random rnd = new Random(5);
+        for (int round = 0; round < 50; round++) {
+            ArrayList<Rating> all = new ArrayList<>();
+            int n = rnd.nextInt(200);
+            for (int i = 0; i < n; i++) all.add(new Rating("m" + rnd.nextInt(1000), rnd.nextInt(8)));  // lots of ties
+            ArrayList<Rating> sorted = new ArrayList<>(all);
+            Collections.sort(sorted, TopRatings.BEST_FIRST);
+            for (int k : new int[] { 0, 1, 5, 20, n, n + 3 }) {
+                TestData.assertSameRatings(sorted.subList(0, Math.min(k, n)), TopRatings.select(all, k), "k=" + k);
+            }
+        }
+    }
+
+    @Test
+    void tiesGoToTheSmallerID() {
+        TopRatings top = new TopRatings(2);
+        top.offer("c", 1.0);
+        top.offer("b", 1.0);
+        top.offer("a", 1.0);
+        top.offer("d", 0.5);
+        assertEquals("[[a, 1.0], [b, 1.0]]", top.toList().toString());
+    }
+
+    @Test
+    void engineTopKMatchesTheSortedLists(@TempDir Path dir) throws Exception {
+        TestData.loadSynthetic(dir, 300, 400, 13L);
+        FourthRatings fr = new FourthRatings();
+        for (String id : TestData.raterIDs().subList(0, 40)) {
+            ArrayList<Rating> sims = fr.getSimilarities(id);
+            Collections.sort(sims, TopRatings.BEST_FIRST);
+            TestData.assertSameRatings(sims.subList(0, Math.min(20, sims.size())), fr.getTopSimilarities(id, 20), id);
+
+            ArrayList<Rating> recs = fr.getSimilarRatingsByFilter(id, 20, 3, new TrueFilter());
+            TestData.assertSameRatings(recs.subList(0, Math.min(15, recs.size())),
+                                       fr.getTopRecommendations(id, 15, 20, 3, new TrueFilter()), id);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Upserting ratings gives the same answers as reloading a file that has them. */
+class UpsertTest {
+    @TempDir Path dir;
+
+    @Test
+    void upsertsMatchAFullReload() throws Exception {
+        TestData.loadSynthetic(dir, 200, 200, 29L);
+        List<String> ids = TestData.raterIDs();
+        Path ratings = dir.resolve("ratings.csv");
+        List<String> lines = new ArrayList<>(Files.readAllLines(ratings, StandardCharsets.UTF_8));
+
+        Set<String> heard = new HashSet<>();
+        RatingsListener listener = (snapshot, changed) -> heard.addAll(changed);
+        RaterDatabase.addListener(listener);
+        try {
+            String a = ids.get(3), movie = RaterDatabase.getRater(a).getItemsRated().get(0);
+            RaterDatabase.upsertRatings(a, Arrays.asList(new Rating(movie, 10), new Rating("brand-new", 8)));
+            RaterDatabase.addRaterRating("newcomer", movie, 2);
+            lines.add(a + "," + movie + ",10,9999");      // later rows replace earlier ones
+            lines.add(a + ",brand-new,8,9999");
+            lines.add("newcomer," + movie + ",2,9999");
+        } finally {
+            RaterDatabase.removeListener(listener);
+        }
+        assertEquals(new HashSet<>(Arrays.asList(ids.get(3), "newcomer")), heard);
+        RaterSnapshot upserted = RaterDatabase.snapshot();
+
+        Path reloaded = dir.resolve("reloaded.csv");
+        Files.write(reloaded, lines, StandardCharsets.UTF_8);
+        RaterDatabase.reset();
+        RaterDatabase.initialize(reloaded.toString());
+        RaterSnapshot fresh = RaterDatabase.snapshot();
+
+        MovieSnapshot movies = MovieDatabase.snapshot();
+        FourthRatings x = new FourthRatings(upserted, movies), y = new FourthRatings(fresh, movies);
+        assertEquals(fresh.size(), upserted.size());
+        TestData.assertSameRatings(y.getAverageRatings(1), x.getAverageRatings(1), "averages");
+        assertEquals(fresh.getMovieRatings("brand-new").getSum(), upserted.getMovieRatings("brand-new").getSum());
+        List<String> check = new ArrayList<>(ids.subList(0, 20));
+        check.add("newcomer");
+        for (String id : check) {
+            TestData.assertSameRatings(y.getSimilarities(id), x.getSimilarities(id), id);
+            TestData.assertSameRatings(y.getSimilarRatings(id, 20, 2), x.getSimilarRatings(id, 20, 2), id);
+        }
+    }
+}